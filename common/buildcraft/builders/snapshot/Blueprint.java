@@ -7,6 +7,7 @@
 package buildcraft.builders.snapshot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -17,9 +18,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
@@ -33,8 +36,15 @@ import buildcraft.api.schematics.ISchematicBlock;
 import buildcraft.api.schematics.ISchematicEntity;
 
 import buildcraft.lib.misc.NBTUtilBC;
+import buildcraft.lib.misc.data.BitPackedIntArray;
+import buildcraft.lib.nbt.NbtSquishWriter;
 
 public class Blueprint extends Snapshot {
+    /** The format used by {@link #serializeNBT()} since blocks stopped being written as one int tag each. */
+    private static final int DATA_FORMAT_PACKED = 1;
+    /** The most ints that can go in a single int array, as the squished formats only have 2 bytes for the length. */
+    private static final int MAX_ARRAY_CHUNK = 0xFFFF;
+
     public final List<ISchematicBlock> palette = new ArrayList<>();
     public int[] data;
     public final List<ISchematicEntity> entities = new ArrayList<>();
@@ -61,17 +71,95 @@ public class Blueprint extends Snapshot {
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = super.serializeNBT();
         nbt.setTag("palette", NBTUtilBC.writeCompoundList(palette.stream().map(SchematicBlockManager::writeToNBT)));
-        NBTTagList list = new NBTTagList();
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    list.appendTag(new NBTTagInt(data[posToIndex(x, y, z)]));
+        writePackedData(nbt);
+        nbt.setTag("entities", NBTUtilBC.writeCompoundList(entities.stream().map(SchematicEntityManager::writeToNBT)));
+        return nbt;
+    }
+
+    @Override
+    protected void serializeSquish(NbtSquishWriter writer, NbtSquishWriter.CompoundBuilder builder) {
+        super.serializeSquish(writer, builder);
+        builder.set("palette", writer.addList(
+            palette.stream().map(SchematicBlockManager::writeToNBT).mapToInt(writer::addTag).toArray()
+        ));
+        // Only a handful of tags, as the blocks are already packed into int arrays
+        NBTTagCompound packed = new NBTTagCompound();
+        writePackedData(packed);
+        for (String key : packed.getKeySet()) {
+            builder.set(key, writer.addTag(packed.getTag(key)));
+        }
+        builder.set("entities", writer.addList(
+            entities.stream().map(SchematicEntityManager::writeToNBT).mapToInt(writer::addTag).toArray()
+        ));
+    }
+
+    /** Writes {@link #data} as bit-packed palette indices, with long runs of air stored separately as (start,
+     * length) pairs. Everything ends up in a couple of int arrays, rather than one tag per block. */
+    private void writePackedData(NBTTagCompound nbt) {
+        int bits = BitPackedIntArray.getBitsFor(Math.max(0, palette.size() - 1));
+        int airIndex = -1;
+        for (int i = 0; i < palette.size(); i++) {
+            if (palette.get(i).isAir()) {
+                airIndex = i;
+                break;
+            }
+        }
+        // A run costs two ints, so only bother with runs that are longer than that
+        int minRunLength = 64 / bits + 1;
+        int[] values = new int[data.length];
+        int valueCount = 0;
+        TIntArrayList airRuns = new TIntArrayList();
+        for (int i = 0; i < data.length; ) {
+            if (data[i] == airIndex) {
+                int end = i + 1;
+                while (end < data.length && data[end] == airIndex) {
+                    end++;
+                }
+                if (end - i >= minRunLength) {
+                    airRuns.add(i);
+                    airRuns.add(end - i);
+                    i = end;
+                    continue;
+                }
+                while (i < end) {
+                    values[valueCount++] = data[i++];
                 }
+                continue;
             }
+            values[valueCount++] = data[i++];
+        }
+        nbt.setByte("dataFormat", (byte) DATA_FORMAT_PACKED);
+        nbt.setByte("dataBits", (byte) bits);
+        nbt.setInteger("dataCount", valueCount);
+        nbt.setTag("packedData", writeChunked(BitPackedIntArray.pack(values, valueCount, bits)));
+        if (!airRuns.isEmpty()) {
+            nbt.setInteger("airIndex", airIndex);
+            nbt.setTag("airRuns", writeChunked(airRuns.toArray()));
         }
-        nbt.setTag("data", list);
-        nbt.setTag("entities", NBTUtilBC.writeCompoundList(entities.stream().map(SchematicEntityManager::writeToNBT)));
-        return nbt;
+    }
+
+    /** Splits the given array up into a list of smaller arrays, so that big blueprints can still be squished. */
+    private static NBTTagList writeChunked(int[] array) {
+        NBTTagList list = new NBTTagList();
+        for (int start = 0; start < array.length; start += MAX_ARRAY_CHUNK) {
+            list.appendTag(new NBTTagIntArray(
+                Arrays.copyOfRange(array, start, Math.min(array.length, start + MAX_ARRAY_CHUNK))
+            ));
+        }
+        return list;
+    }
+
+    /** Reads an array written by {@link #writeChunked(int[])}, or a single int array. */
+    private static int[] readChunked(NBTTagCompound nbt, String key) {
+        if (!nbt.hasKey(key, Constants.NBT.TAG_LIST)) {
+            return nbt.getIntArray(key);
+        }
+        NBTTagList list = nbt.getTagList(key, Constants.NBT.TAG_INT_ARRAY);
+        TIntArrayList array = new TIntArrayList();
+        for (int i = 0; i < list.tagCount(); i++) {
+            array.add(list.getIntArrayAt(i));
+        }
+        return array.toArray();
     }
 
     @Override
@@ -87,6 +175,74 @@ public class Blueprint extends Snapshot {
             palette.add(SchematicBlockManager.readFromNBT(schematicBlockTag));
         }
         data = new int[Snapshot.getDataSize(size)];
+        if (nbt.getByte("dataFormat") == DATA_FORMAT_PACKED) {
+            readPackedData(nbt);
+        } else {
+            readUnpackedData(nbt);
+        }
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] < 0 || data[i] >= palette.size()) {
+                throw new InvalidInputDataException(
+                    "Palette index " + data[i] + " at " + i + " is out of range (" + palette.size() + ")"
+                );
+            }
+        }
+        for (NBTTagCompound schematicEntityTag :
+            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
+            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
+        }
+    }
+
+    private void readPackedData(NBTTagCompound nbt) throws InvalidInputDataException {
+        int bits = nbt.getByte("dataBits");
+        if (bits < 1 || bits > 32) {
+            throw new InvalidInputDataException("Invalid bits per entry " + bits);
+        }
+        int valueCount = nbt.getInteger("dataCount");
+        int[] packed = readChunked(nbt, "packedData");
+        int[] airRuns = readChunked(nbt, "airRuns");
+        int airIndex = nbt.getInteger("airIndex");
+        if (valueCount < 0 || valueCount > data.length
+            || packed.length < BitPackedIntArray.getPackedLength(valueCount, bits)) {
+            throw new InvalidInputDataException(
+                "Serialized data has " + valueCount + " packed values in " + packed.length + " ints, but we expected"
+                    + " at most " + getDataSize() + " (" + size.toString() + ")"
+            );
+        }
+        if (airRuns.length % 2 != 0) {
+            throw new InvalidInputDataException("Air runs must be (start, length) pairs, but got " + airRuns.length);
+        }
+        int[] values = new int[valueCount];
+        BitPackedIntArray.unpack(packed, bits, values, valueCount);
+        int dataIndex = 0;
+        int valueIndex = 0;
+        for (int run = 0; run <= airRuns.length; run += 2) {
+            int runStart = run < airRuns.length ? airRuns[run] : data.length;
+            int runLength = run < airRuns.length ? airRuns[run + 1] : 0;
+            if (runStart < dataIndex || runLength < 0 || runStart + runLength > data.length) {
+                throw new InvalidInputDataException("Invalid air run " + runStart + "+" + runLength);
+            }
+            int toCopy = runStart - dataIndex;
+            if (valueIndex + toCopy > valueCount) {
+                throw new InvalidInputDataException(
+                    "Serialized data has " + valueCount + " packed values, but we expected more"
+                );
+            }
+            System.arraycopy(values, valueIndex, data, dataIndex, toCopy);
+            valueIndex += toCopy;
+            dataIndex = runStart;
+            Arrays.fill(data, dataIndex, dataIndex + runLength, airIndex);
+            dataIndex += runLength;
+        }
+        if (valueIndex != valueCount) {
+            throw new InvalidInputDataException(
+                "Serialized data has " + valueCount + " packed values, but only " + valueIndex + " were used"
+            );
+        }
+    }
+
+    /** Reads the older formats that stored one int per block, either as a list of int tags or as an int array. */
+    private void readUnpackedData(NBTTagCompound nbt) throws InvalidInputDataException {
         NBTTagList serializedDataList = nbt.hasKey("data", Constants.NBT.TAG_LIST)
             ? nbt.getTagList("data", Constants.NBT.TAG_INT)
             : null;
@@ -115,10 +271,6 @@ public class Blueprint extends Snapshot {
                 }
             }
         }
-        for (NBTTagCompound schematicEntityTag :
-            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
-            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
-        }
     }
 
     @Override
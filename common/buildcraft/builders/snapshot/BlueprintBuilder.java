@@ -23,6 +23,7 @@ import java.util.stream.Stream;
 
 import org.apache.commons.lang3.tuple.Pair;
 
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
@@ -225,6 +226,26 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
             getSchematicBlock(blockPos).isBuilt(tile.getWorldBC(), blockPos);
     }
 
+    @Override
+    protected byte checkCopy(Snapshot.BuildingInfo buildingInfo, int index, IBlockState state, boolean air) {
+        Blueprint.BuildingInfo blueprintBuildingInfo = (Blueprint.BuildingInfo) buildingInfo;
+        ISchematicBlock schematicBlock = blueprintBuildingInfo.rotatedPalette.get(
+            blueprintBuildingInfo.getSnapshot().data[index]
+        );
+        if (schematicBlock.isAir()) {
+            return air ? CHECK_RESULT_CORRECT : CHECK_RESULT_TO_BREAK;
+        }
+        // Subclasses (and every other schematic) could look at anything in the world, so only the default schematic
+        // can be checked from a copy
+        if (schematicBlock.getClass() == SchematicBlockDefault.class) {
+            if (((SchematicBlockDefault) schematicBlock).isBuilt(state)) {
+                return CHECK_RESULT_CORRECT;
+            }
+            return air ? CHECK_RESULT_TO_PLACE : CHECK_RESULT_TO_BREAK;
+        }
+        return CHECK_RESULT_UNKNOWN;
+    }
+
     @Override
     protected boolean doPlaceTask(PlaceTask placeTask) {
         // noinspection ConstantConditions
@@ -334,20 +355,15 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
     }
 
     @Override
-    protected boolean check(BlockPos blockPos) {
-        if (super.check(blockPos)) {
-            remainingDisplayRequiredBlocks[posToIndex(blockPos)] =
-                checkResults[posToIndex(blockPos)] != CHECK_RESULT_CORRECT
-                    ?
-                    getDisplayRequired(
-                        getBuildingInfo().toPlaceRequiredItems[posToIndex(blockPos)],
-                        getBuildingInfo().toPlaceRequiredFluids[posToIndex(blockPos)]
-                    ).collect(Collectors.toList())
-                    : Collections.emptyList();
-            return true;
-        } else {
-            return false;
-        }
+    protected void onCheckResultChanged(int i) {
+        remainingDisplayRequiredBlocks[i] =
+            checkResults[i] != CHECK_RESULT_CORRECT
+                ?
+                getDisplayRequired(
+                    getBuildingInfo().toPlaceRequiredItems[i],
+                    getBuildingInfo().toPlaceRequiredFluids[i]
+                ).collect(Collectors.toList())
+                : Collections.emptyList();
     }
 
     @Override
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import net.minecraft.util.math.BlockPos;
+
+/** The orders that a {@link SnapshotBuilder} breaks, places and checks blocks in. These only depend on the size of the
+ * box and where the builder is relative to it, so they are worked out for box-relative positions (in the same layout
+ * as {@link Snapshot#posToIndex(int, int, int, int, int, int)}, but using the world axes) and cached, so that identical
+ * builders can share them. Each builder then converts them into snapshot indices with
+ * {@link #toSnapshot(int[], int, int, int, int, int, int)}.
+ * <p>
+ * Every order is sorted on packed long keys with a radix sort, rather than by creating (and comparing) a
+ * {@link BlockPos} for every position. */
+final class BuildOrders {
+    private static final int MAX_CACHED = 16;
+    private static final int RADIX_BITS = 11;
+
+    /** Access ordered, so that the least recently used orders are removed first. */
+    private static final Map<Key, SoftReference<BuildOrders>> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    final int[] breakOrder;
+    final int[] placeOrder;
+    final int[] checkOrder;
+
+    private BuildOrders(int[] breakOrder, int[] placeOrder, int[] checkOrder) {
+        this.breakOrder = breakOrder;
+        this.placeOrder = placeOrder;
+        this.checkOrder = checkOrder;
+    }
+
+    /** Gets the orders for a box of the given size, with the builder at the given position relative to the minimum
+     * corner of the box. This can take a long time for big boxes, so it should be called from a worker thread. */
+    static BuildOrders get(BlockPos size, BlockPos builder) {
+        Key key = new Key(size, builder);
+        synchronized (CACHE) {
+            SoftReference<BuildOrders> ref = CACHE.get(key);
+            BuildOrders orders = ref == null ? null : ref.get();
+            if (orders != null) {
+                return orders;
+            }
+        }
+        BuildOrders orders = compute(size, builder);
+        synchronized (CACHE) {
+            CACHE.put(key, new SoftReference<>(orders));
+            if (CACHE.size() > MAX_CACHED) {
+                Iterator<Key> iter = CACHE.keySet().iterator();
+                iter.next();
+                iter.remove();
+            }
+        }
+        return orders;
+    }
+
+    private static BuildOrders compute(BlockPos size, BlockPos builder) {
+        int sizeX = size.getX(), sizeY = size.getY(), sizeZ = size.getZ();
+        // The same as Box.center(), relative to the minimum corner
+        int cx = sizeX / 2, cy = sizeY / 2, cz = sizeZ / 2;
+        int bx = builder.getX(), by = builder.getY(), bz = builder.getZ();
+        Sorter sorter = new Sorter(sizeX, sizeY, sizeZ);
+
+        int[] breakOrder = sorter.sort((x, y, z) ->
+            sq(x - cx) + sq(z - cz) + 100_000 - Math.abs(y - by) * 100_000L
+        );
+        int[] placeOrder = sorter.sort((x, y, z) ->
+            100_000 - (sq(x - bx) + sq(z - bz)) + Math.abs(y - by) * 100_000L
+        );
+        int[] checkOrder = sorter.sort((x, y, z) ->
+            sq(x - cx) + sq(y - cy) + sq(z - cz)
+        );
+        return new BuildOrders(breakOrder, placeOrder, checkOrder);
+    }
+
+    private static long sq(long value) {
+        return value * value;
+    }
+
+    /** Converts an order of box-relative indices into snapshot indices. As rotations only ever move whole axes around
+     * the snapshot index is always a linear function of the box-relative position.
+     *
+     * @param base The snapshot index of the minimum corner of the box.
+     * @param stepX The amount that the snapshot index changes by for every step along the world X axis. */
+    static int[] toSnapshot(int[] order, int sizeX, int sizeY, int base, int stepX, int stepY, int stepZ) {
+        int[] result = new int[order.length];
+        int layer = sizeX * sizeY;
+        for (int i = 0; i < order.length; i++) {
+            int index = order[i];
+            int x = index % sizeX;
+            int y = (index / sizeX) % sizeY;
+            int z = index / layer;
+            result[i] = base + x * stepX + y * stepY + z * stepZ;
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface IKeyFunction {
+        long getKey(int x, int y, int z);
+    }
+
+    /** Sorts every position in a box by a key, breaking ties by x, then y, then z (the same as
+     * BlockUtil.uniqueBlockPosComparator). The buffers are shared between every order sorted. */
+    private static final class Sorter {
+        private final int sizeX, sizeY, sizeZ, volume;
+        /** The number of bits needed for a tie-breaking rank. */
+        private final int rankBits;
+        private long[] values, buffer;
+
+        Sorter(int sizeX, int sizeY, int sizeZ) {
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.volume = sizeX * sizeY * sizeZ;
+            this.rankBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, volume - 1)));
+        }
+
+        int[] sort(IKeyFunction function) {
+            long[] keys = new long[volume];
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            // Rank order is x, then y, then z, so that equal keys are sorted in the same way as before
+            int rank = 0;
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    for (int z = 0; z < sizeZ; z++) {
+                        long key = function.getKey(x, y, z);
+                        keys[rank++] = key;
+                        min = Math.min(min, key);
+                        max = Math.max(max, key);
+                    }
+                }
+            }
+            long range = max - min;
+            int keyBits = range <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(range);
+            int[] order = new int[volume];
+            if (range < 0 || keyBits + rankBits > 63) {
+                // The keys are too spread out to be packed (the builder is very far away from the box), so just sort
+                // them normally
+                int[] sorted = IntStream.range(0, volume).boxed()
+                    .sorted(Comparator.<Integer> comparingLong(r -> keys[r]).thenComparingInt(r -> r))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+                for (int i = 0; i < volume; i++) {
+                    order[i] = rankToIndex(sorted[i]);
+                }
+                return order;
+            }
+
+            if (values == null) {
+                values = new long[volume];
+                buffer = new long[volume];
+            }
+            for (int r = 0; r < volume; r++) {
+                values[r] = ((keys[r] - min) << rankBits) | r;
+            }
+            radixSort(keyBits + rankBits);
+            long rankMask = (1L << rankBits) - 1;
+            for (int i = 0; i < volume; i++) {
+                order[i] = rankToIndex((int) (values[i] & rankMask));
+            }
+            return order;
+        }
+
+        private int rankToIndex(int rank) {
+            int z = rank % sizeZ;
+            int y = (rank / sizeZ) % sizeY;
+            int x = rank / (sizeZ * sizeY);
+            return Snapshot.posToIndex(sizeX, sizeY, sizeZ, x, y, z);
+        }
+
+        /** Least significant digit first radix sort of {@link #values}, using {@link #buffer}. */
+        private void radixSort(int bits) {
+            int[] counts = new int[1 << RADIX_BITS];
+            int mask = (1 << RADIX_BITS) - 1;
+            for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+                Arrays.fill(counts, 0);
+                for (long value : values) {
+                    counts[(int) (value >>> shift) & mask]++;
+                }
+                int total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    int count = counts[i];
+                    counts[i] = total;
+                    total += count;
+                }
+                for (long value : values) {
+                    buffer[counts[(int) (value >>> shift) & mask]++] = value;
+                }
+                long[] swap = values;
+                values = buffer;
+                buffer = swap;
+            }
+        }
+    }
+
+    private static final class Key {
+        private final int sizeX, sizeY, sizeZ;
+        private final int builderX, builderY, builderZ;
+
+        Key(BlockPos size, BlockPos builder) {
+            sizeX = size.getX();
+            sizeY = size.getY();
+            sizeZ = size.getZ();
+            builderX = builder.getX();
+            builderY = builder.getY();
+            builderZ = builder.getZ();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return sizeX == key.sizeX && sizeY == key.sizeY && sizeZ == key.sizeZ &&
+                builderX == key.builderX && builderY == key.builderY && builderZ == key.builderZ;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sizeX;
+            result = 31 * result + sizeY;
+            result = 31 * result + sizeZ;
+            result = 31 * result + builderX;
+            result = 31 * result + builderY;
+            result = 31 * result + builderZ;
+            return result;
+        }
+    }
+}
@@ -7,14 +7,11 @@
 package buildcraft.builders.snapshot;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
@@ -23,9 +20,6 @@ import javax.annotation.Nullable;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableList;
-
-import org.apache.commons.lang3.tuple.Pair;
 
 import net.minecraft.world.World;
 
@@ -33,20 +27,25 @@ import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
 import buildcraft.lib.misc.data.SingleCache;
-import buildcraft.lib.nbt.NbtSquisher;
 
 public class GlobalSavedDataSnapshots {
-    private static final String SNAPSHOT_FILE_EXTENSION = ".bcnbt";
+    /** The maximum total weight of the snapshots held in memory, where each snapshot weighs its volume in blocks. */
+    private static final long MAX_CACHED_VOLUME = 1 << 24;
     private static final Map<Side, GlobalSavedDataSnapshots> INSTANCES = new EnumMap<>(Side.class);
     private final LoadingCache<Snapshot.Key, Optional<Snapshot>> snapshotsCache = CacheBuilder.newBuilder()
+        .maximumWeight(MAX_CACHED_VOLUME)
+        .<Snapshot.Key, Optional<Snapshot>> weigher(
+            (key, snapshot) -> snapshot.map(s -> Math.max(1, s.getDataSize())).orElse(1)
+        )
         .expireAfterAccess(10, TimeUnit.MINUTES)
-        .build(CacheLoader.from(key -> Optional.ofNullable(readSnapshot(key)).map(Pair::getLeft)));
+        .build(CacheLoader.from(key -> Optional.ofNullable(getStore().read(key))));
     private final SingleCache<List<Snapshot.Key>> listCache = new SingleCache<>(
         this::readList,
         1,
         TimeUnit.SECONDS
     );
     private final File snapshotsFile;
+    private SnapshotStore store;
 
     private GlobalSavedDataSnapshots(Side side) {
         snapshotsFile = new File(
@@ -63,7 +62,10 @@ public class GlobalSavedDataSnapshots {
     }
 
     public static void reInit(Side side) {
-        INSTANCES.put(side, new GlobalSavedDataSnapshots(side));
+        GlobalSavedDataSnapshots old = INSTANCES.put(side, new GlobalSavedDataSnapshots(side));
+        if (old != null && old.store != null) {
+            old.store.close();
+        }
     }
 
     public static GlobalSavedDataSnapshots get(Side side) {
@@ -77,69 +79,37 @@ public class GlobalSavedDataSnapshots {
         return get(world.isRemote ? Side.CLIENT : Side.SERVER);
     }
 
-    private Pair<Snapshot, File> readSnapshot(Snapshot.Key key) {
-        File[] files = snapshotsFile.listFiles();
-        if (files != null) {
-            for (File snapshotFile : files) {
-                if (snapshotFile.getName().startsWith(key.toString()) &&
-                    snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (Objects.equals(snapshot.key, key)) {
-                            return Pair.of(snapshot, snapshotFile);
-                        }
-                    } catch (IOException e) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
-                    }
-                }
-            }
+    /** Lazily opens the store, as loading the index (and indexing any old snapshot files) is only worth doing once
+     * something actually asks for a snapshot. */
+    private synchronized SnapshotStore getStore() {
+        if (store == null) {
+            store = new SnapshotStore(snapshotsFile);
         }
-        return null;
+        return store;
     }
 
     private List<Snapshot.Key> readList() {
-        ImmutableList.Builder<Snapshot.Key> listBuilder = ImmutableList.builder();
-        File[] files = snapshotsFile.listFiles();
-        if (files != null) {
-            for (File snapshotFile : files) {
-                if (snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (snapshotFile.getName().startsWith(snapshot.key.toString())) {
-                            listBuilder.add(snapshot.key);
-                        }
-                    } catch (IOException io) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, io).printStackTrace();
-                    }
-                }
-            }
-        }
-        return listBuilder.build();
+        return getStore().getKeys();
     }
 
     public void addSnapshot(Snapshot snapshot) {
-        File snapshotFile = new File(
-            snapshotsFile,
-            snapshot.key.toString() + SNAPSHOT_FILE_EXTENSION
-        );
-        if (!snapshotFile.exists()) {
-            try (FileOutputStream fileOutputStream = new FileOutputStream(snapshotFile)) {
-                NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), fileOutputStream);
-            } catch (IOException e) {
-                new IOException("Failed to write the snapshot file: " + snapshotFile, e).printStackTrace();
-            }
+        try {
+            getStore().add(snapshot);
+        } catch (IOException e) {
+            new IOException("Failed to write the snapshot " + snapshot.key + " to " + snapshotsFile, e)
+                .printStackTrace();
         }
         snapshotsCache.invalidate(snapshot.key);
         listCache.clear();
     }
 
     public void removeSnapshot(Snapshot.Key key) {
-        Optional.ofNullable(readSnapshot(key)).map(Pair::getRight).ifPresent(snapshotFile -> {
-            if (!snapshotFile.delete()) {
-                new IOException("Failed to read the snapshot file: " + snapshotFile).printStackTrace();
-            }
-            snapshotsCache.invalidate(key);
-        });
+        try {
+            getStore().remove(key);
+        } catch (IOException e) {
+            new IOException("Failed to remove the snapshot " + key + " from " + snapshotsFile, e).printStackTrace();
+        }
+        snapshotsCache.invalidate(key);
         listCache.clear();
     }
 
@@ -347,9 +347,15 @@ public class SchematicBlockDefault implements ISchematicBlock {
 
     @Override
     public boolean isBuilt(World world, BlockPos blockPos) {
+        return isBuilt(world.getBlockState(blockPos));
+    }
+
+    /** The same as {@link #isBuilt(World, BlockPos)}, but for a block state that has already been read out of the world
+     * (so this can be called from any thread). */
+    public boolean isBuilt(IBlockState worldState) {
         return blockState != null &&
-            canBeReplacedWithBlocks.contains(world.getBlockState(blockPos).getBlock()) &&
-            BlockUtil.blockStatesWithoutBlockEqual(blockState, world.getBlockState(blockPos), ignoredProperties);
+            canBeReplacedWithBlocks.contains(worldState.getBlock()) &&
+            BlockUtil.blockStatesWithoutBlockEqual(blockState, worldState, ignoredProperties);
     }
 
     @Override
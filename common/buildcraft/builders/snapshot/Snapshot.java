@@ -32,6 +32,7 @@ import buildcraft.lib.misc.RotationUtil;
 import buildcraft.lib.misc.StringUtilBC;
 import buildcraft.lib.misc.VecUtil;
 import buildcraft.lib.misc.data.Box;
+import buildcraft.lib.nbt.NbtSquishWriter;
 import buildcraft.lib.net.PacketBufferBC;
 
 public abstract class Snapshot {
@@ -120,6 +121,17 @@ public abstract class Snapshot {
         return nbt;
     }
 
+    /** Adds the same compound as {@link #writeToNBT(Snapshot)} to the given writer, but without creating the tags for
+     * the block data first.
+     *
+     * @return The reference to the snapshot's compound. */
+    public static int writeToSquish(Snapshot snapshot, NbtSquishWriter writer) {
+        NbtSquishWriter.CompoundBuilder builder = writer.newCompound();
+        snapshot.serializeSquish(writer, builder);
+        builder.set("type", writer.addTag(NBTUtilBC.writeEnum(snapshot.getType())));
+        return builder.build();
+    }
+
     public static Snapshot readFromNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         NBTBase tag = nbt.getTag("type");
         EnumSnapshotType type = NBTUtilBC.readEnum(tag, EnumSnapshotType.class);
@@ -140,6 +152,14 @@ public abstract class Snapshot {
         return nbt;
     }
 
+    /** Writes the same values as {@link #serializeNBT()} into the given compound. */
+    protected void serializeSquish(NbtSquishWriter writer, NbtSquishWriter.CompoundBuilder builder) {
+        builder.set("key", writer.addTag(key.serializeNBT()));
+        builder.set("size", writer.addTag(NBTUtil.createPosTag(size)));
+        builder.set("facing", writer.addTag(NBTUtilBC.writeEnum(facing)));
+        builder.set("offset", writer.addTag(NBTUtil.createPosTag(offset)));
+    }
+
     public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         key = new Key(nbt.getCompoundTag("key"));
         size = NBTUtil.getPosFromTag(nbt.getCompoundTag("size"));
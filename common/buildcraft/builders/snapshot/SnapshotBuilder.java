@@ -9,12 +9,13 @@ package buildcraft.builders.snapshot;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -41,6 +42,7 @@ import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.misc.WorkerThreadUtil;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.world.WorldEventListenerAdapter;
 
@@ -89,6 +91,17 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     private int[] breakOrder;
     private int[] placeOrder;
     private int[] checkOrder;
+    /** Computes the orders, which are null until it has finished. */
+    private Future<int[][]> ordersTask;
+    /** Every position in {@link #breakOrder} that is currently {@link #CHECK_RESULT_TO_BREAK}. */
+    private Worklist breakWorklist;
+    /** Every position in {@link #placeOrder} that is currently {@link #CHECK_RESULT_TO_PLACE}. */
+    private Worklist placeWorklist;
+    /** Checks every position in bulk after the snapshot changes, which is null once it has finished. */
+    private SnapshotVerifier verifier;
+    /** Every index that has been checked with the world while {@link #verifier} is running, so that the (possibly
+     * older) result from a copy isn't merged over it. */
+    private BitSet checkedWhileVerifying;
     private int currentCheckIndex;
     public Vec3d robotPos = null;
     public Vec3d prevRobotPos = null;
@@ -154,6 +167,16 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
      */
     protected abstract boolean isBlockCorrect(BlockPos blockPos);
 
+    /**
+     * Works out the same result as {@link #check(BlockPos)}, but from a copy of the block state that was in the world.
+     * This is called from worker threads, so it can only use the given building info and the copy.
+     *
+     * @param index The snapshot index
+     * @param air If the copied block is air
+     * @return The check result, or {@link #CHECK_RESULT_UNKNOWN} if it can only be checked with the world
+     */
+    protected abstract byte checkCopy(Snapshot.BuildingInfo buildingInfo, int index, IBlockState state, boolean air);
+
     /**
      * @return Pos where flying item should be rendered
      */
@@ -180,30 +203,51 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
                 getBuildingInfo().box.size().getZ()
             ];
         Arrays.fill(requiredCache, REQUIRED_UNKNOWN);
-        breakOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                Math.pow(blockPos.getX() - getBuildingInfo().box.center().getX(), 2) +
-                    Math.pow(blockPos.getZ() - getBuildingInfo().box.center().getZ(), 2) +
-                    100_000 - Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
-        placeOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                100_000 - (Math.pow(blockPos.getX() - tile.getBuilderPos().getX(), 2) +
-                    Math.pow(blockPos.getZ() - tile.getBuilderPos().getZ(), 2)) +
-                    Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
-        checkOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                Math.pow(blockPos.getX() - getBuildingInfo().box.center().getX(), 2) +
-                    Math.pow(blockPos.getY() - getBuildingInfo().box.center().getY(), 2) +
-                    Math.pow(blockPos.getZ() - getBuildingInfo().box.center().getZ(), 2)
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
+        breakOrder = null;
+        placeOrder = null;
+        checkOrder = null;
+        breakWorklist = null;
+        placeWorklist = null;
+        verifier = null;
+        checkedWhileVerifying = null;
+        if (tile.getWorldBC().isRemote) {
+            // The client never adds tasks itself
+            tile.getWorldBC().profiler.endSection();
+            return;
+        }
+        // The orders only depend on the box and where the builder is, so they are computed (or taken from the
+        // cache) on a worker thread, and then converted into snapshot indices
+        BlockPos min = getBuildingInfo().box.min();
+        BlockPos boxSize = getBuildingInfo().box.size();
+        BlockPos builder = tile.getBuilderPos().subtract(min);
+        int base = posToIndex(min);
+        int stepX = posToIndex(min.add(1, 0, 0)) - base;
+        int stepY = posToIndex(min.add(0, 1, 0)) - base;
+        int stepZ = posToIndex(min.add(0, 0, 1)) - base;
+        ordersTask = WorkerThreadUtil.executeWorkTask(() -> {
+            BuildOrders orders = BuildOrders.get(boxSize, builder);
+            int sizeX = boxSize.getX();
+            int sizeY = boxSize.getY();
+            return new int[][] {
+                BuildOrders.toSnapshot(orders.breakOrder, sizeX, sizeY, base, stepX, stepY, stepZ),
+                BuildOrders.toSnapshot(orders.placeOrder, sizeX, sizeY, base, stepX, stepY, stepZ),
+                BuildOrders.toSnapshot(orders.checkOrder, sizeX, sizeY, base, stepX, stepY, stepZ)
+            };
+        });
+        // Every position is checked from copies of the world on worker threads, rather than waiting for the
+        // (slow) scan to get around to it
+        Snapshot.BuildingInfo buildingInfo = getBuildingInfo();
+        verifier = new SnapshotVerifier(
+            tile.getWorldBC(),
+            min,
+            boxSize,
+            base,
+            stepX,
+            stepY,
+            stepZ,
+            (index, state, air) -> checkCopy(buildingInfo, index, state, air)
+        );
+        checkedWhileVerifying = new BitSet(checkResults.length);
         tile.getWorldBC().profiler.endSection();
     }
 
@@ -225,6 +269,11 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         breakOrder = null;
         placeOrder = null;
         checkOrder = null;
+        ordersTask = null;
+        breakWorklist = null;
+        placeWorklist = null;
+        verifier = null;
+        checkedWhileVerifying = null;
         currentCheckIndex = 0;
         robotPos = null;
         prevRobotPos = null;
@@ -281,10 +330,29 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
             if (check(indexToPos(currentCheckIndex))) {
                 checkResultsChanged = true;
             }
-            currentCheckIndex = (currentCheckIndex + 1) % checkOrder.length;
+            currentCheckIndex = (currentCheckIndex + 1) % checkResults.length;
         }
         tile.getWorldBC().profiler.endSection();
 
+        if (verifier != null) {
+            tile.getWorldBC().profiler.startSection("verify");
+            if (verifier.tick(this::mergeVerified)) {
+                checkResultsChanged = true;
+            }
+            if (verifier.isDone()) {
+                verifier = null;
+                checkedWhileVerifying = null;
+            }
+            tile.getWorldBC().profiler.endSection();
+        }
+
+        if (!hasOrders()) {
+            if (checkResultsChanged) {
+                afterChecks();
+            }
+            return false;
+        }
+
         tile.getWorldBC().profiler.startSection("remove tasks");
         tile.getWorldBC().profiler.startSection("break");
         for (Iterator<BreakTask> iterator = breakTasks.iterator(); iterator.hasNext(); ) {
@@ -306,71 +374,65 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         tile.getWorldBC().profiler.endSection();
         tile.getWorldBC().profiler.endSection();
 
-        boolean isDone = true;
+        // Nothing is done until every position has been checked at least once
+        boolean isDone = verifier == null;
 
         tile.getWorldBC().profiler.startSection("add tasks");
         tile.getWorldBC().profiler.startSection("break");
         if (tile.canExcavate()) {
-            Set<Integer> breakTasksIndexes = breakTasks.stream()
-                .map(breakTask -> posToIndex(breakTask.pos))
-                .collect(Collectors.toSet());
-            int[] blocks = Arrays.stream(breakOrder)
-                .filter(i -> checkResults[i] == CHECK_RESULT_TO_BREAK && !breakTasksIndexes.contains(i))
-                .toArray();
-            leftToBreak = blocks.length;
-            if (blocks.length != 0) {
+            int[] queued = breakTasks.stream().mapToInt(breakTask -> posToIndex(breakTask.pos)).toArray();
+            leftToBreak = breakWorklist.size() - countResults(queued, CHECK_RESULT_TO_BREAK);
+            if (leftToBreak != 0) {
                 isDone = false;
             }
-            Arrays.stream(blocks)
-                .mapToObj(this::indexToPos)
-                .filter(blockPos -> BlockUtil.getFluidWithFlowing(tile.getWorldBC(), blockPos) == null)
-                .map(blockPos ->
-                    new BreakTask(
-                        blockPos,
-                        0
-                    )
-                )
-                .limit(MAX_QUEUE_SIZE - breakTasks.size())
-                .forEach(breakTasks::add);
+            for (int r = breakWorklist.first();
+                 r >= 0 && breakTasks.size() < MAX_QUEUE_SIZE;
+                 r = breakWorklist.next(r)) {
+                int i = breakOrder[r];
+                if (contains(queued, i)) {
+                    continue;
+                }
+                BlockPos blockPos = indexToPos(i);
+                if (BlockUtil.getFluidWithFlowing(tile.getWorldBC(), blockPos) == null) {
+                    breakTasks.add(new BreakTask(blockPos, 0));
+                }
+            }
         } else {
             leftToBreak = 0;
         }
         tile.getWorldBC().profiler.endSection();
         tile.getWorldBC().profiler.startSection("place");
         {
-            Set<Integer> placeTasksIndexes = placeTasks.stream()
-                .map(placeTask -> posToIndex(placeTask.pos))
-                .collect(Collectors.toSet());
-            int[] blocks = Arrays.stream(placeOrder)
-                .filter(i -> checkResults[i] == CHECK_RESULT_TO_PLACE && !placeTasksIndexes.contains(i))
-                .toArray();
-            leftToPlace = blocks.length;
+            int[] queued = placeTasks.stream().mapToInt(placeTask -> posToIndex(placeTask.pos)).toArray();
+            leftToPlace = placeWorklist.size() - countResults(queued, CHECK_RESULT_TO_PLACE);
             if (!tile.canExcavate() || breakTasks.isEmpty()) {
-                if (blocks.length != 0) {
+                if (leftToPlace != 0) {
                     isDone = false;
                 }
-                Arrays.stream(blocks)
-                    .filter(i -> {
-                        if (requiredCache[i] != REQUIRED_UNKNOWN) {
-                            return requiredCache[i] == REQUIRED_TRUE;
+                int limit = MAX_QUEUE_SIZE - placeTasks.size();
+                for (int r = placeWorklist.first(); r >= 0 && limit > 0; r = placeWorklist.next(r)) {
+                    int i = placeOrder[r];
+                    if (contains(queued, i)) {
+                        continue;
+                    }
+                    if (requiredCache[i] == REQUIRED_UNKNOWN) {
+                        requiredCache[i] = hasEnoughToPlaceItems(indexToPos(i)) ? REQUIRED_TRUE : REQUIRED_FALSE;
+                    }
+                    if (requiredCache[i] != REQUIRED_TRUE) {
+                        continue;
+                    }
+                    BlockPos blockPos = indexToPos(i);
+                    if (!isReadyToPlace(blockPos)) {
+                        continue;
+                    }
+                    limit--;
+                    if (canPlace(blockPos)) {
+                        PlaceTask placeTask = new PlaceTask(blockPos, getToPlaceItems(blockPos), 0);
+                        if (placeTask.items != null) {
+                            placeTasks.add(placeTask);
                         }
-                        boolean has = hasEnoughToPlaceItems(indexToPos(i));
-                        requiredCache[i] = has ? REQUIRED_TRUE : REQUIRED_FALSE;
-                        return has;
-                    })
-                    .mapToObj(this::indexToPos)
-                    .filter(this::isReadyToPlace)
-                    .limit(MAX_QUEUE_SIZE - placeTasks.size())
-                    .filter(this::canPlace)
-                    .map(blockPos ->
-                        new PlaceTask(
-                            blockPos,
-                            getToPlaceItems(blockPos),
-                            0
-                        )
-                    )
-                    .filter(placeTask -> placeTask.items != null)
-                    .forEach(placeTasks::add);
+                    }
+                }
             }
         }
         tile.getWorldBC().profiler.endSection();
@@ -477,28 +539,131 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         return getBuildingInfo().toWorld(getBuildingInfo().getSnapshot().indexToPos(i));
     }
 
+    /**
+     * @return true if the orders have been computed, false if they are still being computed
+     */
+    private boolean hasOrders() {
+        if (breakOrder != null) {
+            return true;
+        }
+        if (ordersTask == null || !ordersTask.isDone()) {
+            return false;
+        }
+        int[][] orders;
+        try {
+            orders = ordersTask.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Failed to compute the build orders!", e);
+        }
+        ordersTask = null;
+        breakOrder = orders[0];
+        placeOrder = orders[1];
+        checkOrder = orders[2];
+        breakWorklist = new Worklist(breakOrder);
+        placeWorklist = new Worklist(placeOrder);
+        for (int i = 0; i < checkResults.length; i++) {
+            if (checkResults[i] == CHECK_RESULT_TO_BREAK) {
+                breakWorklist.add(i);
+            } else if (checkResults[i] == CHECK_RESULT_TO_PLACE) {
+                placeWorklist.add(i);
+            }
+        }
+        return true;
+    }
+
+    private int countResults(int[] indexes, byte result) {
+        int count = 0;
+        for (int i : indexes) {
+            if (checkResults[i] == result) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int v : array) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @return true if changed, false otherwise
      */
     protected boolean check(BlockPos blockPos) {
         int i = posToIndex(blockPos);
-        byte prev = checkResults[i];
+        if (checkedWhileVerifying != null) {
+            checkedWhileVerifying.set(i);
+        }
+        byte result;
         if (isAir(blockPos)) {
             if (tile.getWorldBC().isAirBlock(blockPos)) {
-                checkResults[i] = CHECK_RESULT_CORRECT;
+                result = CHECK_RESULT_CORRECT;
             } else {
-                checkResults[i] = CHECK_RESULT_TO_BREAK;
+                result = CHECK_RESULT_TO_BREAK;
             }
         } else {
             if (isBlockCorrect(blockPos)) {
-                checkResults[i] = CHECK_RESULT_CORRECT;
+                result = CHECK_RESULT_CORRECT;
             } else if (canPlace(blockPos)) {
-                checkResults[i] = CHECK_RESULT_TO_PLACE;
+                result = CHECK_RESULT_TO_PLACE;
             } else {
-                checkResults[i] = CHECK_RESULT_TO_BREAK;
+                result = CHECK_RESULT_TO_BREAK;
             }
         }
-        return prev != checkResults[i];
+        return setCheckResult(i, result);
+    }
+
+    /**
+     * Merges a result from {@link #verifier}
+     *
+     * @return true if changed, false otherwise
+     */
+    private boolean mergeVerified(int i, byte result) {
+        if (checkedWhileVerifying.get(i)) {
+            return false;
+        }
+        if (result == CHECK_RESULT_UNKNOWN) {
+            return check(indexToPos(i));
+        }
+        return setCheckResult(i, result);
+    }
+
+    /**
+     * Sets the check result of the given index, and moves it between the worklists
+     *
+     * @return true if changed, false otherwise
+     */
+    private boolean setCheckResult(int i, byte result) {
+        byte prev = checkResults[i];
+        if (prev == result) {
+            return false;
+        }
+        // Before the orders have been computed there aren't any worklists yet: they will be filled from the results
+        if (breakWorklist != null) {
+            if (prev == CHECK_RESULT_TO_BREAK) {
+                breakWorklist.remove(i);
+            } else if (prev == CHECK_RESULT_TO_PLACE) {
+                placeWorklist.remove(i);
+            }
+            if (result == CHECK_RESULT_TO_BREAK) {
+                breakWorklist.add(i);
+            } else if (result == CHECK_RESULT_TO_PLACE) {
+                placeWorklist.add(i);
+            }
+        }
+        checkResults[i] = result;
+        onCheckResultChanged(i);
+        return true;
+    }
+
+    /**
+     * Called whenever the check result of the given index changes
+     */
+    protected void onCheckResultChanged(int i) {
     }
 
     protected void afterChecks() {
@@ -535,7 +700,10 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     @Override
     public void deserializeNBT(NBTTagCompound nbt) {
         updateSnapshot();
-        checkResults = nbt.getByteArray("checkResults");
+        byte[] savedResults = nbt.getByteArray("checkResults");
+        for (int i = 0; i < Math.min(savedResults.length, checkResults.length); i++) {
+            setCheckResult(i, savedResults[i]);
+        }
         breakTasks.clear();
         NBTUtilBC.readCompoundList(nbt.getTag("breakTasks")).map(BreakTask::new).forEach(breakTasks::add);
         placeTasks.clear();
@@ -543,6 +711,56 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         currentCheckIndex = nbt.getInteger("currentCheckIndex");
     }
 
+    /**
+     * The positions in a build order that currently need something done to them. Each position is stored as its rank in
+     * the order, so that they can be found in order without looking at every position that doesn't need anything done.
+     */
+    private static final class Worklist {
+        private final int[] ranks;
+        private final BitSet pending;
+        private int size;
+        /** No rank before this is pending. */
+        private int cursor;
+
+        Worklist(int[] order) {
+            ranks = new int[order.length];
+            for (int r = 0; r < order.length; r++) {
+                ranks[order[r]] = r;
+            }
+            pending = new BitSet(order.length);
+            cursor = order.length;
+        }
+
+        void add(int index) {
+            int rank = ranks[index];
+            pending.set(rank);
+            size++;
+            cursor = Math.min(cursor, rank);
+        }
+
+        void remove(int index) {
+            pending.clear(ranks[index]);
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return The first pending rank, or -1 if nothing is pending
+         */
+        int first() {
+            int first = pending.nextSetBit(cursor);
+            cursor = first < 0 ? ranks.length : first;
+            return first;
+        }
+
+        int next(int rank) {
+            return pending.nextSetBit(rank + 1);
+        }
+    }
+
     public class BreakTask {
         public final BlockPos pos;
         public long power;
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import buildcraft.api.enums.EnumSnapshotType;
+import buildcraft.api.schematics.ISchematicBlock;
+import buildcraft.api.schematics.SchematicBlockContext;
+
+import buildcraft.lib.misc.WorkerThreadUtil;
+
+/** Scans the blocks in a box into either template or blueprint data, one chunk section at a time.
+ * <p>
+ * Every tick the main thread copies a few sections straight out of their chunks. Default and air schematics are only
+ * created once for every block state that doesn't have a tile entity (as nothing else about the position can change
+ * them), so the main thread mostly only creates a new schematic for new states and tile entities. Other schematics (for
+ * example fluids, which check the blocks around them) are created for every position. Creating schematics can be slow,
+ * so only a few are created every tick, and a section waits until all of its schematics have been created. Working out
+ * the palette for each section (which needs every schematic to be compared) is done on worker threads, and merged back
+ * in by the main thread later. */
+public class SnapshotScanner {
+    /** The maximum number of blocks to copy out of the world every tick. */
+    private static final int MAX_BLOCKS_PER_TICK = 16 * 16 * 16 * 8;
+    /** The maximum number of schematics to create every tick, that can't be shared with every block of the same state
+     * (such as tile entities and fluids). */
+    private static final int MAX_SCHEMATICS_PER_TICK = 64;
+    /** The maximum number of sections waiting for a worker thread, which limits how much memory is used for copies. */
+    private static final int MAX_PENDING_SECTIONS = 64;
+
+    private final World world;
+    private final BlockPos min;
+    private final BlockPos size;
+    private final EnumSnapshotType snapshotType;
+
+    /** Every section that intersects the box, as {min x, min y, min z, max x, max y, max z} relative to the box. */
+    private final List<int[]> sections;
+    private int nextSection = 0;
+    /** The blueprint section that has been copied, but is still waiting for some of its schematics to be created. */
+    private CopiedSection copying = null;
+    private final Deque<PendingSection> pending = new ArrayDeque<>();
+
+    private final BitSet templateData;
+    private final int[] blueprintData;
+    private final List<ISchematicBlock> blueprintPalette = new ArrayList<>();
+    private final Map<ISchematicBlock, Integer> blueprintPaletteIndices = new HashMap<>();
+    /** Every schematic created for a block state without a tile entity, if it doesn't depend on anything else about the
+     * position (from {@link #canShare(ISchematicBlock)}). Only used by the main thread. */
+    private final Map<IBlockState, ISchematicBlock> stateSchematics = new IdentityHashMap<>();
+
+    private boolean failed = false;
+
+    public SnapshotScanner(World world, BlockPos min, BlockPos size, EnumSnapshotType snapshotType) {
+        this.world = world;
+        this.min = min;
+        this.size = size;
+        this.snapshotType = snapshotType;
+        if (snapshotType == EnumSnapshotType.TEMPLATE) {
+            templateData = new BitSet(Snapshot.getDataSize(size));
+            blueprintData = null;
+        } else {
+            templateData = null;
+            blueprintData = new int[Snapshot.getDataSize(size)];
+        }
+
+        sections = getSections(min, size);
+    }
+
+    /** @return Every chunk section that intersects the given box, as {min x, min y, min z, max x, max y, max z}
+     *         relative to the box. These go from the bottom of the box to the top. */
+    static List<int[]> getSections(BlockPos min, BlockPos size) {
+        List<int[]> sections = new ArrayList<>();
+        // Bottom to top, so that the client sees the scan move up the box
+        BlockPos max = min.add(size).add(-1, -1, -1);
+        for (int sy = min.getY() >> 4; sy <= max.getY() >> 4; sy++) {
+            for (int sz = min.getZ() >> 4; sz <= max.getZ() >> 4; sz++) {
+                for (int sx = min.getX() >> 4; sx <= max.getX() >> 4; sx++) {
+                    sections.add(new int[] {
+                        Math.max(sx << 4, min.getX()) - min.getX(),
+                        Math.max(sy << 4, min.getY()) - min.getY(),
+                        Math.max(sz << 4, min.getZ()) - min.getZ(),
+                        Math.min((sx << 4) + 15, max.getX()) - min.getX(),
+                        Math.min((sy << 4) + 15, max.getY()) - min.getY(),
+                        Math.min((sz << 4) + 15, max.getZ()) - min.getZ()
+                    });
+                }
+            }
+        }
+        return sections;
+    }
+
+    /** @return An estimate of how many ticks it will take to scan everything. */
+    public int getEstimatedTicks() {
+        return Snapshot.getDataSize(size) / MAX_BLOCKS_PER_TICK + 1;
+    }
+
+    /** Copies the next few sections out of the world, and merges in every section that has been finished by a worker
+     * thread.
+     *
+     * @param scanned Called with the world position of the first block in every section that was copied.
+     * @return True if everything has been scanned. */
+    public boolean tick(Consumer<BlockPos> scanned) {
+        if (failed) {
+            return false;
+        }
+        int budget = MAX_BLOCKS_PER_TICK;
+        int schematicBudget = MAX_SCHEMATICS_PER_TICK;
+        while (budget > 0 && pending.size() < MAX_PENDING_SECTIONS) {
+            if (copying != null) {
+                schematicBudget = createSchematics(copying, schematicBudget);
+                if (copying.next < copying.schematics.length) {
+                    break;
+                }
+                pending.addLast(new PendingSection(
+                    copying.section, WorkerThreadUtil.executeWorkTask(new SectionPalette(copying.schematics))
+                ));
+                copying = null;
+            }
+            if (nextSection == sections.size()) {
+                break;
+            }
+            int[] section = sections.get(nextSection++);
+            budget -= copySection(section);
+            scanned.accept(min.add(section[0], section[1], section[2]));
+        }
+        while (!pending.isEmpty() && pending.peekFirst().result.isDone()) {
+            PendingSection done = pending.pollFirst();
+            try {
+                mergeSection(done.section, done.result.get());
+            } catch (InterruptedException | ExecutionException e) {
+                // Already logged by WorkerThreadUtil
+                failed = true;
+                return false;
+            }
+        }
+        return nextSection == sections.size() && copying == null && pending.isEmpty();
+    }
+
+    /** @return True if a worker thread failed, in which case this scanner will never finish. */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    public BitSet getTemplateData() {
+        return templateData;
+    }
+
+    public int[] getBlueprintData() {
+        return blueprintData;
+    }
+
+    public List<ISchematicBlock> getBlueprintPalette() {
+        return blueprintPalette;
+    }
+
+    /** @return The number of blocks in the section. */
+    private int copySection(int[] section) {
+        int wx0 = min.getX() + section[0], wy0 = min.getY() + section[1], wz0 = min.getZ() + section[2];
+        int lenX = section[3] - section[0] + 1;
+        int lenY = section[4] - section[1] + 1;
+        int lenZ = section[5] - section[2] + 1;
+        Chunk chunk = world.getChunkFromChunkCoords(wx0 >> 4, wz0 >> 4);
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        int storageIndex = wy0 >> 4;
+        ExtendedBlockStorage storage = storageIndex >= 0 && storageIndex < storages.length
+            ? storages[storageIndex]
+            : Chunk.NULL_BLOCK_STORAGE;
+        boolean empty = storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty();
+        IBlockState air = Blocks.AIR.getDefaultState();
+        BlockPos.MutableBlockPos worldPos = new BlockPos.MutableBlockPos();
+
+        if (snapshotType == EnumSnapshotType.TEMPLATE) {
+            if (!empty) {
+                for (int z = 0; z < lenZ; z++) {
+                    for (int y = 0; y < lenY; y++) {
+                        for (int x = 0; x < lenX; x++) {
+                            IBlockState state = storage.get((wx0 + x) & 15, (wy0 + y) & 15, (wz0 + z) & 15);
+                            worldPos.setPos(wx0 + x, wy0 + y, wz0 + z);
+                            if (!state.getBlock().isAir(state, world, worldPos)) {
+                                templateData.set(Snapshot.posToIndex(
+                                    size, section[0] + x, section[1] + y, section[2] + z
+                                ));
+                            }
+                        }
+                    }
+                }
+            }
+            return lenX * lenY * lenZ;
+        }
+
+        // Only the states are copied here, the schematics are created later by createSchematics
+        CopiedSection copied = new CopiedSection(section, new BlockPos(wx0, wy0, wz0), lenX, lenY, lenZ);
+        int i = 0;
+        for (int z = 0; z < lenZ; z++) {
+            for (int y = 0; y < lenY; y++) {
+                for (int x = 0; x < lenX; x++) {
+                    copied.states[i++] = empty ? air : storage.get((wx0 + x) & 15, (wy0 + y) & 15, (wz0 + z) & 15);
+                }
+            }
+        }
+        copying = copied;
+        return copied.states.length;
+    }
+
+    /** Creates the schematics for the given section, until it's done or the budget runs out. Reusing a shared
+     * schematic is free, so only creating a new one counts towards the budget.
+     *
+     * @return The budget that is left. */
+    private int createSchematics(CopiedSection copied, int budget) {
+        IBlockState lastState = null;
+        ISchematicBlock lastSchematic = null;
+        while (copied.next < copied.states.length) {
+            int i = copied.next;
+            IBlockState state = copied.states[i];
+            ISchematicBlock schematic;
+            if (state == lastState) {
+                schematic = lastSchematic;
+            } else {
+                boolean hasTile = state.getBlock().hasTileEntity(state);
+                schematic = hasTile ? null : stateSchematics.get(state);
+                if (schematic == null) {
+                    if (budget <= 0) {
+                        break;
+                    }
+                    budget--;
+                    schematic = readSchematicBlock(copied.getWorldPos(i), state);
+                    if (!hasTile && canShare(schematic)) {
+                        stateSchematics.put(state, schematic);
+                    }
+                }
+                if (!hasTile && canShare(schematic)) {
+                    lastState = state;
+                    lastSchematic = schematic;
+                }
+            }
+            copied.schematics[i] = schematic;
+            copied.states[i] = null;
+            copied.next++;
+        }
+        return budget;
+    }
+
+    /** @return True if the given schematic (for a block state without a tile entity) can be used for every position
+     *         with the same state. Subclasses (and schematics from other mods) are free to look at the world around the
+     *         position, so only the exact default and air classes are known to be safe. */
+    private static boolean canShare(ISchematicBlock schematic) {
+        Class<?> cls = schematic.getClass();
+        return cls == SchematicBlockDefault.class || cls == SchematicBlockAir.class;
+    }
+
+    private ISchematicBlock readSchematicBlock(BlockPos worldPos, IBlockState state) {
+        return SchematicBlockManager.getSchematicBlock(new SchematicBlockContext(
+            world,
+            min,
+            worldPos,
+            state,
+            state.getBlock()
+        ));
+    }
+
+    private void mergeSection(int[] section, SectionPalette palette) {
+        int[] remap = new int[palette.palette.size()];
+        for (int p = 0; p < remap.length; p++) {
+            ISchematicBlock schematic = palette.palette.get(p);
+            Integer index = blueprintPaletteIndices.get(schematic);
+            if (index == null) {
+                index = blueprintPalette.size();
+                blueprintPalette.add(schematic);
+                blueprintPaletteIndices.put(schematic, index);
+            }
+            remap[p] = index;
+        }
+        int i = 0;
+        for (int z = section[2]; z <= section[5]; z++) {
+            for (int y = section[1]; y <= section[4]; y++) {
+                for (int x = section[0]; x <= section[3]; x++) {
+                    blueprintData[Snapshot.posToIndex(size, x, y, z)] = remap[palette.data[i++]];
+                }
+            }
+        }
+    }
+
+    private static class CopiedSection {
+        final int[] section;
+        final BlockPos worldMin;
+        final int lenX, lenY;
+        final IBlockState[] states;
+        final ISchematicBlock[] schematics;
+        /** The index of the first position that doesn't have a schematic yet. */
+        int next = 0;
+
+        CopiedSection(int[] section, BlockPos worldMin, int lenX, int lenY, int lenZ) {
+            this.section = section;
+            this.worldMin = worldMin;
+            this.lenX = lenX;
+            this.lenY = lenY;
+            this.states = new IBlockState[lenX * lenY * lenZ];
+            this.schematics = new ISchematicBlock[states.length];
+        }
+
+        BlockPos getWorldPos(int index) {
+            return worldMin.add(index % lenX, (index / lenX) % lenY, index / (lenX * lenY));
+        }
+    }
+
+    private static class PendingSection {
+        final int[] section;
+        final Future<SectionPalette> result;
+
+        PendingSection(int[] section, Future<SectionPalette> result) {
+            this.section = section;
+            this.result = result;
+        }
+    }
+
+    /** Works out the palette of a single section, on a worker thread. */
+    private static class SectionPalette implements Callable<SectionPalette> {
+        private ISchematicBlock[] schematics;
+        final List<ISchematicBlock> palette = new ArrayList<>();
+        final int[] data;
+
+        SectionPalette(ISchematicBlock[] schematics) {
+            this.schematics = schematics;
+            this.data = new int[schematics.length];
+        }
+
+        @Override
+        public SectionPalette call() {
+            // Most schematics are shared between blocks, so check for the same instance before comparing them
+            Map<ISchematicBlock, Integer> sameIndices = new IdentityHashMap<>();
+            Map<ISchematicBlock, Integer> equalIndices = new HashMap<>();
+            for (int i = 0; i < schematics.length; i++) {
+                ISchematicBlock schematic = schematics[i];
+                Integer index = sameIndices.get(schematic);
+                if (index == null) {
+                    index = equalIndices.get(schematic);
+                    if (index == null) {
+                        index = palette.size();
+                        palette.add(schematic);
+                        equalIndices.put(schematic, index);
+                    }
+                    sameIndices.put(schematic, index);
+                }
+                data[i] = index;
+            }
+            schematics = null;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingInputStream;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+import buildcraft.lib.nbt.NbtSquisher;
+
+/** Persistent storage for {@link Snapshot}s, made up of an append-only index log and append-only data segments.
+ * <p>
+ * The index ({@value #INDEX_FILE}) holds every {@link Snapshot.Key} (including its header) along with the file, offset
+ * and length of the squished body, so listing snapshots never needs to touch the bodies. Bodies are memory-mapped and
+ * expanded only when they are actually requested.
+ * <p>
+ * Older per-snapshot ".bcnbt" files are indexed in-place the first time they are seen, so existing snapshot
+ * directories keep working without being rewritten. */
+class SnapshotStore {
+    static final String LEGACY_FILE_EXTENSION = ".bcnbt";
+    static final String INDEX_FILE = "index.bcidx";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_EXTENSION = ".bcseg";
+
+    private static final int INDEX_MAGIC = 0x42434958; // "BCIX"
+    private static final int INDEX_VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /** Only compact once this many bytes in the current segment are unreachable. */
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+
+    private final File directory;
+    private final File indexFile;
+    private final Map<Snapshot.Key, Entry> entries = new LinkedHashMap<>();
+    private int segmentGeneration = 0;
+    private long deadBytes = 0;
+    private long liveBytes = 0;
+    @Nullable
+    private DataOutputStream indexOut;
+
+    static final class Entry {
+        final String fileName;
+        final long offset;
+        final int length;
+
+        Entry(String fileName, long offset, int length) {
+            this.fileName = fileName;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        boolean isLegacy() {
+            return fileName.endsWith(LEGACY_FILE_EXTENSION);
+        }
+    }
+
+    SnapshotStore(File directory) {
+        this.directory = directory;
+        this.indexFile = new File(directory, INDEX_FILE);
+        try {
+            load();
+        } catch (IOException e) {
+            new IOException("Failed to read the snapshot index " + indexFile + ", starting a new one", e)
+                .printStackTrace();
+            entries.clear();
+            segmentGeneration = 0;
+            deadBytes = 0;
+            liveBytes = 0;
+            backUpIndex();
+        }
+        indexLegacyFiles();
+        if (deadBytes > COMPACT_THRESHOLD && deadBytes > liveBytes) {
+            compact();
+        }
+    }
+
+    // ########################
+    //
+    // Public API
+    //
+    // ########################
+
+    synchronized List<Snapshot.Key> getKeys() {
+        return ImmutableList.copyOf(entries.keySet());
+    }
+
+    synchronized boolean contains(Snapshot.Key key) {
+        return entries.containsKey(key);
+    }
+
+    @Nullable
+    Snapshot read(Snapshot.Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        File file = new File(directory, entry.fileName);
+        try {
+            return readEntry(file, entry);
+        } catch (IOException e) {
+            new IOException("Failed to read the snapshot " + key + " from " + file, e).printStackTrace();
+            return null;
+        }
+    }
+
+    synchronized void add(Snapshot snapshot) throws IOException {
+        if (entries.containsKey(snapshot.key)) {
+            return;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), baos);
+        byte[] body = baos.toByteArray();
+
+        File segment = getSegmentFile(segmentGeneration);
+        long offset = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(body);
+        }
+        // Only publish the entry once the body has been written so a crash never leaves a dangling index record
+        Entry entry = new Entry(segment.getName(), offset, body.length);
+        appendRecord(OP_PUT, snapshot.key, entry);
+        putEntry(snapshot.key, entry);
+    }
+
+    synchronized void remove(Snapshot.Key key) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        appendRecord(OP_REMOVE, key, null);
+        removeEntry(key);
+        if (entry.isLegacy()) {
+            File file = new File(directory, entry.fileName);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to delete the snapshot file: " + file);
+            }
+        }
+    }
+
+    // ########################
+    //
+    // Reading
+    //
+    // ########################
+
+    private static Snapshot readEntry(File file, Entry entry) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (entry.offset + entry.length > channel.size()) {
+                throw new EOFException("Snapshot body at " + entry.offset + "+" + entry.length
+                    + " lies past the end of the file (" + channel.size() + ")");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+            return Snapshot.readFromNBT(NbtSquisher.expand(Unpooled.wrappedBuffer(mapped)));
+        }
+    }
+
+    private void load() throws IOException {
+        if (!indexFile.exists()) {
+            return;
+        }
+        // The offset just after the last complete record, as anything after that needs to be cut off
+        long complete;
+        boolean partial = false;
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try (DataInputStream in = new DataInputStream(counting)) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new InvalidInputDataException("Not a snapshot index file");
+            }
+            int version = in.readInt();
+            if (version != INDEX_VERSION) {
+                throw new InvalidInputDataException("Unknown snapshot index version " + version);
+            }
+            segmentGeneration = in.readInt();
+            complete = counting.getCount();
+            while (true) {
+                byte op;
+                Snapshot.Key key;
+                Entry entry = null;
+                try {
+                    op = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                try {
+                    key = new Snapshot.Key(CompressedStreamTools.read(in));
+                    if (op == OP_PUT) {
+                        entry = new Entry(in.readUTF(), in.readLong(), in.readInt());
+                    } else if (op != OP_REMOVE) {
+                        throw new InvalidInputDataException("Unknown snapshot index operation " + op);
+                    }
+                } catch (EOFException eof) {
+                    // A record was only partially written (probably a crash): ignore it
+                    // as the index is only appended to after the body has been written.
+                    partial = true;
+                    break;
+                }
+                if (entry != null) {
+                    putEntry(key, entry);
+                } else {
+                    removeEntry(key);
+                }
+                complete = counting.getCount();
+            }
+        }
+        if (partial) {
+            // Otherwise the next record would be appended after the broken one, and be misread on the next load
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw"); FileChannel channel = raf.getChannel()) {
+                channel.truncate(complete);
+            }
+        }
+        // Drop anything that has gone missing behind our back
+        Set<Snapshot.Key> missing = new HashSet<>();
+        for (Map.Entry<Snapshot.Key, Entry> e : entries.entrySet()) {
+            File file = new File(directory, e.getValue().fileName);
+            if (!file.isFile() || e.getValue().offset + e.getValue().length > file.length()) {
+                missing.add(e.getKey());
+            }
+        }
+        if (!missing.isEmpty()) {
+            missing.forEach(this::removeEntry);
+            try {
+                rewriteIndex();
+            } catch (IOException e) {
+                // Not a problem, as the missing entries will just be dropped again next time
+                new IOException("Failed to write the snapshot index " + indexFile, e).printStackTrace();
+            }
+        }
+    }
+
+    /** Moves the index and every segment out of the way (rather than deleting them) so that a new index can be
+     * started without losing the snapshots that the old one pointed to. Nothing ever deletes the backups, so they can
+     * still be recovered by hand. */
+    private void backUpIndex() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.equals(INDEX_FILE) && !(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION))) {
+                continue;
+            }
+            File backup = new File(directory, name + ".bak");
+            for (int i = 2; backup.exists(); i++) {
+                backup = new File(directory, name + ".bak" + i);
+            }
+            try {
+                Files.move(file.toPath(), backup.toPath());
+            } catch (IOException e) {
+                new IOException("Failed to back up " + file, e).printStackTrace();
+            }
+        }
+    }
+
+    /** Adds any ".bcnbt" files that are not in the index yet - this only expands files that have never been seen
+     * before, so it is only expensive the very first time an old snapshot directory is opened. */
+    private void indexLegacyFiles() {
+        Set<String> known = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            known.add(entry.fileName);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(LEGACY_FILE_EXTENSION) || known.contains(name)) {
+                continue;
+            }
+            Entry entry = new Entry(name, 0, (int) file.length());
+            try {
+                Snapshot snapshot = readEntry(file, entry);
+                if (name.startsWith(snapshot.key.toString()) && !entries.containsKey(snapshot.key)) {
+                    appendRecord(OP_PUT, snapshot.key, entry);
+                    putEntry(snapshot.key, entry);
+                }
+            } catch (IOException e) {
+                new IOException("Failed to read the snapshot " + file, e).printStackTrace();
+            }
+        }
+    }
+
+    // ########################
+    //
+    // Writing
+    //
+    // ########################
+
+    private File getSegmentFile(int generation) {
+        return new File(directory, SEGMENT_PREFIX + generation + SEGMENT_EXTENSION);
+    }
+
+    private void putEntry(Snapshot.Key key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null && !old.isLegacy()) {
+            deadBytes += old.length;
+            liveBytes -= old.length;
+        }
+        if (!entry.isLegacy()) {
+            liveBytes += entry.length;
+        }
+    }
+
+    private void removeEntry(Snapshot.Key key) {
+        Entry old = entries.remove(key);
+        if (old != null && !old.isLegacy()) {
+            deadBytes += old.length;
+            liveBytes -= old.length;
+        }
+    }
+
+    private DataOutputStream getIndexOut() throws IOException {
+        if (indexOut == null) {
+            boolean isNew = !indexFile.exists() || indexFile.length() == 0;
+            indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            if (isNew) {
+                writeIndexHeader(indexOut, segmentGeneration);
+            }
+        }
+        return indexOut;
+    }
+
+    private void appendRecord(byte op, Snapshot.Key key, @Nullable Entry entry) throws IOException {
+        DataOutputStream out = getIndexOut();
+        writeRecord(out, op, key, entry);
+        out.flush();
+    }
+
+    private static void writeIndexHeader(DataOutputStream out, int generation) throws IOException {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(generation);
+    }
+
+    private static void writeRecord(DataOutputStream out, byte op, Snapshot.Key key, @Nullable Entry entry)
+        throws IOException {
+        out.writeByte(op);
+        NBTTagCompound keyNbt = key.serializeNBT();
+        CompressedStreamTools.write(keyNbt, out);
+        if (entry != null) {
+            out.writeUTF(entry.fileName);
+            out.writeLong(entry.offset);
+            out.writeInt(entry.length);
+        }
+    }
+
+    /** Writes a fresh index containing only the live entries, replacing the current one.
+     *
+     * @throws IOException if the new index couldn't be written, in which case the current one is left alone. */
+    private void rewriteIndex() throws IOException {
+        closeIndex();
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            writeIndexHeader(out, segmentGeneration);
+            for (Map.Entry<Snapshot.Key, Entry> e : entries.entrySet()) {
+                writeRecord(out, OP_PUT, e.getKey(), e.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Copies every live segment entry into a new segment, then swaps the index over to it. The old segments are
+     * only deleted after the new index is in place. */
+    private void compact() {
+        int newGeneration = segmentGeneration + 1;
+        File newSegment = getSegmentFile(newGeneration);
+        Map<Snapshot.Key, Entry> moved = new LinkedHashMap<>();
+        try (FileOutputStream out = new FileOutputStream(newSegment)) {
+            long offset = 0;
+            for (Map.Entry<Snapshot.Key, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.isLegacy()) {
+                    moved.put(e.getKey(), entry);
+                    continue;
+                }
+                byte[] body = new byte[entry.length];
+                try (RandomAccessFile raf = new RandomAccessFile(new File(directory, entry.fileName), "r")) {
+                    raf.seek(entry.offset);
+                    raf.readFully(body);
+                }
+                out.write(body);
+                moved.put(e.getKey(), new Entry(newSegment.getName(), offset, entry.length));
+                offset += entry.length;
+            }
+        } catch (IOException e) {
+            new IOException("Failed to compact the snapshot segments in " + directory, e).printStackTrace();
+            if (newSegment.exists() && !newSegment.delete()) {
+                new IOException("Failed to delete the partial segment " + newSegment).printStackTrace();
+            }
+            return;
+        }
+        int oldGeneration = segmentGeneration;
+        Map<Snapshot.Key, Entry> oldEntries = new LinkedHashMap<>(entries);
+        long oldDeadBytes = deadBytes;
+        entries.clear();
+        entries.putAll(moved);
+        segmentGeneration = newGeneration;
+        deadBytes = 0;
+        try {
+            rewriteIndex();
+        } catch (IOException e) {
+            // The index on disk still points at the old segments, so keep using them
+            new IOException("Failed to write the compacted snapshot index " + indexFile, e).printStackTrace();
+            entries.clear();
+            entries.putAll(oldEntries);
+            segmentGeneration = oldGeneration;
+            deadBytes = oldDeadBytes;
+            if (newSegment.exists() && !newSegment.delete()) {
+                new IOException("Failed to delete the unused segment " + newSegment).printStackTrace();
+            }
+            return;
+        }
+        for (int gen = 0; gen <= oldGeneration; gen++) {
+            File old = getSegmentFile(gen);
+            if (old.exists() && !old.delete()) {
+                new IOException("Failed to delete the old segment " + old).printStackTrace();
+            }
+        }
+    }
+
+    private void closeIndex() {
+        if (indexOut != null) {
+            try {
+                indexOut.close();
+            } catch (IOException e) {
+                new IOException("Failed to close the snapshot index " + indexFile, e).printStackTrace();
+            }
+            indexOut = null;
+        }
+    }
+
+    synchronized void close() {
+        closeIndex();
+    }
+}
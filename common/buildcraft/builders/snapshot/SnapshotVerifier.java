@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import buildcraft.lib.misc.WorkerThreadUtil;
+
+/** Checks every position in the box of a {@link SnapshotBuilder} in bulk, one chunk section at a time.
+ * <p>
+ * Every tick the main thread copies the block states of a few sections straight out of their chunks, and the check
+ * results for them are worked out on worker threads. The results are handed back on the main thread in the same order
+ * that the sections were copied in. Positions that can't be checked from a copy (for example schematics that need to
+ * look at tile entities) are handed back as {@link SnapshotBuilder#CHECK_RESULT_UNKNOWN}, a few at a time, so that the
+ * builder can check them with the world instead. */
+final class SnapshotVerifier {
+    /** The maximum number of blocks to copy out of the world every tick. */
+    private static final int MAX_BLOCKS_PER_TICK = 16 * 16 * 16 * 8;
+    /** The maximum number of sections waiting for a worker thread, which limits how much memory is used for copies. */
+    private static final int MAX_PENDING_SECTIONS = 64;
+    /** The maximum number of positions that need to be checked with the world to hand back every tick. */
+    private static final int MAX_WORLD_CHECKS_PER_TICK = 256;
+
+    private final World world;
+    private final BlockPos min;
+    private final int base, stepX, stepY, stepZ;
+    private final ICopyChecker checker;
+
+    private final List<int[]> sections;
+    private int nextSection = 0;
+    private final Deque<PendingSection> pending = new ArrayDeque<>();
+    /** Indexes that need to be checked with the world, in {@link #worldChecks} from {@link #worldChecksStart}. */
+    private int[] worldChecks = new int[64];
+    private int worldChecksStart = 0, worldChecksEnd = 0;
+
+    /** @param base The snapshot index of the minimum corner of the box.
+     * @param stepX The amount that the snapshot index changes by for every step along the world X axis. */
+    SnapshotVerifier(World world, BlockPos min, BlockPos size, int base, int stepX, int stepY, int stepZ,
+                     ICopyChecker checker) {
+        this.world = world;
+        this.min = min;
+        this.base = base;
+        this.stepX = stepX;
+        this.stepY = stepY;
+        this.stepZ = stepZ;
+        this.checker = checker;
+        this.sections = SnapshotScanner.getSections(min, size);
+    }
+
+    /** Copies the next few sections out of the world, and hands every finished result to the given sink.
+     *
+     * @return True if the sink returned true for any result. */
+    boolean tick(IResultSink sink) {
+        boolean changed = false;
+        int budget = MAX_BLOCKS_PER_TICK;
+        while (budget > 0 && nextSection < sections.size() && pending.size() < MAX_PENDING_SECTIONS) {
+            budget -= copySection(sections.get(nextSection++));
+        }
+        while (!pending.isEmpty() && pending.peekFirst().results.isDone()) {
+            PendingSection done = pending.pollFirst();
+            byte[] results;
+            try {
+                results = done.results.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // Already logged by WorkerThreadUtil, so just check the whole section with the world instead
+                results = new byte[done.indexes.length];
+                Arrays.fill(results, SnapshotBuilder.CHECK_RESULT_UNKNOWN);
+            }
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == SnapshotBuilder.CHECK_RESULT_UNKNOWN) {
+                    addWorldCheck(done.indexes[i]);
+                } else if (sink.accept(done.indexes[i], results[i])) {
+                    changed = true;
+                }
+            }
+        }
+        for (int i = 0; i < MAX_WORLD_CHECKS_PER_TICK && worldChecksStart < worldChecksEnd; i++) {
+            if (sink.accept(worldChecks[worldChecksStart++], SnapshotBuilder.CHECK_RESULT_UNKNOWN)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** @return True if every position has been handed to the sink. */
+    boolean isDone() {
+        return nextSection == sections.size() && pending.isEmpty() && worldChecksStart == worldChecksEnd;
+    }
+
+    private void addWorldCheck(int index) {
+        if (worldChecksEnd == worldChecks.length) {
+            int count = worldChecksEnd - worldChecksStart;
+            if (count * 2 > worldChecks.length) {
+                worldChecks = Arrays.copyOf(worldChecks, worldChecks.length * 2);
+            }
+            System.arraycopy(worldChecks, worldChecksStart, worldChecks, 0, count);
+            worldChecksStart = 0;
+            worldChecksEnd = count;
+        }
+        worldChecks[worldChecksEnd++] = index;
+    }
+
+    /** @return The number of blocks in the section. */
+    private int copySection(int[] section) {
+        int wx0 = min.getX() + section[0], wy0 = min.getY() + section[1], wz0 = min.getZ() + section[2];
+        int lenX = section[3] - section[0] + 1;
+        int lenY = section[4] - section[1] + 1;
+        int lenZ = section[5] - section[2] + 1;
+        Chunk chunk = world.getChunkFromChunkCoords(wx0 >> 4, wz0 >> 4);
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        int storageIndex = wy0 >> 4;
+        ExtendedBlockStorage storage = storageIndex >= 0 && storageIndex < storages.length
+            ? storages[storageIndex]
+            : Chunk.NULL_BLOCK_STORAGE;
+        boolean empty = storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty();
+        IBlockState airState = Blocks.AIR.getDefaultState();
+        BlockPos.MutableBlockPos worldPos = new BlockPos.MutableBlockPos();
+
+        int count = lenX * lenY * lenZ;
+        int[] indexes = new int[count];
+        IBlockState[] states = new IBlockState[count];
+        BitSet air = new BitSet(count);
+        int i = 0;
+        for (int z = 0; z < lenZ; z++) {
+            for (int y = 0; y < lenY; y++) {
+                for (int x = 0; x < lenX; x++) {
+                    indexes[i] = base + (section[0] + x) * stepX + (section[1] + y) * stepY + (section[2] + z) * stepZ;
+                    IBlockState state = empty ? airState : storage.get((wx0 + x) & 15, (wy0 + y) & 15, (wz0 + z) & 15);
+                    states[i] = state;
+                    // Blocks can decide if they are air based on the world, so this can't be done by a worker thread
+                    worldPos.setPos(wx0 + x, wy0 + y, wz0 + z);
+                    if (state.getBlock().isAir(state, world, worldPos)) {
+                        air.set(i);
+                    }
+                    i++;
+                }
+            }
+        }
+        pending.addLast(new PendingSection(
+            indexes,
+            WorkerThreadUtil.executeWorkTask(new SectionCheck(checker, indexes, states, air))
+        ));
+        return count;
+    }
+
+    @FunctionalInterface
+    interface ICopyChecker {
+        /** Called from worker threads, so this mustn't touch the world.
+         *
+         * @return The check result for the given snapshot index, or {@link SnapshotBuilder#CHECK_RESULT_UNKNOWN} if it
+         *         can only be checked with the world. */
+        byte check(int index, IBlockState state, boolean air);
+    }
+
+    @FunctionalInterface
+    interface IResultSink {
+        /** @param result The check result, or {@link SnapshotBuilder#CHECK_RESULT_UNKNOWN} if the index needs to be
+         *            checked with the world.
+         * @return True if the check result changed. */
+        boolean accept(int index, byte result);
+    }
+
+    private static class PendingSection {
+        final int[] indexes;
+        final Future<byte[]> results;
+
+        PendingSection(int[] indexes, Future<byte[]> results) {
+            this.indexes = indexes;
+            this.results = results;
+        }
+    }
+
+    /** Works out the check results of a single copied section, on a worker thread. */
+    private static class SectionCheck implements Callable<byte[]> {
+        private final ICopyChecker checker;
+        private final int[] indexes;
+        private final IBlockState[] states;
+        private final BitSet air;
+
+        SectionCheck(ICopyChecker checker, int[] indexes, IBlockState[] states, BitSet air) {
+            this.checker = checker;
+            this.indexes = indexes;
+            this.states = states;
+            this.air = air;
+        }
+
+        @Override
+        public byte[] call() {
+            byte[] results = new byte[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                results[i] = checker.check(indexes[i], states[i], air.get(i));
+            }
+            return results;
+        }
+    }
+}
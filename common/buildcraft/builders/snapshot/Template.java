@@ -20,6 +20,7 @@ import buildcraft.api.enums.EnumSnapshotType;
 import buildcraft.api.filler.IFilledTemplate;
 
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.nbt.NbtSquishWriter;
 
 public class Template extends Snapshot {
     public BitSet data;
@@ -50,6 +51,12 @@ public class Template extends Snapshot {
         return nbt;
     }
 
+    @Override
+    protected void serializeSquish(NbtSquishWriter writer, NbtSquishWriter.CompoundBuilder builder) {
+        super.serializeSquish(writer, builder);
+        builder.setByteArray("data", data.toByteArray());
+    }
+
     @Override
     public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         super.deserializeNBT(nbt);
@@ -9,6 +9,7 @@ package buildcraft.builders.snapshot;
 import java.util.Collections;
 import java.util.List;
 
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.WorldServer;
@@ -84,4 +85,12 @@ public class TemplateBuilder extends SnapshotBuilder<ITileForTemplateBuilder> {
     protected boolean isBlockCorrect(BlockPos blockPos) {
         return !isAir(blockPos) && !tile.getWorldBC().isAirBlock(blockPos);
     }
+
+    @Override
+    protected byte checkCopy(Snapshot.BuildingInfo buildingInfo, int index, IBlockState state, boolean air) {
+        if (!((Template.BuildingInfo) buildingInfo).getSnapshot().data.get(index)) {
+            return air ? CHECK_RESULT_CORRECT : CHECK_RESULT_TO_BREAK;
+        }
+        return air ? CHECK_RESULT_TO_PLACE : CHECK_RESULT_CORRECT;
+    }
 }
@@ -7,36 +7,42 @@
 package buildcraft.builders.tile;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.mojang.authlib.GameProfile;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
 
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+import buildcraft.api.core.BCLog;
 import buildcraft.api.core.EnumPipePart;
 import buildcraft.api.core.IAreaProvider;
 import buildcraft.api.enums.EnumSnapshotType;
-import buildcraft.api.schematics.ISchematicBlock;
 import buildcraft.api.schematics.ISchematicEntity;
-import buildcraft.api.schematics.SchematicBlockContext;
 import buildcraft.api.schematics.SchematicEntityContext;
 import buildcraft.api.tiles.IDebuggable;
 
@@ -46,9 +52,8 @@ import buildcraft.lib.misc.AdvancementUtil;
 import buildcraft.lib.misc.BoundingBoxUtil;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
+import buildcraft.lib.misc.WorkerThreadUtil;
 import buildcraft.lib.misc.data.Box;
-import buildcraft.lib.misc.data.BoxIterator;
-import buildcraft.lib.misc.data.EnumAxisOrder;
 import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
@@ -62,10 +67,10 @@ import buildcraft.builders.client.ClientArchitectTables;
 import buildcraft.builders.item.ItemSnapshot;
 import buildcraft.builders.snapshot.Blueprint;
 import buildcraft.builders.snapshot.GlobalSavedDataSnapshots;
-import buildcraft.builders.snapshot.SchematicBlockManager;
 import buildcraft.builders.snapshot.SchematicEntityManager;
 import buildcraft.builders.snapshot.Snapshot;
 import buildcraft.builders.snapshot.Snapshot.Header;
+import buildcraft.builders.snapshot.SnapshotScanner;
 import buildcraft.builders.snapshot.Template;
 import buildcraft.core.marker.volume.Lock;
 import buildcraft.core.marker.volume.VolumeBox;
@@ -96,13 +101,13 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
     private EnumSnapshotType snapshotType = EnumSnapshotType.BLUEPRINT;
     public final Box box = new Box();
     public boolean markerBox = false;
-    private BitSet templateScannedBlocks;
-    private final List<ISchematicBlock> blueprintScannedPalette = new ArrayList<>();
-    private int[] blueprintScannedData;
-    private final List<ISchematicEntity> blueprintScannedEntities = new ArrayList<>();
-    private BoxIterator boxIterator;
+    private SnapshotScanner scanner;
+    /** The snapshot that was scanned, while its key is being computed. */
+    private Future<Snapshot> assembling;
     private boolean isValid = false;
     private boolean scanning = false;
+    /** True if the last scan failed, in which case another one isn't started until the snapshot is taken out. */
+    private boolean scanFailed = false;
     public String name = "<unnamed>";
     public final DeltaInt deltaProgress = deltaManager.addDelta(
         "progress",
@@ -170,103 +175,71 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         }
 
         if (!invSnapshotIn.getStackInSlot(0).isEmpty() && invSnapshotOut.getStackInSlot(0).isEmpty() && isValid) {
-            if (!scanning) {
+            if (scanner == null && assembling == null && !scanFailed) {
                 snapshotType = ItemSnapshot.EnumItemSnapshotType.getFromStack(
                     invSnapshotIn.getStackInSlot(0)
                 ).snapshotType;
-                int size = box.size().getX() * box.size().getY() * box.size().getZ();
-                size /= snapshotType.maxPerTick;
-                deltaProgress.addDelta(0, size, 1);
-                deltaProgress.addDelta(size, size + 10, -1);
+                scanner = new SnapshotScanner(world, box.min(), box.size(), snapshotType);
+                int ticks = scanner.getEstimatedTicks();
+                deltaProgress.addDelta(0, ticks, 1);
+                deltaProgress.addDelta(ticks, ticks + 10, -1);
                 scanning = true;
             }
         } else {
             scanning = false;
+            scanner = null;
+            assembling = null;
+            scanFailed = false;
         }
 
-        if (scanning) {
-            scanMultipleBlocks();
-            if (!scanning) {
-                if (snapshotType == EnumSnapshotType.BLUEPRINT) {
-                    scanEntities();
-                }
-                finishScanning();
+        if (scanner != null) {
+            if (scanner.tick(this::sendScanned)) {
+                startAssembly();
+                scanner = null;
+            } else if (scanner.hasFailed()) {
+                scanner = null;
+                onScanFailed(null);
             }
         }
-    }
-
-    private void scanMultipleBlocks() {
-        for (int i = snapshotType.maxPerTick; i > 0; i--) {
-            scanSingleBlock();
-            if (!scanning) {
-                break;
+        if (assembling != null && assembling.isDone()) {
+            Future<Snapshot> done = assembling;
+            assembling = null;
+            scanning = false;
+            try {
+                finishScanning(done.get());
+            } catch (InterruptedException | ExecutionException e) {
+                onScanFailed(e.getCause() == null ? e : e.getCause());
             }
         }
     }
 
-    private void scanSingleBlock() {
-        BlockPos size = box.size();
-        if (templateScannedBlocks == null || blueprintScannedData == null) {
-            boxIterator = new BoxIterator(box, EnumAxisOrder.XZY.getMinToMaxOrder(), true);
-            templateScannedBlocks = new BitSet(Snapshot.getDataSize(size));
-            blueprintScannedData = new int[Snapshot.getDataSize(size)];
-        }
-
-        // Read from world
-        BlockPos worldScanPos = boxIterator.getCurrent();
-        BlockPos schematicPos = worldScanPos.subtract(box.min());
-        if (snapshotType == EnumSnapshotType.TEMPLATE) {
-            templateScannedBlocks.set(Snapshot.posToIndex(box.size(), schematicPos), !world.isAirBlock(worldScanPos));
-        }
-        if (snapshotType == EnumSnapshotType.BLUEPRINT) {
-            ISchematicBlock schematicBlock = readSchematicBlock(worldScanPos);
-            int index = blueprintScannedPalette.indexOf(schematicBlock);
-            if (index == -1) {
-                index = blueprintScannedPalette.size();
-                blueprintScannedPalette.add(schematicBlock);
+    /** Stops scanning until the snapshot is taken out, as scanning the same box again would most likely fail the same
+     * way. */
+    private void onScanFailed(@Nullable Throwable cause) {
+        scanning = false;
+        scanFailed = true;
+        BCLog.logger.warn("[builders.architect] Failed to scan the box at " + box.min() + " for " + pos
+            + ", so it won't be scanned again until the snapshot is taken out", cause);
+        MinecraftServer server = world.getMinecraftServer();
+        GameProfile owner = getOwner();
+        if (server != null && owner != null && owner.getId() != null) {
+            EntityPlayer player = server.getPlayerList().getPlayerByUUID(owner.getId());
+            if (player != null) {
+                player.sendStatusMessage(new TextComponentTranslation("chat.architect.scanFailed"), false);
             }
-            blueprintScannedData[Snapshot.posToIndex(box.size(), schematicPos)] = index;
         }
-
-        createAndSendMessage(NET_SCAN, buffer -> MessageUtil.writeBlockPos(buffer, worldScanPos));
-
-        sendNetworkUpdate(NET_RENDER_DATA);
-
-        // Move scanPos along
-        boxIterator.advance();
-
-        if (boxIterator.hasFinished()) {
-            scanning = false;
-            boxIterator = null;
-        }
-    }
-
-    private ISchematicBlock readSchematicBlock(BlockPos worldScanPos) {
-        return SchematicBlockManager.getSchematicBlock(new SchematicBlockContext(
-            world,
-            box.min(),
-            worldScanPos,
-            world.getBlockState(worldScanPos),
-            world.getBlockState(worldScanPos).getBlock()
-        ));
     }
 
-    private void scanEntities() {
-        world.getEntitiesWithinAABB(Entity.class, box.getBoundingBox()).stream()
-            .map(entity ->
-                SchematicEntityManager.getSchematicEntity(new SchematicEntityContext(
-                    world,
-                    box.min(),
-                    entity
-                ))
-            )
-            .filter(Objects::nonNull)
-            .forEach(blueprintScannedEntities::add);
+    private void sendScanned(BlockPos worldScanPos) {
+        createAndSendMessage(NET_SCAN, buffer -> MessageUtil.writeBlockPos(buffer, worldScanPos));
     }
 
-    private void finishScanning() {
+    /** Creates the snapshot from everything that was scanned, and then computes its key on a worker thread (as that
+     * means writing out and hashing all of it). */
+    private void startAssembly() {
         IBlockState thisState = getCurrentStateForBlock(BCBuildersBlocks.architect);
         if (thisState == null) {
+            scanning = false;
             return;
         }
 
@@ -276,14 +249,33 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         snapshot.facing = facing;
         snapshot.offset = box.min().subtract(pos.offset(facing.getOpposite()));
         if (snapshot instanceof Template) {
-            ((Template) snapshot).data = templateScannedBlocks;
+            ((Template) snapshot).data = scanner.getTemplateData();
         }
         if (snapshot instanceof Blueprint) {
-            ((Blueprint) snapshot).palette.addAll(blueprintScannedPalette);
-            ((Blueprint) snapshot).data = blueprintScannedData;
-            ((Blueprint) snapshot).entities.addAll(blueprintScannedEntities);
+            ((Blueprint) snapshot).palette.addAll(scanner.getBlueprintPalette());
+            ((Blueprint) snapshot).data = scanner.getBlueprintData();
+            ((Blueprint) snapshot).entities.addAll(scanEntities());
         }
-        snapshot.computeKey();
+        assembling = WorkerThreadUtil.executeWorkTask(() -> {
+            snapshot.computeKey();
+            return snapshot;
+        });
+    }
+
+    private List<ISchematicEntity> scanEntities() {
+        return world.getEntitiesWithinAABB(Entity.class, box.getBoundingBox()).stream()
+            .map(entity ->
+                SchematicEntityManager.getSchematicEntity(new SchematicEntityContext(
+                    world,
+                    box.min(),
+                    entity
+                ))
+            )
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    private void finishScanning(Snapshot snapshot) {
         GlobalSavedDataSnapshots.get(world).addSnapshot(snapshot);
         ItemStack stackIn = invSnapshotIn.getStackInSlot(0);
         stackIn.setCount(stackIn.getCount() - 1);
@@ -303,10 +295,6 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
                 )
             )
         );
-        templateScannedBlocks = null;
-        blueprintScannedData = null;
-        blueprintScannedEntities.clear();
-        boxIterator = null;
         sendNetworkUpdate(NET_RENDER_DATA);
         AdvancementUtil.unlockAdvancement(getOwner().getId(), ADVANCEMENT);
     }
@@ -349,10 +337,8 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         super.writeToNBT(nbt);
         nbt.setTag("box", box.writeToNBT());
         nbt.setBoolean("markerBox", markerBox);
-        if (boxIterator != null) {
-            nbt.setTag("iter", boxIterator.writeToNbt());
-        }
         nbt.setBoolean("scanning", scanning);
+        nbt.setBoolean("scanFailed", scanFailed);
         nbt.setTag("snapshotType", NBTUtilBC.writeEnum(snapshotType));
         nbt.setBoolean("isValid", isValid);
         nbt.setString("name", name);
@@ -364,10 +350,9 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         super.readFromNBT(nbt);
         box.initialize(nbt.getCompoundTag("box"));
         markerBox = nbt.getBoolean("markerBox");
-        if (nbt.hasKey("iter")) {
-            boxIterator = BoxIterator.readFromNbt(nbt.getCompoundTag("iter"));
-        }
-        scanning = nbt.getBoolean("scanning");
+        // Scans are never saved part of the way through, so any scan that was running will start again
+        scanning = false;
+        scanFailed = nbt.getBoolean("scanFailed");
         snapshotType = NBTUtilBC.readEnum(nbt.getTag("snapshotType"), EnumSnapshotType.class);
         isValid = nbt.getBoolean("isValid");
         name = nbt.getString("name");
@@ -379,7 +364,8 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         left.add(" - min = " + box.min());
         left.add(" - max = " + box.max());
         left.add("scanning = " + scanning);
-        left.add("current = " + (boxIterator == null ? null : boxIterator.getCurrent()));
+        left.add("scanFailed = " + scanFailed);
+        left.add("assembling = " + (assembling != null));
     }
 
     // Rendering
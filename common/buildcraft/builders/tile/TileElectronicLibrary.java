@@ -33,6 +33,7 @@ import buildcraft.lib.delta.DeltaInt;
 import buildcraft.lib.delta.DeltaManager;
 import buildcraft.lib.misc.StackUtil;
 import buildcraft.lib.misc.data.IdAllocator;
+import buildcraft.lib.nbt.NbtSquishWriter;
 import buildcraft.lib.nbt.NbtSquisher;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.PacketBufferBC;
@@ -180,8 +181,10 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                         snapshot = snapshot.copy();
                         snapshot.key = new Snapshot.Key(snapshot.key, header);
                         buffer.writeBoolean(true);
+                        NbtSquishWriter writer = new NbtSquishWriter();
                         NbtSquisher.squish(
-                            Snapshot.writeToNBT(snapshot),
+                            writer,
+                            Snapshot.writeToSquish(snapshot, writer),
                             NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED,
                             buffer
                         );
@@ -255,8 +258,10 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                                 write(true);
                             }
                         }) {
+                            NbtSquishWriter writer = new NbtSquishWriter();
                             NbtSquisher.squish(
-                                Snapshot.writeToNBT(snapshot),
+                                writer,
+                                Snapshot.writeToSquish(snapshot, writer),
                                 NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED,
                                 outputStream
                             );
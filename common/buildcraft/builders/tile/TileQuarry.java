@@ -10,15 +10,14 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,6 +34,7 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumFacing.Axis;
+import net.minecraft.util.EnumFacing.AxisDirection;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.AxisAlignedBB;
@@ -44,6 +44,8 @@ import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.IWorldEventListener;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import net.minecraftforge.fluids.Fluid;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -103,14 +105,23 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     private final Box miningBox = new Box();
     private BoxIterator boxIterator;
     public final List<BlockPos> framePoses = new ArrayList<>();
-    private int frameBoxPosesCount = 0;
-    private final LinkedList<BlockPos> toCheck = new LinkedList<>();
-    private final Set<BlockPos> firstCheckedPoses = new HashSet<>();
+    /* Every position in the frame box is given a "frame ordinal": its index in frameBoxPoses, which is sorted by
+     * distance to the quarry. The bit sets below are indexed by it, so that (for example) the nearest block that needs
+     * breaking is just the first set bit. */
+    private BlockPos[] frameBoxPoses = new BlockPos[0];
+    /** Map of (position relative to frameBox.min(), in x, y, z order) -> frame ordinal. */
+    private int[] frameOrdinals = new int[0];
+    /** Map of frame ordinal -> index in {@link #framePoses}, or -1 if it shouldn't be a frame. */
+    private int[] frameIndices = new int[0];
+    /** Frame ordinals that haven't been checked yet. This is only filled by {@link #updatePoses()}, as any changes
+     * after that are checked straight away by {@link #worldEventListener}. */
+    private final BitSet toCheck = new BitSet();
     private boolean firstChecked = false;
-    private final Set<BlockPos> frameBreakBlockPoses = new TreeSet<>(
-        BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(p -> getPos().distanceSq(p)))
-    );
-    private final Set<BlockPos> framePlaceFramePoses = new HashSet<>();
+    /** Frame ordinals of blocks that need to be broken. */
+    private final BitSet frameBreakBlockPoses = new BitSet();
+    /** Indices in {@link #framePoses} (rather than frame ordinals) that need a frame placed, so that frames are
+     * always added in the same order. */
+    private final BitSet framePlaceFramePoses = new BitSet();
     public Task currentTask = null;
     public Vec3d drillPos;
     public Vec3d clientDrillPos;
@@ -404,31 +415,79 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         return true;
     }
 
+    /** Advances {@link #boxIterator} until it reaches a block that can be mined. Chunk sections that are completely
+     * empty only contain air (which would always be skipped) so they are skipped one row at a time rather than looking
+     * up every block in them. This still visits every other position in the same order as advancing one at a time. */
+    private void skipToMinable() {
+        while (true) {
+            BlockPos current = boxIterator.getCurrent();
+            if (isInEmptySection(current)) {
+                EnumFacing first = boxIterator.getOrder().first;
+                int value = VecUtil.getValue(current, first.getAxis());
+                boxIterator.skipAlongFirstAxis(first.getAxisDirection() == AxisDirection.POSITIVE ? value | 15 : value & ~15);
+            } else if (!canMoveThrough(current) && canMine(current) && canMoveDownTo(current)) {
+                return;
+            }
+            if (boxIterator.advance() == null) {
+                return;
+            }
+        }
+    }
+
+    private boolean isInEmptySection(BlockPos blockPos) {
+        if (world.isOutsideBuildHeight(blockPos)) {
+            return false;
+        }
+        ExtendedBlockStorage storage = world.getChunkFromBlockCoords(blockPos).getBlockStorageArray()[blockPos.getY() >> 4];
+        return storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty();
+    }
+
     private boolean canIgnoreInFrameBox(BlockPos blockPos) {
         return !world.isAirBlock(blockPos) && BlockUtil.getFluidWithFlowing(world, blockPos) == null;
     }
 
+    private int getFrameOrdinal(BlockPos blockPos) {
+        if (frameOrdinals.length == 0 || !frameBox.contains(blockPos)) {
+            return -1;
+        }
+        BlockPos min = frameBox.min();
+        BlockPos size = frameBox.size();
+        int dx = blockPos.getX() - min.getX();
+        int dy = blockPos.getY() - min.getY();
+        int dz = blockPos.getZ() - min.getZ();
+        return frameOrdinals[dx + size.getX() * (dy + size.getY() * dz)];
+    }
+
     private void check(BlockPos blockPos) {
-        frameBreakBlockPoses.remove(blockPos);
-        framePlaceFramePoses.remove(blockPos);
+        int ordinal = getFrameOrdinal(blockPos);
+        if (ordinal >= 0) {
+            check(ordinal);
+        }
+    }
+
+    private void check(int ordinal) {
+        BlockPos blockPos = frameBoxPoses[ordinal];
+        int frameIndex = frameIndices[ordinal];
+        frameBreakBlockPoses.clear(ordinal);
+        if (frameIndex >= 0) {
+            framePlaceFramePoses.clear(frameIndex);
+        }
         if (shouldBeFrame(blockPos)) {
             if (world.getBlockState(blockPos).getBlock() != BCBuildersBlocks.frame) {
                 if (canIgnoreInFrameBox(blockPos)) {
-                    frameBreakBlockPoses.add(blockPos);
-                } else {
-                    framePlaceFramePoses.add(blockPos);
+                    frameBreakBlockPoses.set(ordinal);
+                } else if (frameIndex >= 0) {
+                    framePlaceFramePoses.set(frameIndex);
                 }
             }
         } else {
             if (canIgnoreInFrameBox(blockPos)) {
-                frameBreakBlockPoses.add(blockPos);
+                frameBreakBlockPoses.set(ordinal);
             }
         }
-        if (!firstChecked) {
-            firstCheckedPoses.add(blockPos);
-            if (firstCheckedPoses.size() >= frameBoxPosesCount) {
-                firstChecked = true;
-            }
+        toCheck.clear(ordinal);
+        if (!firstChecked && toCheck.isEmpty()) {
+            firstChecked = true;
         }
     }
 
@@ -483,9 +542,10 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
 
     private void updatePoses() {
         framePoses.clear();
-        frameBoxPosesCount = 0;
+        frameBoxPoses = new BlockPos[0];
+        frameOrdinals = new int[0];
+        frameIndices = new int[0];
         toCheck.clear();
-        firstCheckedPoses.clear();
         firstChecked = false;
         frameBreakBlockPoses.clear();
         framePlaceFramePoses.clear();
@@ -493,9 +553,27 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         if (state.getBlock() == BCBuildersBlocks.quarry && frameBox.isInitialized()) {
             List<BlockPos> blocksInArea = frameBox.getBlocksInArea();
             blocksInArea.sort(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(pos::distanceSq)));
-            frameBoxPosesCount = blocksInArea.size();
-            toCheck.addAll(blocksInArea);
+            frameBoxPoses = blocksInArea.toArray(new BlockPos[0]);
+            frameOrdinals = new int[frameBoxPoses.length];
+            frameIndices = new int[frameBoxPoses.length];
+            Arrays.fill(frameIndices, -1);
             framePoses.addAll(getFramePositions());
+            BlockPos min = frameBox.min();
+            BlockPos size = frameBox.size();
+            for (int i = 0; i < frameBoxPoses.length; i++) {
+                BlockPos p = frameBoxPoses[i];
+                int dx = p.getX() - min.getX();
+                int dy = p.getY() - min.getY();
+                int dz = p.getZ() - min.getZ();
+                frameOrdinals[dx + size.getX() * (dy + size.getY() * dz)] = i;
+            }
+            for (int i = 0; i < framePoses.size(); i++) {
+                int ordinal = getFrameOrdinal(framePoses.get(i));
+                if (ordinal >= 0) {
+                    frameIndices[ordinal] = i;
+                }
+            }
+            toCheck.set(0, frameBoxPoses.length);
             ChunkLoaderManager.loadChunksForTile(this);
         }
     }
@@ -520,12 +598,9 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             return;
         }
 
-        if (!toCheck.isEmpty()) {
-            for (int i = 0; i < (firstChecked ? 10 : 500); i++) {
-                BlockPos blockPos = toCheck.pollFirst();
-                check(blockPos);
-                toCheck.addLast(blockPos);
-            }
+        // Only needed for the first check: every change after that is picked up by the world event listener
+        for (int i = 0; i < 500 && !toCheck.isEmpty(); i++) {
+            check(toCheck.nextSetBit(0));
         }
 
         if (!firstChecked) {
@@ -581,54 +656,38 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             }
 
             if (!frameBreakBlockPoses.isEmpty()) {
-                BlockPos blockPos = frameBreakBlockPoses.iterator().next();
+                int ordinal = frameBreakBlockPoses.nextSetBit(0);
+                BlockPos blockPos = frameBoxPoses[ordinal];
                 if (canMine(blockPos)) {
                     drillPos = null;
                     currentTask = new TaskBreakBlock(blockPos);
                     sendUpdate = true;
                 }
-                check(blockPos);
+                check(ordinal);
                 continue power_loop;
             }
 
-            if (!framePlaceFramePoses.isEmpty()) {
-                for (BlockPos blockPos : framePoses) {
-                    if (!framePlaceFramePoses.contains(blockPos)) {
-                        continue;
-                    }
-                    check(blockPos);
-                    if (!framePlaceFramePoses.contains(blockPos)) {
-                        continue;
-                    }
-                    drillPos = null;
-                    currentTask = new TaskAddFrame(blockPos);
-                    sendUpdate = true;
-                    continue power_loop;
+            for (int index = framePlaceFramePoses.nextSetBit(0); index >= 0;
+                index = framePlaceFramePoses.nextSetBit(index + 1)) {
+                BlockPos blockPos = framePoses.get(index);
+                check(blockPos);
+                if (!framePlaceFramePoses.get(index)) {
+                    continue;
                 }
+                drillPos = null;
+                currentTask = new TaskAddFrame(blockPos);
+                sendUpdate = true;
+                continue power_loop;
             }
 
             if (boxIterator == null || drillPos == null) {
                 boxIterator = createBoxIterator();
-                while (
-                    canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                    || !canMoveDownTo(boxIterator.getCurrent())
-                ) {
-                    if (boxIterator.advance() == null) {
-                        break;
-                    }
-                }
+                skipToMinable();
                 drillPos = new Vec3d(miningBox.closestInsideTo(pos));
             }
 
             if (boxIterator != null && boxIterator.hasNext()) {
-                while (
-                    canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                    || !canMoveDownTo(boxIterator.getCurrent())
-                ) {
-                    if (boxIterator.advance() == null) {
-                        break;
-                    }
-                }
+                skipToMinable();
 
                 if (boxIterator.hasNext()) {
                     boolean found = false;
@@ -841,8 +900,8 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         left.add(" - min = " + miningBox.min());
         left.add(" - max = " + miningBox.max());
 
-        left.add("firstCheckedPoses = " + firstCheckedPoses.size());
-        left.add("frameBoxPosesCount = " + frameBoxPosesCount);
+        left.add("firstCheckedPoses = " + (frameBoxPoses.length - toCheck.cardinality()));
+        left.add("frameBoxPosesCount = " + frameBoxPoses.length);
         left.add("firstChecked = " + firstChecked);
 
         BoxIterator iter = boxIterator;
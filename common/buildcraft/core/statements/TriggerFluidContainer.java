@@ -27,11 +27,13 @@ import buildcraft.api.statements.StatementParameterItemStack;
 import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 import buildcraft.core.BCCoreStatements;
 
-public class TriggerFluidContainer extends BCStatement implements ITriggerExternal {
+public class TriggerFluidContainer extends BCStatement implements ITriggerExternal, ITriggerChangeSource {
     public State state;
 
     public TriggerFluidContainer(State state) {
@@ -121,6 +123,11 @@ public class TriggerFluidContainer extends BCStatement implements ITriggerExtern
         return false;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.FLUID;
+    }
+
     @Override
     public IStatementParameter createParameter(int index) {
         return new StatementParameterItemStack();
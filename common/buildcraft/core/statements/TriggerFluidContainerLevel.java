@@ -25,11 +25,13 @@ import buildcraft.api.statements.StatementParameterItemStack;
 import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 import buildcraft.core.BCCoreStatements;
 
-public class TriggerFluidContainerLevel extends BCStatement implements ITriggerExternal {
+public class TriggerFluidContainerLevel extends BCStatement implements ITriggerExternal, ITriggerChangeSource {
     public final TriggerType type;
 
     public TriggerFluidContainerLevel(TriggerType type) {
@@ -92,6 +94,11 @@ public class TriggerFluidContainerLevel extends BCStatement implements ITriggerE
         return false;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.FLUID;
+    }
+
     @Override
     public IStatementParameter createParameter(int index) {
         return new StatementParameterItemStack();
@@ -25,11 +25,13 @@ import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.LocaleUtil;
 import buildcraft.lib.misc.StackUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 import buildcraft.core.BCCoreStatements;
 
-public class TriggerInventory extends BCStatement implements ITriggerExternal {
+public class TriggerInventory extends BCStatement implements ITriggerExternal, ITriggerChangeSource {
     public State state;
 
     public TriggerInventory(State state) {
@@ -104,6 +106,11 @@ public class TriggerInventory extends BCStatement implements ITriggerExternal {
         return false;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.INVENTORY;
+    }
+
     @Override
     public IStatementParameter createParameter(int index) {
         return new StatementParameterItemStack();
@@ -29,11 +29,13 @@ import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.LocaleUtil;
 import buildcraft.lib.misc.ObjectUtilBC;
 import buildcraft.lib.misc.StackUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 import buildcraft.core.BCCoreStatements;
 
-public class TriggerInventoryLevel extends BCStatement implements ITriggerExternal {
+public class TriggerInventoryLevel extends BCStatement implements ITriggerExternal, ITriggerChangeSource {
     public TriggerType type;
 
     public TriggerInventoryLevel(TriggerType type) {
@@ -113,6 +115,11 @@ public class TriggerInventoryLevel extends BCStatement implements ITriggerExtern
         return false;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.INVENTORY;
+    }
+
     @Override
     public IStatementParameter createParameter(int index) {
         return new StatementParameterItemStack();
@@ -15,11 +15,13 @@ import buildcraft.api.statements.containers.ISidedStatementContainer;
 
 import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 import buildcraft.core.BCCoreStatements;
 
-public class TriggerRedstoneInput extends BCStatement implements ITriggerInternal {
+public class TriggerRedstoneInput extends BCStatement implements ITriggerInternal, ITriggerChangeSource {
     public final boolean active;
 
     public TriggerRedstoneInput(boolean active) {
@@ -70,6 +72,11 @@ public class TriggerRedstoneInput extends BCStatement implements ITriggerInterna
         }
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.REDSTONE;
+    }
+
     @Override
     public IStatement[] getPossible() {
         return BCCoreStatements.TRIGGER_REDSTONE;
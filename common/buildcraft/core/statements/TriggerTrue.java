@@ -12,10 +12,12 @@ import buildcraft.api.statements.ITriggerInternal;
 
 import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.BCCoreSprites;
 
-public class TriggerTrue extends BCStatement implements ITriggerInternal {
+public class TriggerTrue extends BCStatement implements ITriggerInternal, ITriggerChangeSource {
 
     public TriggerTrue() {
         super("buildcraftcore:trigger.true");
@@ -31,6 +33,11 @@ public class TriggerTrue extends BCStatement implements ITriggerInternal {
         return true;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return false;
+    }
+
     @Override
     public String getDescription() {
         return LocaleUtil.localize("gate.trigger.true");
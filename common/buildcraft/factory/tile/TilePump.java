@@ -7,29 +7,28 @@
 package buildcraft.factory.tile;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 import com.google.common.base.Stopwatch;
 
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.profiler.Profiler;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumFacing.Axis;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
 
 import net.minecraftforge.fluids.Fluid;
 import net.minecraftforge.fluids.FluidRegistry;
@@ -51,8 +50,6 @@ import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.FluidUtilBC;
 import buildcraft.lib.misc.NBTUtilBC;
-import buildcraft.lib.misc.ProfilerUtil;
-import buildcraft.lib.misc.ProfilerUtil.ProfilerEntry;
 import buildcraft.lib.misc.VecUtil;
 import buildcraft.lib.mj.MjRedstoneBatteryReceiver;
 import buildcraft.lib.net.PacketBufferBC;
@@ -76,21 +73,9 @@ public class TilePump extends TileMiner {
         EnumFacing.WEST, EnumFacing.EAST //
     };
 
-    static final class FluidPath {
-        public final BlockPos thisPos;
-
-        @Nullable
-        public final FluidPath parent;
-
-        public FluidPath(BlockPos thisPos, FluidPath parent) {
-            this.thisPos = thisPos;
-            this.parent = parent;
-        }
-
-        public FluidPath and(BlockPos pos) {
-            return new FluidPath(pos, this);
-        }
-    }
+    /** The maximum number of neighbouring blocks that the flood fill will look at per tick. Large lakes are scanned
+     * over several ticks rather than all at once. */
+    private static final int MAX_SCAN_CHECKS_PER_TICK = 4096;
 
     private static final ResourceLocation ADVANCEMENT_DRAIN_ANY
         = new ResourceLocation("buildcraftfactory:draining_the_world");
@@ -100,12 +85,28 @@ public class TilePump extends TileMiner {
 
     private final Tank tank = new Tank("tank", 16 * Fluid.BUCKET_VOLUME, this);
     private boolean queueBuilt = false;
-    private final Map<BlockPos, FluidPath> paths = new HashMap<>();
+
+    /** Map of packed position (see {@link BlockPos#toLong()}) -> index in {@link #pathPositions} of every fluid block
+     * that the pump has found a path to. */
+    private final TLongIntHashMap pathIndices = new TLongIntHashMap(16, 0.5f, 0, -1);
+
+    /** The packed position of every path node, indexed by the values in {@link #pathIndices}. */
+    private final TLongArrayList pathPositions = new TLongArrayList();
+
+    /** The index (in {@link #pathPositions}) of the node that each node was reached from, or -1 for the first one. */
+    private final TIntArrayList pathParents = new TIntArrayList();
+
     private BlockPos fluidConnection;
-    private final Deque<BlockPos> queue = new ArrayDeque<>();
+
+    /** Packed positions of every fluid source block that can be drained. The last one is drained first. */
+    private final TLongArrayList queue = new TLongArrayList();
     private boolean isInfiniteWaterSource;
     private final SafeTimeTracker rebuildDelay = new SafeTimeTracker(30);
 
+    /** The flood fill that is currently (re)building {@link #queue}, or null if it has finished. */
+    @Nullable
+    private FluidScan scan;
+
     /** The position just below the bottom of the pump tube. */
     private BlockPos targetPos;
 
@@ -125,22 +126,22 @@ public class TilePump extends TileMiner {
 
     private void buildQueue() {
         queue.clear();
-        paths.clear();
-        Fluid queueFluid = null;
+        pathIndices.clear();
+        pathPositions.clear();
+        pathParents.clear();
+        scan = null;
         isInfiniteWaterSource = false;
-        Set<BlockPos> checked = new HashSet<>();
-        List<BlockPos> nextPosesToCheck = new ArrayList<>();
         for (targetPos = pos.down(); !world.isOutsideBuildHeight(targetPos); targetPos = targetPos.down()) {
             if (pos.getY() - targetPos.getY() > BCCoreConfig.miningMaxDepth) {
                 break;
             }
-            if (BlockUtil.getFluidWithFlowing(world, targetPos) != null) {
-                queueFluid = BlockUtil.getFluidWithFlowing(world, targetPos);
-                nextPosesToCheck.add(targetPos);
-                paths.put(targetPos, new FluidPath(targetPos, null));
-                checked.add(targetPos);
+            Fluid queueFluid = BlockUtil.getFluidWithFlowing(world, targetPos);
+            if (queueFluid != null) {
+                long packed = targetPos.toLong();
+                scan = new FluidScan(queueFluid, addPath(packed, -1));
+                scan.checked.add(packed);
                 if (BlockUtil.getFluid(world, targetPos) != null) {
-                    queue.add(targetPos);
+                    queue.add(packed);
                 }
                 fluidConnection = targetPos;
                 break;
@@ -149,96 +150,127 @@ public class TilePump extends TileMiner {
                 break;
             }
         }
-        if (nextPosesToCheck.isEmpty() || queueFluid == null) {
-            return;
+    }
+
+    private int addPath(long packedPos, int parent) {
+        int index = pathPositions.size();
+        pathPositions.add(packedPos);
+        pathParents.add(parent);
+        pathIndices.put(packedPos, index);
+        return index;
+    }
+
+    private boolean hasPath(BlockPos blockPos) {
+        return pathIndices.containsKey(blockPos.toLong());
+    }
+
+    /** A breadth first search through every connected block of the same fluid, starting from {@link #targetPos}. This
+     * only looks at {@link #MAX_SCAN_CHECKS_PER_TICK} blocks every time {@link #tick()} is called. */
+    private final class FluidScan {
+        final Fluid fluid;
+        final EnumFacing[] directions;
+        final boolean isWater;
+        final long maxLengthSquared;
+        final TLongHashSet checked = new TLongHashSet();
+        final MutableBlockPos mutablePos = new MutableBlockPos();
+
+        /** Indexes of the path nodes being expanded in this pass, and those that will be expanded in the next one. */
+        TIntArrayList current = new TIntArrayList(), next = new TIntArrayList();
+        int currentIndex = 0;
+
+        long elapsedNanos = 0;
+        int ticks = 0;
+
+        FluidScan(Fluid fluid, int startIndex) {
+            this.fluid = fluid;
+            this.directions = fluid.isGaseous() ? SEARCH_GASEOUS : SEARCH_NORMAL;
+            this.isWater = !BCCoreConfig.pumpsConsumeWater && FluidUtilBC.areFluidsEqual(fluid, FluidRegistry.WATER);
+            this.maxLengthSquared = BCCoreConfig.pumpMaxDistance * (long) BCCoreConfig.pumpMaxDistance;
+            current.add(startIndex);
         }
 
-        Profiler debugProf = new Profiler();
-        debugProf.profilingEnabled = DEBUG_PUMP;
-        ProfilerEntry prof = ProfilerUtil.createEntry(debugProf, world.profiler);
-        Stopwatch watch = Stopwatch.createStarted();
-        debugProf.startSection("root");
-        buildQueue0(prof, queueFluid, nextPosesToCheck, checked);
-        debugProf.endSection();
-        watch.stop();
-        if (DEBUG_PUMP) {
-            ProfilerUtil.logProfilerResults(debugProf, "root", watch.elapsed(TimeUnit.NANOSECONDS));
+        /** @return True if the scan has finished. */
+        boolean tick() {
+            Stopwatch watch = Stopwatch.createStarted();
+            ticks++;
+            boolean finished = scan();
+            if (finished) {
+                findOilSpring(fluid);
+            }
+            elapsedNanos += watch.elapsed(TimeUnit.NANOSECONDS);
+            if (finished && DEBUG_PUMP) {
+                BCLog.logger.info(
+                    "Pump @ " + getPos() + " found " + pathPositions.size() + " paths and " + queue.size()
+                        + " sources in " + elapsedNanos / 1000 + "us over " + ticks + " ticks"
+                );
+            }
+            return finished;
         }
-    }
 
-    private void buildQueue0(
-        ProfilerEntry prof, Fluid queueFluid, List<BlockPos> nextPosesToCheck, Set<BlockPos> checked
-    ) {
-        prof.startSection("build");
-        EnumFacing[] directions = queueFluid.isGaseous() ? SEARCH_GASEOUS : SEARCH_NORMAL;
-        boolean isWater
-            = !BCCoreConfig.pumpsConsumeWater && FluidUtilBC.areFluidsEqual(queueFluid, FluidRegistry.WATER);
-        final int maxLengthSquared = BCCoreConfig.pumpMaxDistance * BCCoreConfig.pumpMaxDistance;
-        outer: while (!nextPosesToCheck.isEmpty()) {
-            List<BlockPos> nextPosesToCheckCopy = new ArrayList<>(nextPosesToCheck);
-            nextPosesToCheck.clear();
-            for (BlockPos posToCheck : nextPosesToCheckCopy) {
+        private boolean scan() {
+            int checks = 0;
+            while (true) {
+                if (currentIndex >= current.size()) {
+                    if (next.isEmpty()) {
+                        return true;
+                    }
+                    TIntArrayList swap = current;
+                    current = next;
+                    next = swap;
+                    next.resetQuick();
+                    currentIndex = 0;
+                }
+                if (checks >= MAX_SCAN_CHECKS_PER_TICK) {
+                    return false;
+                }
+                int parent = current.get(currentIndex++);
+                long parentPos = pathPositions.get(parent);
+                int px = VecUtil.unpackX(parentPos);
+                int py = VecUtil.unpackY(parentPos);
+                int pz = VecUtil.unpackZ(parentPos);
                 int count = 0;
                 for (EnumFacing side : directions) {
-                    prof.startSection("check");
-                    BlockPos offsetPos = posToCheck.offset(side);
-                    if (offsetPos.distanceSq(targetPos) > maxLengthSquared) {
-                        prof.endSection();
+                    checks++;
+                    int x = px + side.getFrontOffsetX();
+                    int y = py + side.getFrontOffsetY();
+                    int z = pz + side.getFrontOffsetZ();
+                    long dx = x - targetPos.getX();
+                    long dy = y - targetPos.getY();
+                    long dz = z - targetPos.getZ();
+                    if (dx * dx + dy * dy + dz * dz > maxLengthSquared) {
                         continue;
                     }
-                    boolean isNew = checked.add(offsetPos);
-                    prof.endSection();
-                    if (isNew) {
-                        prof.startSection("push");
-                        prof.startSection("eq_get");
-                        Fluid fluidAt = BlockUtil.getFluidWithFlowing(world, offsetPos);
-                        prof.endStartSection("eq_cmp");
-                        boolean eq = FluidUtilBC.areFluidsEqual(fluidAt, queueFluid);
-                        prof.endSection();
-                        if (eq) {
-                            prof.startSection("prevPath");
-                            FluidPath oldPath = paths.get(posToCheck);
-                            prof.endStartSection("new");
-                            FluidPath path = new FluidPath(offsetPos, oldPath);
-                            prof.endStartSection("putNew");
-                            paths.put(offsetPos, path);
-                            prof.endStartSection("getFluid");
-                            if (BlockUtil.getFluid(world, offsetPos) != null) {
-                                prof.endStartSection("addToQueue");
-                                queue.add(offsetPos);
-                            }
-                            prof.endStartSection("next");
-                            nextPosesToCheck.add(offsetPos);
-                            count++;
-                            prof.endSection();
-                        }
-                        prof.endSection();
-                    } else {
+                    long packed = VecUtil.packPos(x, y, z);
+                    if (!checked.add(packed)) {
                         // We've already tested this block: it *must* be a valid water source
                         count++;
+                        continue;
                     }
-                }
-                if (isWater) {
-                    prof.startSection("water_check");
-                    if (count >= 2) {
-                        IBlockState below = world.getBlockState(posToCheck.down());
-                        // Same check as in BlockDynamicLiquid.updateTick:
-                        // if that method changes how it checks for adjacent
-                        // water sources then this also needs updating
-                        Fluid fluidBelow = BlockUtil.getFluidWithoutFlowing(below);
-                        if (
-                            FluidUtilBC.areFluidsEqual(fluidBelow, FluidRegistry.WATER) || below.getMaterial().isSolid()
-                        ) {
-                            isInfiniteWaterSource = true;
-                            prof.endSection();
-                            break outer;
+                    mutablePos.setPos(x, y, z);
+                    if (FluidUtilBC.areFluidsEqual(BlockUtil.getFluidWithFlowing(world, mutablePos), fluid)) {
+                        next.add(addPath(packed, parent));
+                        if (BlockUtil.getFluid(world, mutablePos) != null) {
+                            queue.add(packed);
                         }
+                        count++;
+                    }
+                }
+                if (isWater && count >= 2) {
+                    IBlockState below = world.getBlockState(mutablePos.setPos(px, py - 1, pz));
+                    // Same check as in BlockDynamicLiquid.updateTick:
+                    // if that method changes how it checks for adjacent
+                    // water sources then this also needs updating
+                    Fluid fluidBelow = BlockUtil.getFluidWithoutFlowing(below);
+                    if (FluidUtilBC.areFluidsEqual(fluidBelow, FluidRegistry.WATER) || below.getMaterial().isSolid()) {
+                        isInfiniteWaterSource = true;
+                        return true;
                     }
-                    prof.endSection();
                 }
             }
         }
-        prof.endStartSection("oil_spring_search");
+    }
+
+    private void findOilSpring(Fluid queueFluid) {
         if (isOil(queueFluid)) {
             List<BlockPos> springPositions = new ArrayList<>();
             BlockPos center = VecUtil.replaceValue(getPos(), Axis.Y, 0);
@@ -260,9 +292,7 @@ public class TilePump extends TileMiner {
                     springPositions.sort(Comparator.comparingDouble(pos::distanceSq));
                     oilSpringPos = springPositions.get(0);
             }
-
         }
-        prof.endSection();
     }
 
     private static boolean isOil(Fluid queueFluid) {
@@ -279,7 +309,7 @@ public class TilePump extends TileMiner {
 
     private void nextPos() {
         while (!queue.isEmpty()) {
-            currentPos = queue.removeLast();
+            currentPos = BlockPos.fromLong(queue.removeAt(queue.size() - 1));
             if (canDrain(currentPos)) {
                 updateLength();
                 return;
@@ -313,17 +343,30 @@ public class TilePump extends TileMiner {
 
     @Override
     public void mine() {
+        if (scan != null) {
+            world.profiler.startSection("scan");
+            boolean finished = scan.tick();
+            world.profiler.endSection();
+            if (!finished) {
+                return;
+            }
+            scan = null;
+            if (currentPos == null || !hasPath(currentPos)) {
+                nextPos();
+            }
+        }
         if (tank.getFluidAmount() > tank.getCapacity() / 2) {
             return;
         }
         long target = 10 * MjAPI.MJ;
-        if (currentPos != null && paths.containsKey(currentPos)) {
+        if (currentPos != null && hasPath(currentPos)) {
             progress += battery.extractPower(0, target - progress);
             if (progress < target) {
                 return;
             }
 
             FluidStack drain = BlockUtil.drainBlock(world, currentPos, false);
+            boolean pathBroken = false;
 
             drain_attempt: {
 
@@ -345,6 +388,7 @@ public class TilePump extends TileMiner {
                                 + " but couldn't because the path stopped at " + invalid + "!"
                         );
                     }
+                    pathBroken = true;
                     break drain_attempt;
                 } else if (!canDrain(currentPos)) {
                     if (DEBUG_PUMP) {
@@ -373,14 +417,22 @@ public class TilePump extends TileMiner {
                             }
                         }
                     }
-                    paths.remove(currentPos);
+                    pathIndices.remove(currentPos.toLong());
                     nextPos();
                 }
                 return;
             }
-            if (!rebuildDelay.markTimeIfDelay(world)) {
-                return;
+            if (pathBroken) {
+                // Every block queued behind the break is probably unreachable too, so find new paths straight away
+                // rather than trying (and dropping) each of them one tick at a time
+                rebuildQueue();
+            } else {
+                // Skip this block rather than rebuilding the whole queue, as the rest of it is probably still fine.
+                // The queue is rebuilt once every block in it has been tried.
+                pathIndices.remove(currentPos.toLong());
+                nextPos();
             }
+            return;
         } else {
             if (currentPos == null && !rebuildDelay.markTimeIfDelay(world)) {
                 return;
@@ -396,21 +448,30 @@ public class TilePump extends TileMiner {
                 }
             }
         }
+        rebuildQueue();
+    }
+
+    private void rebuildQueue() {
         buildQueue();
-        nextPos();
+        if (scan == null) {
+            nextPos();
+        }
     }
 
     @Nullable
     private BlockPos getFirstInvalidPointOnPath(BlockPos from) {
-        FluidPath path = paths.get(from);
-        if (path == null) {
+        int index = pathIndices.get(from.toLong());
+        if (index == -1) {
             return from;
         }
+        MutableBlockPos pathPos = new MutableBlockPos();
         do {
-            if (BlockUtil.getFluidWithFlowing(world, path.thisPos) == null) {
-                return path.thisPos;
+            long packed = pathPositions.get(index);
+            pathPos.setPos(VecUtil.unpackX(packed), VecUtil.unpackY(packed), VecUtil.unpackZ(packed));
+            if (BlockUtil.getFluidWithFlowing(world, pathPos) == null) {
+                return pathPos.toImmutable();
             }
-        } while ((path = path.parent) != null);
+        } while ((index = pathParents.get(index)) != -1);
         return null;
     }
 
@@ -462,6 +523,7 @@ public class TilePump extends TileMiner {
         super.getDebugInfo(left, right, side);
         left.add("fluid = " + tank.getDebugString());
         left.add("queue size = " + queue.size());
+        left.add("scanning = " + (scan != null));
         left.add("infinite = " + isInfiniteWaterSource);
     }
 
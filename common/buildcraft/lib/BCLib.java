@@ -16,6 +16,7 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 
 import buildcraft.api.BCModules;
@@ -38,6 +39,7 @@ import buildcraft.lib.registry.TagManager;
 import buildcraft.lib.registry.TagManager.EnumTagType;
 import buildcraft.lib.registry.TagManager.TagEntry;
 import buildcraft.lib.script.ReloadableRegistryManager;
+import buildcraft.lib.tile.TileBC_Neptune;
 
 //@formatter:off
 @Mod(
@@ -151,6 +153,11 @@ public class BCLib {
         event.registerServerCommand(new CommandBuildCraft());
     }
 
+    @Mod.EventHandler
+    public static void serverStopped(FMLServerStoppedEvent event) {
+        TileBC_Neptune.clearAllNetworkUpdates();
+    }
+
     static {
         startBatch();
         registerTag("item.guide").reg("guide").locale("buildcraft.guide").model("guide").tab("vanilla.misc");
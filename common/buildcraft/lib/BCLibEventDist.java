@@ -48,6 +48,7 @@ import buildcraft.lib.misc.data.ModelVariableData;
 import buildcraft.lib.net.MessageDebugRequest;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+import buildcraft.lib.tile.TileBC_Neptune;
 
 public enum BCLibEventDist {
     INSTANCE;
@@ -129,6 +130,7 @@ public enum BCLibEventDist {
     public static void serverTick(ServerTickEvent event) {
         if (event.phase == Phase.END) {
             BCAdvDebugging.INSTANCE.onServerPostTick();
+            TileBC_Neptune.flushAllNetworkUpdates();
             MessageUtil.postServerTick();
         }
     }
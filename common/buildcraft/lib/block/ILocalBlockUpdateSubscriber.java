@@ -17,7 +17,8 @@ public interface ILocalBlockUpdateSubscriber {
 
     /**
      * The distance from the @{BlockPos} that subscribers should be notified about updates. This method should be kept
-     * lightweight as it can be called multiple times per tick.
+     * lightweight as it can be called multiple times per tick. This (and @{getSubscriberPos}) must not change while the
+     * subscriber is registered, as they are also used to decide which chunks the subscriber is listening to.
      *
      * @return the range from the @{BlockPos} returned by @{getSubscriberPos} where block update events will trigger a
      * notification
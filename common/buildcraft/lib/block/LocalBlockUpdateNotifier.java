@@ -1,6 +1,9 @@
 package buildcraft.lib.block;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -9,6 +12,7 @@ import javax.annotation.Nonnull;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.IWorldEventListener;
 import net.minecraft.world.World;
 
@@ -17,12 +21,17 @@ import buildcraft.lib.world.WorldEventListenerAdapter;
 
 /**
  * Listens for BlockUpdates in a given world and notifies all registered IBlockUpdateSubscribers of the update provided
- * it was within the update range of the ILocalBlockUpdateSubscriber
+ * it was within the update range of the ILocalBlockUpdateSubscriber. Subscribers are bucketed by every chunk that their
+ * update range covers, so a block update only has to check the subscribers near it.
  */
 public class LocalBlockUpdateNotifier {
 
     private static final Map<World, LocalBlockUpdateNotifier> instanceMap = new WeakHashMap<>();
-    private final Set<ILocalBlockUpdateSubscriber> subscriberSet = new HashSet<>();
+    /** Map of {@link ChunkPos#asLong(int, int)} -> every subscriber whose update range covers that chunk. */
+    private final Map<Long, Set<ILocalBlockUpdateSubscriber>> subscribersByChunk = new HashMap<>();
+    /** Map of subscriber -> the chunks that it was added to, as the position or range might have changed by the time
+     * it is removed. */
+    private final Map<ILocalBlockUpdateSubscriber, List<Long>> subscriberChunks = new HashMap<>();
 
 
     private LocalBlockUpdateNotifier(World world) {
@@ -56,7 +65,24 @@ public class LocalBlockUpdateNotifier {
      * @param subscriber the subscriber to receive notifications about local block updates
      */
     public void registerSubscriberForUpdateNotifications(ILocalBlockUpdateSubscriber subscriber) {
-        subscriberSet.add(subscriber);
+        if (subscriberChunks.containsKey(subscriber)) {
+            return;
+        }
+        BlockPos keyPos = subscriber.getSubscriberPos();
+        int updateRange = subscriber.getUpdateRange();
+        int minChunkX = (keyPos.getX() - updateRange) >> 4;
+        int maxChunkX = (keyPos.getX() + updateRange) >> 4;
+        int minChunkZ = (keyPos.getZ() - updateRange) >> 4;
+        int maxChunkZ = (keyPos.getZ() + updateRange) >> 4;
+        List<Long> chunks = new ArrayList<>();
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                Long key = ChunkPos.asLong(cx, cz);
+                subscribersByChunk.computeIfAbsent(key, k -> new HashSet<>()).add(subscriber);
+                chunks.add(key);
+            }
+        }
+        subscriberChunks.put(subscriber, chunks);
     }
 
     /**
@@ -65,7 +91,16 @@ public class LocalBlockUpdateNotifier {
      * @param subscriber the subscriber to no longer receive notifications about local block update
      */
     public void removeSubscriberFromUpdateNotifications(ILocalBlockUpdateSubscriber subscriber) {
-        subscriberSet.remove(subscriber);
+        List<Long> chunks = subscriberChunks.remove(subscriber);
+        if (chunks == null) {
+            return;
+        }
+        for (Long key : chunks) {
+            Set<ILocalBlockUpdateSubscriber> bucket = subscribersByChunk.get(key);
+            if (bucket != null && bucket.remove(subscriber) && bucket.isEmpty()) {
+                subscribersByChunk.remove(key);
+            }
+        }
     }
 
     /**
@@ -81,7 +116,12 @@ public class LocalBlockUpdateNotifier {
      */
     private void notifySubscribersInRange(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState,
                                           int flags) {
-        for (ILocalBlockUpdateSubscriber subscriber : subscriberSet) {
+        Set<ILocalBlockUpdateSubscriber> bucket =
+            subscribersByChunk.get(ChunkPos.asLong(eventPos.getX() >> 4, eventPos.getZ() >> 4));
+        if (bucket == null) {
+            return;
+        }
+        for (ILocalBlockUpdateSubscriber subscriber : bucket) {
             BlockPos keyPos = subscriber.getSubscriberPos();
             int updateRange = subscriber.getUpdateRange();
             if (Math.abs(keyPos.getX() - eventPos.getX()) <= updateRange &&
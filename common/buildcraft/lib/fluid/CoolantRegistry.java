@@ -7,9 +7,8 @@
 package buildcraft.lib.fluid;
 
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 
 import net.minecraftforge.fluids.FluidStack;
@@ -18,11 +17,19 @@ import buildcraft.api.fuels.ICoolant;
 import buildcraft.api.fuels.ICoolantManager;
 import buildcraft.api.fuels.ISolidCoolant;
 
+import buildcraft.lib.misc.FluidUtilBC;
+import buildcraft.lib.misc.collect.KeyIndexedList;
+
 public enum CoolantRegistry implements ICoolantManager {
     INSTANCE;
 
-    private final List<ICoolant> coolants = new LinkedList<>();
-    private final List<ISolidCoolant> solidCoolants = new LinkedList<>();
+    // Other implementations could match anything, so only the ones created here are indexed
+    private final KeyIndexedList<String, ICoolant> coolants = new KeyIndexedList<>(coolant ->
+        coolant.getClass() == Coolant.class ? FluidUtilBC.getIndexKey(((Coolant) coolant).fluid) : null
+    );
+    private final KeyIndexedList<Item, ISolidCoolant> solidCoolants = new KeyIndexedList<>(coolant ->
+        coolant.getClass() == SolidCoolant.class ? ((SolidCoolant) coolant).solid.getItem() : null
+    );
 
     @Override
     public ICoolant addCoolant(ICoolant coolant) {
@@ -61,7 +68,7 @@ public enum CoolantRegistry implements ICoolantManager {
         if (fluid == null || fluid.amount == 0) {
             return null;
         }
-        for (ICoolant coolant : coolants) {
+        for (ICoolant coolant : coolants.getCandidates(FluidUtilBC.getIndexKey(fluid))) {
             if (coolant.matchesFluid(fluid)) {
                 return coolant;
             }
@@ -74,7 +81,7 @@ public enum CoolantRegistry implements ICoolantManager {
         if (fluid == null || fluid.amount == 0) {
             return 0;
         }
-        for (ICoolant coolant : coolants) {
+        for (ICoolant coolant : coolants.getCandidates(FluidUtilBC.getIndexKey(fluid))) {
             float degrees = coolant.getDegreesCoolingPerMB(fluid, heat);
             if (degrees > 0) {
                 return degrees;
@@ -85,7 +92,7 @@ public enum CoolantRegistry implements ICoolantManager {
 
     @Override
     public ISolidCoolant getSolidCoolant(ItemStack solid) {
-        for (ISolidCoolant coolant : solidCoolants) {
+        for (ISolidCoolant coolant : solidCoolants.getCandidates(solid == null ? null : solid.getItem())) {
             if (coolant.getFluidFromSolidCoolant(solid) != null) {
                 return coolant;
             }
@@ -7,18 +7,20 @@
 package buildcraft.lib.fluid;
 
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 
 import net.minecraftforge.fluids.FluidStack;
 
 import buildcraft.api.fuels.IFuel;
 import buildcraft.api.fuels.IFuelManager;
 
+import buildcraft.lib.misc.FluidUtilBC;
+import buildcraft.lib.misc.collect.KeyIndexedList;
+
 public enum FuelRegistry implements IFuelManager {
     INSTANCE;
 
-    private final List<IFuel> fuels = new LinkedList<>();
+    private final KeyIndexedList<String, IFuel> fuels =
+        new KeyIndexedList<>(fuel -> FluidUtilBC.getIndexKey(fuel.getFluid()));
 
     @Override
     public <F extends IFuel> F addFuel(F fuel) {
@@ -46,7 +48,7 @@ public enum FuelRegistry implements IFuelManager {
         if (fluid == null) {
             return null;
         }
-        for (IFuel fuel : fuels) {
+        for (IFuel fuel : fuels.getCandidates(FluidUtilBC.getIndexKey(fluid))) {
             if (fuel.getFluid().isFluidEqual(fluid)) {
                 return fuel;
             }
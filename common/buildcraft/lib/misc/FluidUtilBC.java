@@ -31,6 +31,7 @@ import buildcraft.api.core.IFluidFilter;
 import buildcraft.api.core.IFluidHandlerAdv;
 
 import buildcraft.lib.fluid.Tank;
+import buildcraft.lib.misc.collect.KeyIndexedList;
 
 public class FluidUtilBC {
 
@@ -98,6 +99,18 @@ public class FluidUtilBC {
         return a.getName().equals(b.getName());
     }
 
+    /** @return The key to use for the given stack in a {@link KeyIndexedList}. This is the name of the fluid (rather
+     *         than the fluid itself) as forge can swap between fluids with the same name, and as names are always the
+     *         same instance the lookup is usually just an identity check. The NBT of the stack isn't part of the key,
+     *         so matches still need to be checked with {@link FluidStack#isFluidEqual(FluidStack)}. */
+    @Nullable
+    public static String getIndexKey(@Nullable FluidStack stack) {
+        if (stack == null || stack.getFluid() == null) {
+            return null;
+        }
+        return stack.getFluid().getName();
+    }
+
     /** @return The fluidstack that was moved, or null if no fluid was moved. */
     @Nullable
     public static FluidStack move(IFluidHandler from, IFluidHandler to) {
@@ -201,4 +201,29 @@ public class VecUtil {
     public static Vec3d max(Vec3d a, Vec3d b, Vec3d c, Vec3d d) {
         return max(max(a, b), max(c, d));
     }
+
+    // Packed positions, in the same format as BlockPos.toLong() and BlockPos.fromLong(long)
+
+    private static final int PACKED_X_BITS = 26, PACKED_Y_BITS = 12, PACKED_Z_BITS = 26;
+    private static final int PACKED_Y_SHIFT = PACKED_Z_BITS;
+    private static final int PACKED_X_SHIFT = PACKED_Y_SHIFT + PACKED_Y_BITS;
+
+    /** @return The same value as {@code new BlockPos(x, y, z).toLong()}, without creating the {@link BlockPos}. */
+    public static long packPos(int x, int y, int z) {
+        return ((long) x & ((1L << PACKED_X_BITS) - 1)) << PACKED_X_SHIFT
+            | ((long) y & ((1L << PACKED_Y_BITS) - 1)) << PACKED_Y_SHIFT//
+            | ((long) z & ((1L << PACKED_Z_BITS) - 1));
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed << (64 - PACKED_X_SHIFT - PACKED_X_BITS) >> (64 - PACKED_X_BITS));
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - PACKED_Y_SHIFT - PACKED_Y_BITS) >> (64 - PACKED_Y_BITS));
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << (64 - PACKED_Z_BITS) >> (64 - PACKED_Z_BITS));
+    }
 }
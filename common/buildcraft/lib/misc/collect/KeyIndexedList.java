@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc.collect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/** A list that can quickly find every value that could match a key, without looking at every value in the list.
+ * <p>
+ * Every value is given a key by a function, or null if it could match any key. {@link #getCandidates(Object)} returns
+ * every value with an equal key, and every value without a key, in the same order as they are in this list. So the
+ * candidates still need to be checked in full, but (as long as most values have a key) there will only be a few of
+ * them. The index is rebuilt the first time that it's used after this list changes.
+ *
+ * @param <K> The type of the key. This should be cheap to hash, and shouldn't change while it's in the list.
+ * @param <V> The type of the values in this list. */
+public class KeyIndexedList<K, V> extends ArrayList<V> {
+    private static final long serialVersionUID = 1L;
+
+    private final Function<V, K> keyFunction;
+    /** Replaced (rather than modified) whenever it's rebuilt, so that it can be read from several threads at once. */
+    private transient volatile Index<K, V> index = null;
+
+    /** @param keyFunction Gets the key for a value, or null if the value could match any key. */
+    public KeyIndexedList(Function<V, K> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    /** @param key The key to look for, or null to only return the values that don't have a key.
+     * @return Every value in this list that could match the given key, in the same order as they are in this list. */
+    public List<V> getCandidates(@Nullable K key) {
+        Index<K, V> current = index;
+        if (current == null || current.modCount != modCount) {
+            current = buildIndex();
+            index = current;
+        }
+        if (key == null) {
+            return current.unkeyed;
+        }
+        List<V> values = current.keyed.get(key);
+        return values == null ? current.unkeyed : values;
+    }
+
+    private Index<K, V> buildIndex() {
+        Map<K, List<V>> keyed = new HashMap<>();
+        List<V> unkeyed = new ArrayList<>();
+        for (V value : this) {
+            K key = keyFunction.apply(value);
+            if (key == null) {
+                // Values without a key need to be in every list, in the right place
+                unkeyed.add(value);
+                for (List<V> values : keyed.values()) {
+                    values.add(value);
+                }
+            } else {
+                keyed.computeIfAbsent(key, k -> new ArrayList<>(unkeyed)).add(value);
+            }
+        }
+        Map<K, List<V>> unmodifiable = new HashMap<>();
+        for (Map.Entry<K, List<V>> entry : keyed.entrySet()) {
+            unmodifiable.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        return new Index<>(modCount, unmodifiable, Collections.unmodifiableList(unkeyed));
+    }
+
+    @Override
+    public V set(int index, V element) {
+        // This doesn't change the modCount
+        this.index = null;
+        return super.set(index, element);
+    }
+
+    private static final class Index<K, V> {
+        final int modCount;
+        final Map<K, List<V>> keyed;
+        final List<V> unkeyed;
+
+        Index(int modCount, Map<K, List<V>> keyed, List<V> unkeyed) {
+            this.modCount = modCount;
+            this.keyed = keyed;
+            this.unkeyed = unkeyed;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc.data;
+
+/** Packs non-negative ints into a dense int[], using a fixed number of bits per value. Values may straddle two words,
+ * so no bits are wasted between them. */
+public class BitPackedIntArray {
+    /** @return The minimum number of bits needed to store every value in [0, maxValue]. Always at least 1. */
+    public static int getBitsFor(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    public static int getPackedLength(int count, int bits) {
+        return (int) ((count * (long) bits + 31) >>> 5);
+    }
+
+    /** Packs the first count values of the given array. Every value must fit in the given number of bits. */
+    public static int[] pack(int[] values, int count, int bits) {
+        checkBits(bits);
+        int[] packed = new int[getPackedLength(count, bits)];
+        long mask = (1L << bits) - 1;
+        long bitIndex = 0;
+        for (int i = 0; i < count; i++) {
+            long value = values[i] & mask;
+            int word = (int) (bitIndex >>> 5);
+            int offset = (int) (bitIndex & 31);
+            packed[word] |= (int) (value << offset);
+            if (offset + bits > 32) {
+                packed[word + 1] |= (int) (value >>> (32 - offset));
+            }
+            bitIndex += bits;
+        }
+        return packed;
+    }
+
+    /** Unpacks count values from the packed array into dest, starting at dest[0]. */
+    public static void unpack(int[] packed, int bits, int[] dest, int count) {
+        checkBits(bits);
+        if (packed.length < getPackedLength(count, bits)) {
+            throw new IllegalArgumentException(
+                "Packed array is too short: " + packed.length + " < " + getPackedLength(count, bits)
+            );
+        }
+        long mask = (1L << bits) - 1;
+        long bitIndex = 0;
+        for (int i = 0; i < count; i++) {
+            int word = (int) (bitIndex >>> 5);
+            int offset = (int) (bitIndex & 31);
+            long value = (packed[word] & 0xFFFF_FFFFL) >>> offset;
+            if (offset + bits > 32) {
+                value |= (packed[word + 1] & 0xFFFF_FFFFL) << (32 - offset);
+            }
+            dest[i] = (int) (value & mask);
+            bitIndex += bits;
+        }
+    }
+
+    private static void checkBits(int bits) {
+        if (bits < 1 || bits > 32) {
+            throw new IllegalArgumentException("Bits must be between 1 and 32, but was " + bits);
+        }
+    }
+}
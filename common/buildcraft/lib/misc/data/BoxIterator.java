@@ -156,6 +156,28 @@ public class BoxIterator implements Iterator<BlockPos> {
         return getCurrent();
     }
 
+    /** Moves forwards along the first axis (without changing row) so that the current position has the given value
+     * on that axis, or is at the end of the row if the value is beyond it. Does nothing if the value is behind the
+     * current position. This allows callers to skip over positions that they know they aren't interested in, without
+     * changing the order that every other position is visited in. */
+    public void skipAlongFirstAxis(int value) {
+        if (current == null) {
+            return;
+        }
+        EnumFacing first = order.first;
+        int offset = first.getAxisDirection().getOffset();
+        int currentValue = VecUtil.getValue(current, first.getAxis());
+        if ((value - currentValue) * offset <= 0) {
+            return;
+        }
+        BlockPos goingTo = first.getAxisDirection() == AxisDirection.POSITIVE ? max : min;
+        int bound = VecUtil.getValue(goingTo, first.getAxis());
+        if ((value - bound) * offset > 0) {
+            value = bound;
+        }
+        current = VecUtil.replaceValue(current, first.getAxis(), value);
+    }
+
     private static BlockPos increment(BlockPos pos, EnumFacing facing) {
         int diff = facing.getAxisDirection().getOffset();
         int value = VecUtil.getValue(pos, facing.getAxis()) + diff;
@@ -132,7 +132,7 @@ class NbtSquishMapReader {
     }
 
     /** Similar to {@link PacketBuffer#readVarInt()} */
-    private static int readVarInt(DataInput in) throws IOException {
+    static int readVarInt(DataInput in) throws IOException {
         int value = 0;
         int bytesRead = 0;
 
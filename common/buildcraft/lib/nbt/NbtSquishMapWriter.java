@@ -149,7 +149,7 @@ class NbtSquishMapWriter {
             if (debug) log("\nByte Array dictionary size = " + byteArrays.size());
             writeVarInt(to, byteArrays.size());
             for (TByteArrayList ba : byteArrays) {
-                to.writeShort(ba.size());
+                writeLength(to, ba.size());
                 for (byte b : ba.toArray()) {
                     to.writeByte(b);
                 }
@@ -160,7 +160,7 @@ class NbtSquishMapWriter {
             if (debug) log("\nInt Array dictionary size = " + intArrays.size());
             writeVarInt(to, intArrays.size());
             for (TIntArrayList ia : intArrays) {
-                to.writeShort(ia.size());
+                writeLength(to, ia.size());
                 for (int i : ia.toArray()) {
                     to.writeInt(i);
                 }
@@ -175,7 +175,7 @@ class NbtSquishMapWriter {
                 String s = strings.get(i);
                 if (debug) log("\n   String " + i + " = " + s);
                 byte[] stringBytes = s.getBytes(StandardCharsets.UTF_8);
-                to.writeShort(stringBytes.length);
+                writeLength(to, stringBytes.length);
                 to.write(stringBytes);
             }
         }
@@ -197,8 +197,18 @@ class NbtSquishMapWriter {
         profiler.endSection();
     }
 
+    /** Writes the length of an array or string, which the format only has room for 2 (unsigned) bytes for.
+     *
+     * @throws IOException if the length doesn't fit, as writing it would corrupt everything after it. */
+    static void writeLength(DataOutput to, int length) throws IOException {
+        if (length > 0xFFFF) {
+            throw new IOException("Cannot write an array or string with " + length + " entries, the limit is 65535");
+        }
+        to.writeShort(length);
+    }
+
     /** Similar to {@link PacketBuffer#writeVarInt(int)} */
-    private static void writeVarInt(DataOutput to, int input) throws IOException {
+    static void writeVarInt(DataOutput to, int input) throws IOException {
         while ((input & -128) != 0) {
             to.writeByte((input & 0x7f) | 0x80);
             input >>>= 7;
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.nbt;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+
+import net.minecraftforge.common.util.Constants;
+
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.data.NbtSquishConstants;
+
+import buildcraft.lib.misc.data.DecompactingBitSet;
+
+/** Reads the BuildCraft v1 squished format into flat arrays, so that values can be read straight out of it (by index)
+ * without creating an {@link NBTBase} for every entry. Indices are the same as the ones in the written format: every
+ * primitive first (in the order bytes, shorts, ints, longs, floats, doubles), then byte arrays, int arrays, strings
+ * and finally compounds and lists.
+ * <p>
+ * Use {@link NbtSquisher#read(java.io.InputStream)} to create one. */
+public class NbtSquishReader {
+    private static final int[] EMPTY = new int[0];
+
+    private byte[] bytes = new byte[0];
+    private short[] shorts = new short[0];
+    private int[] ints = EMPTY;
+    private long[] longs = new long[0];
+    private float[] floats = new float[0];
+    private double[] doubles = new double[0];
+    private byte[][] byteArrays = new byte[0][];
+    private int[][] intArrays = new int[0][];
+    private String[] strings = new String[0];
+    /** The complex type of each compound or list. */
+    private byte[] complexTypes = new byte[0];
+    /** Compounds contain pairs of (string index, value index), lists contain the index of every element. */
+    private int[][] complex = new int[0][];
+
+    private final int[] offsets = new int[10];
+    private int size;
+    private int root;
+
+    private NbtSquishReader() {}
+
+    /** Reads everything after the magic header. */
+    static NbtSquishReader read(DataInput in) throws IOException {
+        NbtSquishReader reader = new NbtSquishReader();
+        reader.readInternal(in);
+        return reader;
+    }
+
+    private void readInternal(DataInput in) throws IOException {
+        WrittenType type = WrittenType.readType(in);
+        int flags = in.readInt();
+
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_BYTES)) {
+            bytes = new byte[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = in.readByte();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_SHORTS)) {
+            shorts = new short[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < shorts.length; i++) {
+                shorts[i] = in.readShort();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_INTS)) {
+            ints = new int[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = in.readInt();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_LONGS)) {
+            longs = new long[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = in.readLong();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_FLOATS)) {
+            floats = new float[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < floats.length; i++) {
+                floats[i] = in.readFloat();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_DOUBLES)) {
+            doubles = new double[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < doubles.length; i++) {
+                doubles[i] = in.readDouble();
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_BYTE_ARRAYS)) {
+            byteArrays = new byte[NbtSquishMapReader.readVarInt(in)][];
+            for (int i = 0; i < byteArrays.length; i++) {
+                byteArrays[i] = new byte[in.readUnsignedShort()];
+                in.readFully(byteArrays[i]);
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_INT_ARRAYS)) {
+            intArrays = new int[NbtSquishMapReader.readVarInt(in)][];
+            for (int i = 0; i < intArrays.length; i++) {
+                int[] array = new int[in.readUnsignedShort()];
+                for (int j = 0; j < array.length; j++) {
+                    array[j] = in.readInt();
+                }
+                intArrays[i] = array;
+            }
+        }
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_STRINGS)) {
+            strings = new String[NbtSquishMapReader.readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] data = new byte[in.readUnsignedShort()];
+                in.readFully(data);
+                strings[i] = new String(data, StandardCharsets.UTF_8);
+            }
+        }
+
+        int[] sizes = { bytes.length, shorts.length, ints.length, longs.length, floats.length, doubles.length,
+            byteArrays.length, intArrays.length, strings.length };
+        for (int i = 0; i < sizes.length; i++) {
+            offsets[i] = size;
+            size += sizes[i];
+        }
+        offsets[9] = size;
+
+        if (isFlag(flags, NbtSquishConstants.FLAG_HAS_COMPLEX)) {
+            WrittenType stringType = WrittenType.getForSize(strings.length);
+            int count = NbtSquishMapReader.readVarInt(in);
+            complexTypes = new byte[count];
+            complex = new int[count][];
+            for (int i = 0; i < count; i++) {
+                // Children are always written before their parents
+                int maxIndex = size;
+                int complexType = in.readUnsignedByte();
+                complexTypes[i] = (byte) complexType;
+                if (complexType == NbtSquishConstants.COMPLEX_COMPOUND) {
+                    int[] entries = new int[NbtSquishMapReader.readVarInt(in) * 2];
+                    for (int j = 0; j < entries.length; j += 2) {
+                        entries[j] = checkIndex(stringType.readIndex(in), strings.length);
+                        entries[j + 1] = checkIndex(type.readIndex(in), maxIndex);
+                    }
+                    complex[i] = entries;
+                } else if (complexType == NbtSquishConstants.COMPLEX_LIST) {
+                    int[] entries = new int[NbtSquishMapReader.readVarInt(in)];
+                    for (int j = 0; j < entries.length; j++) {
+                        entries[j] = checkIndex(type.readIndex(in), maxIndex);
+                    }
+                    complex[i] = entries;
+                } else if (complexType == NbtSquishConstants.COMPLEX_LIST_PACKED) {
+                    complexTypes[i] = NbtSquishConstants.COMPLEX_LIST;
+                    complex[i] = readPackedList(type, in, maxIndex);
+                } else {
+                    throw new InvalidInputDataException("Unknown complex type " + complexType);
+                }
+                size++;
+            }
+        }
+        root = checkIndex(type.readIndex(in), size);
+    }
+
+    /** The same as NbtSquishMapReader.readPackedList, but only for indices. */
+    private static int[] readPackedList(WrittenType type, DataInput in, int maxIndex) throws IOException {
+        int[] dictionary = new int[NbtSquishMapReader.readVarInt(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = checkIndex(type.readIndex(in), maxIndex);
+        }
+        int[] entries = new int[NbtSquishMapReader.readVarInt(in)];
+        int[] left = new int[entries.length];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = i;
+        }
+        int leftCount = left.length;
+        int removed = 0;
+        for (int bits = 1; removed < dictionary.length; bits++) {
+            byte[] bitsetData = new byte[NbtSquishMapReader.readVarInt(in)];
+            in.readFully(bitsetData);
+            DecompactingBitSet decompactor = new DecompactingBitSet(bits, bitsetData);
+            int maxVal = (1 << bits) - 1;
+            int nextCount = 0;
+            for (int i = 0; i < leftCount; i++) {
+                int value = decompactor.next();
+                if (value < maxVal) {
+                    entries[left[i]] = dictionary[checkIndex(removed + value, dictionary.length)];
+                } else {
+                    // Safe to reuse the array as this is always behind i
+                    left[nextCount++] = left[i];
+                }
+            }
+            leftCount = nextCount;
+            removed += maxVal;
+        }
+        return entries;
+    }
+
+    private static boolean isFlag(int flags, int flag) {
+        return (flags & flag) == flag;
+    }
+
+    private static int checkIndex(int index, int max) throws InvalidInputDataException {
+        if (index < 0 || index >= max) {
+            throw new InvalidInputDataException("Index " + index + " is out of bounds! (max = " + max + ")");
+        }
+        return index;
+    }
+
+    // Reading
+
+    /** @return The index of the root tag. */
+    public int getRoot() {
+        return root;
+    }
+
+    /** @return The type of tag at the given index, as one of the values in {@link Constants.NBT}. */
+    public int getTagType(int index) throws InvalidInputDataException {
+        checkIndex(index, size);
+        if (index < offsets[1]) return Constants.NBT.TAG_BYTE;
+        if (index < offsets[2]) return Constants.NBT.TAG_SHORT;
+        if (index < offsets[3]) return Constants.NBT.TAG_INT;
+        if (index < offsets[4]) return Constants.NBT.TAG_LONG;
+        if (index < offsets[5]) return Constants.NBT.TAG_FLOAT;
+        if (index < offsets[6]) return Constants.NBT.TAG_DOUBLE;
+        if (index < offsets[7]) return Constants.NBT.TAG_BYTE_ARRAY;
+        if (index < offsets[8]) return Constants.NBT.TAG_INT_ARRAY;
+        if (index < offsets[9]) return Constants.NBT.TAG_STRING;
+        int complexType = complexTypes[index - offsets[9]];
+        return complexType == NbtSquishConstants.COMPLEX_COMPOUND ? Constants.NBT.TAG_COMPOUND
+            : Constants.NBT.TAG_LIST;
+    }
+
+    public byte getByte(int index) throws InvalidInputDataException {
+        return bytes[local(index, 0, Constants.NBT.TAG_BYTE)];
+    }
+
+    public short getShort(int index) throws InvalidInputDataException {
+        return shorts[local(index, 1, Constants.NBT.TAG_SHORT)];
+    }
+
+    public int getInt(int index) throws InvalidInputDataException {
+        return ints[local(index, 2, Constants.NBT.TAG_INT)];
+    }
+
+    public long getLong(int index) throws InvalidInputDataException {
+        return longs[local(index, 3, Constants.NBT.TAG_LONG)];
+    }
+
+    public float getFloat(int index) throws InvalidInputDataException {
+        return floats[local(index, 4, Constants.NBT.TAG_FLOAT)];
+    }
+
+    public double getDouble(int index) throws InvalidInputDataException {
+        return doubles[local(index, 5, Constants.NBT.TAG_DOUBLE)];
+    }
+
+    /** @return The byte array at the given index. Callers must not modify it. */
+    public byte[] getByteArray(int index) throws InvalidInputDataException {
+        return byteArrays[local(index, 6, Constants.NBT.TAG_BYTE_ARRAY)];
+    }
+
+    /** @return The int array at the given index. Callers must not modify it. */
+    public int[] getIntArray(int index) throws InvalidInputDataException {
+        return intArrays[local(index, 7, Constants.NBT.TAG_INT_ARRAY)];
+    }
+
+    public String getString(int index) throws InvalidInputDataException {
+        return strings[local(index, 8, Constants.NBT.TAG_STRING)];
+    }
+
+    public int getListSize(int list) throws InvalidInputDataException {
+        return complex[local(list, 9, Constants.NBT.TAG_LIST)].length;
+    }
+
+    public int getListEntry(int list, int entry) throws InvalidInputDataException {
+        int[] entries = complex[local(list, 9, Constants.NBT.TAG_LIST)];
+        return entries[checkIndex(entry, entries.length)];
+    }
+
+    /** Reads every entry of an int list (or int array) into a new array, with no intermediate tags. */
+    public int[] getIntList(int list) throws InvalidInputDataException {
+        if (getTagType(list) == Constants.NBT.TAG_INT_ARRAY) {
+            return getIntArray(list).clone();
+        }
+        int[] entries = complex[local(list, 9, Constants.NBT.TAG_LIST)];
+        int[] values = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            values[i] = getInt(entries[i]);
+        }
+        return values;
+    }
+
+    /** @return The index of the value stored in the given compound under the given key, or -1 if it doesn't have
+     *         one. */
+    public int getCompoundValue(int compound, String key) throws InvalidInputDataException {
+        int[] entries = complex[local(compound, 9, Constants.NBT.TAG_COMPOUND)];
+        for (int i = 0; i < entries.length; i += 2) {
+            if (strings[entries[i]].equals(key)) {
+                return entries[i + 1];
+            }
+        }
+        return -1;
+    }
+
+    /** @return The keys of the given compound, in the order that they were written. */
+    public String[] getCompoundKeys(int compound) throws InvalidInputDataException {
+        int[] entries = complex[local(compound, 9, Constants.NBT.TAG_COMPOUND)];
+        String[] keys = new String[entries.length / 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = strings[entries[i * 2]];
+        }
+        return keys;
+    }
+
+    /** Creates a full {@link NBTBase} for the given index, for anything that still needs one. */
+    public NBTBase toNbt(int index) throws InvalidInputDataException {
+        switch (getTagType(index)) {
+            case Constants.NBT.TAG_BYTE:
+                return new NBTTagByte(getByte(index));
+            case Constants.NBT.TAG_SHORT:
+                return new NBTTagShort(getShort(index));
+            case Constants.NBT.TAG_INT:
+                return new NBTTagInt(getInt(index));
+            case Constants.NBT.TAG_LONG:
+                return new NBTTagLong(getLong(index));
+            case Constants.NBT.TAG_FLOAT:
+                return new NBTTagFloat(getFloat(index));
+            case Constants.NBT.TAG_DOUBLE:
+                return new NBTTagDouble(getDouble(index));
+            case Constants.NBT.TAG_BYTE_ARRAY:
+                return new NBTTagByteArray(getByteArray(index).clone());
+            case Constants.NBT.TAG_INT_ARRAY:
+                return new NBTTagIntArray(getIntArray(index).clone());
+            case Constants.NBT.TAG_STRING:
+                return new NBTTagString(getString(index));
+            case Constants.NBT.TAG_LIST: {
+                NBTTagList list = new NBTTagList();
+                for (int entry : complex[index - offsets[9]]) {
+                    list.appendTag(toNbt(entry));
+                }
+                return list;
+            }
+            default: {
+                int[] entries = complex[index - offsets[9]];
+                NBTTagCompound compound = new NBTTagCompound();
+                for (int i = 0; i < entries.length; i += 2) {
+                    compound.setTag(strings[entries[i]], toNbt(entries[i + 1]));
+                }
+                return compound;
+            }
+        }
+    }
+
+    private int local(int index, int kind, int expectedType) throws InvalidInputDataException {
+        int end = kind == 9 ? size : offsets[kind + 1];
+        if (index < offsets[kind] || index >= end || (kind == 9 && getTagType(index) != expectedType)) {
+            throw new InvalidInputDataException("Expected a tag of type " + expectedType + " at " + index
+                + ", but found " + (index < 0 || index >= size ? "nothing" : getTagType(index)));
+        }
+        return index - offsets[kind];
+    }
+}
@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.nbt;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.list.array.TShortArrayList;
+import gnu.trove.map.hash.TByteIntHashMap;
+import gnu.trove.map.hash.TDoubleIntHashMap;
+import gnu.trove.map.hash.TFloatIntHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.map.hash.TShortIntHashMap;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+
+import buildcraft.api.data.NbtSquishConstants;
+
+import buildcraft.lib.misc.data.CompactingBitSet;
+
+/** Writes the BuildCraft v1 squished format directly from values, rather than from a complete {@link NBTTagCompound}.
+ * Every value added returns a reference to it, which can then be used in compounds and lists (which must be added
+ * after everything that they contain). Identical values (and identical compounds and lists) are only stored once.
+ * <p>
+ * For example a blueprint can add its palette and then a list of the palette references for every position, without
+ * ever creating a tag for each position.
+ * <p>
+ * Use {@link NbtSquisher#squish(NbtSquishWriter, int, int)} to write out everything that was added. */
+public class NbtSquishWriter {
+
+    // Kinds are in the same order that they are written out in
+    private static final int KIND_BYTE = 0;
+    private static final int KIND_SHORT = 1;
+    private static final int KIND_INT = 2;
+    private static final int KIND_LONG = 3;
+    private static final int KIND_FLOAT = 4;
+    private static final int KIND_DOUBLE = 5;
+    private static final int KIND_BYTE_ARRAY = 6;
+    private static final int KIND_INT_ARRAY = 7;
+    private static final int KIND_STRING = 8;
+    private static final int KIND_COMPLEX = 9;
+    private static final int KIND_COUNT = 10;
+
+    private static final int KIND_SHIFT = 27;
+    private static final int INDEX_MASK = (1 << KIND_SHIFT) - 1;
+
+    // All of the index maps store (index + 1), so that 0 can mean "missing"
+
+    private final TByteArrayList bytes = new TByteArrayList();
+    private final TByteIntHashMap byteIndices = new TByteIntHashMap();
+    private final TShortArrayList shorts = new TShortArrayList();
+    private final TShortIntHashMap shortIndices = new TShortIntHashMap();
+    private final TIntArrayList ints = new TIntArrayList();
+    private final TIntIntHashMap intIndices = new TIntIntHashMap();
+    private final TLongArrayList longs = new TLongArrayList();
+    private final TLongIntHashMap longIndices = new TLongIntHashMap();
+    private final TFloatArrayList floats = new TFloatArrayList();
+    private final TFloatIntHashMap floatIndices = new TFloatIntHashMap();
+    private final TDoubleArrayList doubles = new TDoubleArrayList();
+    private final TDoubleIntHashMap doubleIndices = new TDoubleIntHashMap();
+
+    private final List<TByteArrayList> byteArrays = new ArrayList<>();
+    private final TObjectIntHashMap<TByteArrayList> byteArrayIndices = new TObjectIntHashMap<>();
+    private final List<TIntArrayList> intArrays = new ArrayList<>();
+    private final TObjectIntHashMap<TIntArrayList> intArrayIndices = new TObjectIntHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final TObjectIntHashMap<String> stringIndices = new TObjectIntHashMap<>();
+
+    /** Every compound and list, as the complex type followed by its contents. Compounds contain pairs of (key string
+     * reference, value reference), and lists contain the reference of every element. */
+    private final List<TIntArrayList> complex = new ArrayList<>();
+    private final TObjectIntHashMap<TIntArrayList> complexIndices = new TObjectIntHashMap<>();
+
+    public int addByte(byte value) {
+        int index = byteIndices.get(value);
+        if (index == 0) {
+            bytes.add(value);
+            byteIndices.put(value, index = bytes.size());
+        }
+        return ref(KIND_BYTE, index - 1);
+    }
+
+    public int addShort(short value) {
+        int index = shortIndices.get(value);
+        if (index == 0) {
+            shorts.add(value);
+            shortIndices.put(value, index = shorts.size());
+        }
+        return ref(KIND_SHORT, index - 1);
+    }
+
+    public int addInt(int value) {
+        int index = intIndices.get(value);
+        if (index == 0) {
+            ints.add(value);
+            intIndices.put(value, index = ints.size());
+        }
+        return ref(KIND_INT, index - 1);
+    }
+
+    public int addLong(long value) {
+        int index = longIndices.get(value);
+        if (index == 0) {
+            longs.add(value);
+            longIndices.put(value, index = longs.size());
+        }
+        return ref(KIND_LONG, index - 1);
+    }
+
+    public int addFloat(float value) {
+        int index = floatIndices.get(value);
+        if (index == 0) {
+            floats.add(value);
+            floatIndices.put(value, index = floats.size());
+        }
+        return ref(KIND_FLOAT, index - 1);
+    }
+
+    public int addDouble(double value) {
+        int index = doubleIndices.get(value);
+        if (index == 0) {
+            doubles.add(value);
+            doubleIndices.put(value, index = doubles.size());
+        }
+        return ref(KIND_DOUBLE, index - 1);
+    }
+
+    public int addByteArray(byte[] value) {
+        TByteArrayList list = new TByteArrayList(value);
+        int index = byteArrayIndices.get(list);
+        if (index == 0) {
+            byteArrays.add(list);
+            byteArrayIndices.put(list, index = byteArrays.size());
+        }
+        return ref(KIND_BYTE_ARRAY, index - 1);
+    }
+
+    public int addIntArray(int[] value) {
+        TIntArrayList list = new TIntArrayList(value);
+        int index = intArrayIndices.get(list);
+        if (index == 0) {
+            intArrays.add(list);
+            intArrayIndices.put(list, index = intArrays.size());
+        }
+        return ref(KIND_INT_ARRAY, index - 1);
+    }
+
+    public int addString(String value) {
+        int index = stringIndices.get(value);
+        if (index == 0) {
+            strings.add(value);
+            stringIndices.put(value, index = strings.size());
+        }
+        return ref(KIND_STRING, index - 1);
+    }
+
+    /** @param elements The references of every element in the list. These should all be the same type of tag. */
+    public int addList(int... elements) {
+        TIntArrayList list = new TIntArrayList(elements.length + 1);
+        list.add(NbtSquishConstants.COMPLEX_LIST);
+        for (int element : elements) {
+            checkRef(element);
+            list.add(element);
+        }
+        return addComplex(list);
+    }
+
+    /** Adds a list of int tags. Note that {@link #addIntArray(int[])} is much more compact if the list doesn't need
+     * to be read as an {@link NBTTagList}. */
+    public int addIntList(int[] values) {
+        int[] elements = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            elements[i] = addInt(values[i]);
+        }
+        return addList(elements);
+    }
+
+    public CompoundBuilder newCompound() {
+        return new CompoundBuilder();
+    }
+
+    /** Adds an existing tag, and everything it contains. */
+    public int addTag(NBTBase nbt) {
+        if (nbt instanceof NBTTagByte) {
+            return addByte(((NBTTagByte) nbt).getByte());
+        } else if (nbt instanceof NBTTagShort) {
+            return addShort(((NBTTagShort) nbt).getShort());
+        } else if (nbt instanceof NBTTagInt) {
+            return addInt(((NBTTagInt) nbt).getInt());
+        } else if (nbt instanceof NBTTagLong) {
+            return addLong(((NBTTagLong) nbt).getLong());
+        } else if (nbt instanceof NBTTagFloat) {
+            return addFloat(((NBTTagFloat) nbt).getFloat());
+        } else if (nbt instanceof NBTTagDouble) {
+            return addDouble(((NBTTagDouble) nbt).getDouble());
+        } else if (nbt instanceof NBTTagByteArray) {
+            return addByteArray(((NBTTagByteArray) nbt).getByteArray());
+        } else if (nbt instanceof NBTTagIntArray) {
+            return addIntArray(((NBTTagIntArray) nbt).getIntArray());
+        } else if (nbt instanceof NBTTagString) {
+            return addString(((NBTTagString) nbt).getString());
+        } else if (nbt instanceof NBTTagList) {
+            NBTTagList list = (NBTTagList) nbt;
+            int[] elements = new int[list.tagCount()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = addTag(list.get(i));
+            }
+            return addList(elements);
+        } else if (nbt instanceof NBTTagCompound) {
+            NBTTagCompound compound = (NBTTagCompound) nbt;
+            CompoundBuilder builder = newCompound();
+            for (String key : compound.getKeySet()) {
+                builder.set(key, addTag(compound.getTag(key)));
+            }
+            return builder.build();
+        } else {
+            throw new IllegalArgumentException("Cannot handle tag " + nbt);
+        }
+    }
+
+    private int addComplex(TIntArrayList contents) {
+        int index = complexIndices.get(contents);
+        if (index == 0) {
+            complex.add(contents);
+            complexIndices.put(contents, index = complex.size());
+        }
+        return ref(KIND_COMPLEX, index - 1);
+    }
+
+    private static int ref(int kind, int index) {
+        if (index > INDEX_MASK) {
+            throw new IllegalStateException("Too many values! (" + index + ")");
+        }
+        return (kind << KIND_SHIFT) | index;
+    }
+
+    private static void checkRef(int ref) {
+        if (ref < 0 || (ref >>> KIND_SHIFT) >= KIND_COUNT) {
+            throw new IllegalArgumentException("Not a valid reference: " + ref);
+        }
+    }
+
+    /** Builds up a single compound. Keys are kept in the order that they are set in. */
+    public class CompoundBuilder {
+        private final TIntArrayList contents = new TIntArrayList();
+
+        CompoundBuilder() {
+            contents.add(NbtSquishConstants.COMPLEX_COMPOUND);
+        }
+
+        public CompoundBuilder set(String key, int ref) {
+            checkRef(ref);
+            contents.add(addString(key));
+            contents.add(ref);
+            return this;
+        }
+
+        public CompoundBuilder setByte(String key, byte value) {
+            return set(key, addByte(value));
+        }
+
+        public CompoundBuilder setShort(String key, short value) {
+            return set(key, addShort(value));
+        }
+
+        public CompoundBuilder setInteger(String key, int value) {
+            return set(key, addInt(value));
+        }
+
+        public CompoundBuilder setLong(String key, long value) {
+            return set(key, addLong(value));
+        }
+
+        public CompoundBuilder setFloat(String key, float value) {
+            return set(key, addFloat(value));
+        }
+
+        public CompoundBuilder setDouble(String key, double value) {
+            return set(key, addDouble(value));
+        }
+
+        public CompoundBuilder setByteArray(String key, byte[] value) {
+            return set(key, addByteArray(value));
+        }
+
+        public CompoundBuilder setIntArray(String key, int[] value) {
+            return set(key, addIntArray(value));
+        }
+
+        public CompoundBuilder setString(String key, String value) {
+            return set(key, addString(value));
+        }
+
+        /** @return The reference to the finished compound. */
+        public int build() {
+            return addComplex(contents);
+        }
+    }
+
+    // Writing
+
+    /** Writes out every value that was added, followed by the given root reference. This doesn't write the magic
+     * header. */
+    void write(int root, DataOutput to) throws IOException {
+        checkRef(root);
+        int[][] remaps = new int[KIND_COUNT][];
+        remaps[KIND_BYTE] = sortRemap(bytes.toArray());
+        remaps[KIND_SHORT] = sortRemap(shorts.toArray());
+        remaps[KIND_INT] = sortRemap(ints.toArray());
+        remaps[KIND_LONG] = sortRemap(longs.toArray());
+        remaps[KIND_FLOAT] = sortRemap(floats.toArray());
+        remaps[KIND_DOUBLE] = sortRemap(doubles.toArray());
+        String[] sortedStrings = strings.toArray(new String[0]);
+        Arrays.sort(sortedStrings);
+        remaps[KIND_STRING] = new int[sortedStrings.length];
+        for (int i = 0; i < strings.size(); i++) {
+            remaps[KIND_STRING][i] = Arrays.binarySearch(sortedStrings, strings.get(i));
+        }
+
+        int[] sizes = { bytes.size(), shorts.size(), ints.size(), longs.size(), floats.size(), doubles.size(),
+            byteArrays.size(), intArrays.size(), strings.size(), complex.size() };
+        int[] offsets = new int[KIND_COUNT];
+        int total = 0;
+        for (int kind = 0; kind < KIND_COUNT; kind++) {
+            offsets[kind] = total;
+            total += sizes[kind];
+        }
+        Resolver resolver = new Resolver(remaps, offsets);
+        WrittenType type = WrittenType.getForSize(total);
+        type.writeType(to);
+
+        int flags = 0;
+        if (!bytes.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_BYTES;
+        if (!shorts.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_SHORTS;
+        if (!ints.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_INTS;
+        if (!longs.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_LONGS;
+        if (!floats.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_FLOATS;
+        if (!doubles.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_DOUBLES;
+        if (!byteArrays.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_BYTE_ARRAYS;
+        if (!intArrays.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_INT_ARRAYS;
+        if (!strings.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_STRINGS;
+        if (!complex.isEmpty()) flags |= NbtSquishConstants.FLAG_HAS_COMPLEX;
+        to.writeInt(flags);
+
+        if (!bytes.isEmpty()) {
+            byte[] sorted = bytes.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (byte b : sorted) {
+                to.writeByte(b);
+            }
+        }
+        if (!shorts.isEmpty()) {
+            short[] sorted = shorts.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (short s : sorted) {
+                to.writeShort(s);
+            }
+        }
+        if (!ints.isEmpty()) {
+            int[] sorted = ints.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (int i : sorted) {
+                to.writeInt(i);
+            }
+        }
+        if (!longs.isEmpty()) {
+            long[] sorted = longs.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (long l : sorted) {
+                to.writeLong(l);
+            }
+        }
+        if (!floats.isEmpty()) {
+            float[] sorted = floats.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (float f : sorted) {
+                to.writeFloat(f);
+            }
+        }
+        if (!doubles.isEmpty()) {
+            double[] sorted = doubles.toArray();
+            Arrays.sort(sorted);
+            NbtSquishMapWriter.writeVarInt(to, sorted.length);
+            for (double d : sorted) {
+                to.writeDouble(d);
+            }
+        }
+        if (!byteArrays.isEmpty()) {
+            NbtSquishMapWriter.writeVarInt(to, byteArrays.size());
+            for (TByteArrayList array : byteArrays) {
+                NbtSquishMapWriter.writeLength(to, array.size());
+                for (int i = 0; i < array.size(); i++) {
+                    to.writeByte(array.getQuick(i));
+                }
+            }
+        }
+        if (!intArrays.isEmpty()) {
+            NbtSquishMapWriter.writeVarInt(to, intArrays.size());
+            for (TIntArrayList array : intArrays) {
+                NbtSquishMapWriter.writeLength(to, array.size());
+                for (int i = 0; i < array.size(); i++) {
+                    to.writeInt(array.getQuick(i));
+                }
+            }
+        }
+        if (!strings.isEmpty()) {
+            NbtSquishMapWriter.writeVarInt(to, sortedStrings.length);
+            for (String s : sortedStrings) {
+                byte[] stringBytes = s.getBytes(StandardCharsets.UTF_8);
+                NbtSquishMapWriter.writeLength(to, stringBytes.length);
+                to.write(stringBytes);
+            }
+        }
+        if (!complex.isEmpty()) {
+            WrittenType stringType = WrittenType.getForSize(strings.size());
+            NbtSquishMapWriter.writeVarInt(to, complex.size());
+            for (TIntArrayList contents : complex) {
+                int complexType = contents.getQuick(0);
+                if (complexType == NbtSquishConstants.COMPLEX_COMPOUND) {
+                    to.writeByte(NbtSquishConstants.COMPLEX_COMPOUND);
+                    int count = (contents.size() - 1) / 2;
+                    NbtSquishMapWriter.writeVarInt(to, count);
+                    for (int i = 1; i < contents.size(); i += 2) {
+                        stringType.writeIndex(to, remaps[KIND_STRING][contents.getQuick(i) & INDEX_MASK]);
+                        type.writeIndex(to, resolver.resolve(contents.getQuick(i + 1)));
+                    }
+                } else {
+                    int[] elements = new int[contents.size() - 1];
+                    for (int i = 0; i < elements.length; i++) {
+                        elements[i] = resolver.resolve(contents.getQuick(i + 1));
+                    }
+                    writeList(type, elements, to);
+                }
+            }
+        }
+        type.writeIndex(to, resolver.resolve(root));
+    }
+
+    private static void writeList(WrittenType type, int[] elements, DataOutput to) throws IOException {
+        TIntIntHashMap counts = new TIntIntHashMap();
+        for (int element : elements) {
+            counts.adjustOrPutValue(element, 1, 1);
+        }
+        if (counts.size() * 2 >= elements.length) {
+            to.writeByte(NbtSquishConstants.COMPLEX_LIST);
+            NbtSquishMapWriter.writeVarInt(to, elements.length);
+            for (int element : elements) {
+                type.writeIndex(to, element);
+            }
+            return;
+        }
+
+        // The same layout as NbtSquishMapWriter.writeListPacked: a dictionary with the most common elements first,
+        // and then a bitset for every group of elements with the index of each element in the group
+        to.writeByte(NbtSquishConstants.COMPLEX_LIST_PACKED);
+        int[] dictionary = counts.keys();
+        long[] sortable = new long[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++) {
+            // Highest count first
+            sortable[i] = ((long) (Integer.MAX_VALUE - counts.get(dictionary[i])) << 32) | i;
+        }
+        Arrays.sort(sortable);
+        NbtSquishMapWriter.writeVarInt(to, dictionary.length);
+        TIntIntHashMap ranks = new TIntIntHashMap();
+        for (int rank = 0; rank < sortable.length; rank++) {
+            int element = dictionary[(int) sortable[rank]];
+            ranks.put(element, rank);
+            type.writeIndex(to, element);
+        }
+        NbtSquishMapWriter.writeVarInt(to, elements.length);
+
+        int[] left = elements;
+        int leftCount = elements.length;
+        int removed = 0;
+        for (int bits = 1; leftCount > 0; bits++) {
+            int maxVal = (1 << bits) - 1;
+            CompactingBitSet bitset = new CompactingBitSet(bits);
+            bitset.ensureCapacityValues(leftCount);
+            int nextCount = 0;
+            for (int i = 0; i < leftCount; i++) {
+                int element = left[i];
+                int rank = ranks.get(element) - removed;
+                if (rank < maxVal) {
+                    bitset.append(rank);
+                } else {
+                    bitset.append(maxVal);
+                    // Safe to reuse the array as this is always behind i
+                    if (left == elements) {
+                        left = left.clone();
+                    }
+                    left[nextCount++] = element;
+                }
+            }
+            removed += maxVal;
+            leftCount = nextCount;
+            byte[] bitsetBytes = bitset.getBytes();
+            NbtSquishMapWriter.writeVarInt(to, bitsetBytes.length);
+            to.write(bitsetBytes);
+        }
+    }
+
+    private static int[] sortRemap(byte[] values) {
+        byte[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    private static int[] sortRemap(short[] values) {
+        short[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    private static int[] sortRemap(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    private static int[] sortRemap(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    private static int[] sortRemap(float[] values) {
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    private static int[] sortRemap(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int[] remap = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remap[i] = Arrays.binarySearch(sorted, values[i]);
+        }
+        return remap;
+    }
+
+    /** Converts references into the indices that are actually written out. */
+    private static class Resolver {
+        private final int[][] remaps;
+        private final int[] offsets;
+
+        Resolver(int[][] remaps, int[] offsets) {
+            this.remaps = remaps;
+            this.offsets = offsets;
+        }
+
+        int resolve(int ref) {
+            int kind = ref >>> KIND_SHIFT;
+            int index = ref & INDEX_MASK;
+            int[] remap = remaps[kind];
+            return offsets[kind] + (remap == null ? index : remap[index]);
+        }
+    }
+}
@@ -82,6 +82,69 @@ public class NbtSquisher {
         }
     }
 
+    public static byte[] squish(NbtSquishWriter writer, int root, int type) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            squish(writer, root, type, baos);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write to a perfectly good ByteArrayOutputStream", e);
+        }
+        return baos.toByteArray();
+    }
+
+    public static void squish(NbtSquishWriter writer, int root, int type, ByteBuf buf) {
+        try (ByteBufOutputStream bbos = new ByteBufOutputStream(buf)) {
+            squish(writer, root, type, bbos);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write to a perfectly good ByteBufOutputStream", e);
+        }
+    }
+
+    /** Writes everything that was added to the given writer. Only the BuildCraft types are supported, as the vanilla
+     * ones would need a full {@link NBTTagCompound} anyway. */
+    public static void squish(NbtSquishWriter writer, int root, int type, OutputStream stream) throws IOException {
+        stream.write(NbtSquishConstants.BUILDCRAFT_MAGIC_1);
+        stream.write(NbtSquishConstants.BUILDCRAFT_MAGIC_2);
+        switch (type) {
+            case TYPE_BC_1:
+                stream.write(TYPE_BC_1);
+                writer.write(root, new DataOutputStream(stream));
+                return;
+            case TYPE_BC_1_GZIP:
+                stream.write(TYPE_BC_1_GZIP);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(stream, true)) {
+                    DataOutputStream to = new DataOutputStream(gzip);
+                    writer.write(root, to);
+                    to.flush();
+                }
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown or unsupported type " + type);
+        }
+    }
+
+    public static NbtSquishReader read(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    /** Reads BuildCraft v1 squished data (either compressed or not) without converting it into an
+     * {@link NBTTagCompound}. */
+    public static NbtSquishReader read(InputStream stream) throws IOException {
+        int byte1 = stream.read();
+        int byte2 = stream.read();
+        if (byte1 != NbtSquishConstants.BUILDCRAFT_MAGIC_1 || byte2 != NbtSquishConstants.BUILDCRAFT_MAGIC_2) {
+            throw new InvalidInputDataException("Not a BuildCraft stream! (" + byte1 + ", " + byte2 + ")");
+        }
+        int type = stream.read();
+        if (type == TYPE_BC_1) {
+            return NbtSquishReader.read(new DataInputStream(stream));
+        } else if (type == TYPE_BC_1_GZIP) {
+            return NbtSquishReader.read(new DataInputStream(new GZIPInputStream(stream)));
+        } else {
+            throw new InvalidInputDataException("Cannot read BuildCraft saved NBT type " + type + " directly");
+        }
+    }
+
     public static void squishVanilla(NBTTagCompound nbt, OutputStream to) throws IOException {
         to.write(NbtSquishConstants.BUILDCRAFT_MAGIC_1);
         to.write(NbtSquishConstants.BUILDCRAFT_MAGIC_2);
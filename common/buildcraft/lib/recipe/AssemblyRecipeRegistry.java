@@ -7,34 +7,132 @@
 package buildcraft.lib.recipe;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.NonNullList;
 import net.minecraft.util.ResourceLocation;
 
 import buildcraft.api.recipes.AssemblyRecipe;
+import buildcraft.api.recipes.IngredientStack;
 
 public class AssemblyRecipeRegistry  {
     public static final Map<ResourceLocation, AssemblyRecipe> REGISTRY = new HashMap<>();
 
+    /** Map of item -> every recipe that has an ingredient which matches that item. A recipe can only produce anything
+     * if every one of its ingredients is present, so any recipe that isn't in the list for any input item can be
+     * skipped. */
+    private static final Map<Item, List<AssemblyRecipe>> RECIPES_BY_INPUT = new HashMap<>();
+
+    /** Recipes whose ingredients can't be worked out in advance (for example facades, which accept almost any block)
+     * so they always have to be checked. */
+    private static final List<AssemblyRecipe> UNINDEXED_RECIPES = new ArrayList<>();
+
+    private static boolean indexValid = false;
+    private static int indexedCount = 0;
+    private static int version = 0;
+
     public static void register(AssemblyRecipe recipe) {
         REGISTRY.put(recipe.getRegistryName(), recipe);
+        invalidateIndex();
     }
 
+    /** Call this after modifying {@link #REGISTRY} directly, rather than through {@link #register(AssemblyRecipe)}. */
+    public static synchronized void invalidateIndex() {
+        indexValid = false;
+        version++;
+    }
+
+    /** @return A number that changes every time the registered recipes change. */
+    public static synchronized int getVersion() {
+        ensureIndexed();
+        return version;
+    }
 
     @Nonnull
     public static List<AssemblyRecipe> getRecipesFor(@Nonnull NonNullList<ItemStack> possibleIn) {
+        Set<Item> items = new HashSet<>();
+        for (ItemStack stack : possibleIn) {
+            if (!stack.isEmpty()) {
+                items.add(stack.getItem());
+            }
+        }
         List<AssemblyRecipe> all = new ArrayList<>();
-        for (AssemblyRecipe ar : REGISTRY.values()) {
+        for (AssemblyRecipe ar : getCandidateRecipes(items)) {
             if (!ar.getOutputs(possibleIn).isEmpty()) {
                 all.add(ar);
             }
         }
         return all;
     }
+
+    /** @return Every recipe that might use any of the given items. This includes every recipe that couldn't be
+     *         indexed, and doesn't check if the recipes can actually be made. */
+    @Nonnull
+    public static synchronized Set<AssemblyRecipe> getCandidateRecipes(@Nonnull Collection<Item> items) {
+        ensureIndexed();
+        Set<AssemblyRecipe> candidates = new LinkedHashSet<>(UNINDEXED_RECIPES);
+        for (Item item : items) {
+            List<AssemblyRecipe> recipes = RECIPES_BY_INPUT.get(item);
+            if (recipes != null) {
+                candidates.addAll(recipes);
+            }
+        }
+        return candidates;
+    }
+
+    private static void ensureIndexed() {
+        if (indexValid && indexedCount == REGISTRY.size()) {
+            return;
+        }
+        if (indexValid) {
+            // Someone added a recipe to the map directly
+            version++;
+        }
+        RECIPES_BY_INPUT.clear();
+        UNINDEXED_RECIPES.clear();
+        for (AssemblyRecipe recipe : REGISTRY.values()) {
+            Set<Item> inputs = getInputItems(recipe);
+            if (inputs == null) {
+                UNINDEXED_RECIPES.add(recipe);
+            } else {
+                for (Item item : inputs) {
+                    RECIPES_BY_INPUT.computeIfAbsent(item, i -> new ArrayList<>()).add(recipe);
+                }
+            }
+        }
+        indexedCount = REGISTRY.size();
+        indexValid = true;
+    }
+
+    /** @return Every item that could be used as an ingredient in the given recipe, or null if that can't be worked
+     *         out. */
+    private static Set<Item> getInputItems(AssemblyRecipe recipe) {
+        Set<ItemStack> outputs = recipe.getOutputPreviews();
+        if (outputs.isEmpty()) {
+            return null;
+        }
+        Set<Item> items = new HashSet<>();
+        for (ItemStack output : outputs) {
+            for (IngredientStack input : recipe.getInputsFor(output)) {
+                ItemStack[] matching = input.ingredient.getMatchingStacks();
+                if (matching.length == 0) {
+                    return null;
+                }
+                for (ItemStack stack : matching) {
+                    items.add(stack.getItem());
+                }
+            }
+        }
+        return items;
+    }
 }
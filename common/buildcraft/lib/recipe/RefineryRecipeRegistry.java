@@ -9,9 +9,7 @@ package buildcraft.lib.recipe;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -21,6 +19,9 @@ import net.minecraftforge.fluids.FluidStack;
 
 import buildcraft.api.recipes.IRefineryRecipeManager;
 
+import buildcraft.lib.misc.FluidUtilBC;
+import buildcraft.lib.misc.collect.KeyIndexedList;
+
 public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
     INSTANCE;
 
@@ -59,7 +60,8 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
     }
 
     private static class SingleRegistry<R extends IRefineryRecipe> implements IRefineryRegistry<R> {
-        private final List<R> allRecipes = new LinkedList<>();
+        private final KeyIndexedList<String, R> allRecipes =
+            new KeyIndexedList<>(recipe -> FluidUtilBC.getIndexKey(recipe.in()));
 
         @Override
         public Stream<R> getRecipes(Predicate<R> filter) {
@@ -77,7 +79,7 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
             if (fluid == null) {
                 return null;
             }
-            for (R recipe : allRecipes) {
+            for (R recipe : allRecipes.getCandidates(FluidUtilBC.getIndexKey(fluid))) {
                 if (recipe.in().isFluidEqual(fluid)) {
                     return recipe;
                 }
@@ -102,11 +104,9 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
         @Override
         public R addRecipe(R recipe) {
             if (recipe == null) throw new NullPointerException("recipe");
-            ListIterator<R> iter = allRecipes.listIterator();
-            while (iter.hasNext()) {
-                R existing = iter.next();
+            for (R existing : allRecipes.getCandidates(FluidUtilBC.getIndexKey(recipe.in()))) {
                 if (existing.in().isFluidEqual(recipe.in())) {
-                    iter.set(recipe);
+                    allRecipes.set(allRecipes.indexOf(existing), recipe);
                     return recipe;
                 }
             }
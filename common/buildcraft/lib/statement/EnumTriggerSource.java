@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.statement;
+
+/** The inputs that an {@link ITriggerChangeSource} can declare that it depends on. */
+public enum EnumTriggerSource {
+    /** The redstone signal going into the container. */
+    REDSTONE,
+    /** The contents of a neighbouring inventory. */
+    INVENTORY,
+    /** The contents of a neighbouring tank. */
+    FLUID,
+    /** The wires connected to the container. */
+    WIRE;
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.statement;
+
+/** Optional interface for triggers that can only change when one of a few known inputs change. Containers that can
+ * tell when those inputs change (like gates) can then skip evaluating the trigger when none of them have. Triggers that
+ * don't implement this are evaluated every time. */
+public interface ITriggerChangeSource {
+    /** @return True if the trigger might change when the given input changes. If this returns false for every source
+     *         then the trigger will never change for the same parameters. */
+    boolean dependsOn(EnumTriggerSource source);
+}
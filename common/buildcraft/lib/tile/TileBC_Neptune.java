@@ -7,6 +7,8 @@
 package buildcraft.lib.tile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -15,7 +17,10 @@ import javax.annotation.Nullable;
 import com.google.common.collect.Sets;
 import com.mojang.authlib.GameProfile;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
 import net.minecraft.block.Block;
@@ -116,8 +121,15 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
     protected final ItemHandlerManager itemManager = new ItemHandlerManager(this::onSlotChange);
     protected final TankManager tankManager = new TankManager();
 
+    /** Every (server side) tile that has called {@link #sendNetworkUpdate(int)} since the last server tick ended. */
+    private static List<TileBC_Neptune> tilesWithPendingUpdates = new ArrayList<>();
+
     /** Handles all of the players that are currently using this tile (have a GUI open) */
     private final Set<EntityPlayer> usingPlayers = Sets.newIdentityHashSet();
+
+    /** Every full state id (from {@link #isFullStateUpdate(int)}) passed to {@link #sendNetworkUpdate(int)} on the
+     * server since the last server tick ended, in the order that they were first sent. */
+    private final TIntArrayList pendingNetworkUpdates = new TIntArrayList();
     private GameProfile owner;
 
     private final IChunkCache chunkCache = new CachedChunk(this);
@@ -337,6 +349,11 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         usingPlayers.remove(player);
     }
 
+    /** @return Every player that currently has a gui open for this tile. */
+    protected final Set<EntityPlayer> getUsingPlayers() {
+        return usingPlayers;
+    }
+
     public boolean onActivated(EntityPlayer player, EnumHand hand, EnumFacing facing, float hitX, float hitY,
         float hitZ) {
         return tankManager.onActivated(player, getPos(), hand);
@@ -453,18 +470,82 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         }
     }
 
-    /** Sends a network update update of the specified ID. */
+    /** Sends a network update update of the specified ID. On the server, updates that send the full current state
+     * (from {@link #isFullStateUpdate(int)}) are delayed until the end of the tick, so calling this several times in
+     * the same tick with one of those IDs will only write and send the update once. Every other update is sent
+     * straight away, as each one might mean something different to the client. */
     public final void sendNetworkUpdate(int id) {
         if (hasWorld()) {
-            MessageUpdateTile message = createNetworkUpdate(id);
             if (world.isRemote) {
-                MessageManager.sendToServer(message);
+                MessageManager.sendToServer(createNetworkUpdate(id));
+            } else if (isFullStateUpdate(id)) {
+                if (!pendingNetworkUpdates.contains(id)) {
+                    if (pendingNetworkUpdates.isEmpty()) {
+                        tilesWithPendingUpdates.add(this);
+                    }
+                    pendingNetworkUpdates.add(id);
+                }
             } else {
-                MessageUtil.sendToAllWatching(world, pos, message);
+                // Keep this in order with any delayed updates
+                flushNetworkUpdates();
+                sendToWatching(id);
             }
         }
     }
 
+    /** @return True if the payload written for the given ID only depends on the current state of this tile (rather
+     *         than on what has just happened), so sending it twice in a row is the same as sending it once. */
+    protected boolean isFullStateUpdate(int id) {
+        return id == NET_RENDER_DATA || id == NET_GUI_DATA || id == NET_REDRAW;
+    }
+
+    private void sendToWatching(int id) {
+        final Side side = world.isRemote ? Side.CLIENT : Side.SERVER;
+        PacketBufferBC buffer = new PacketBufferBC(PooledByteBufAllocator.DEFAULT.buffer());
+        try {
+            MessageUpdateTile message = writeMessage(buffer, id, (b) -> writePayload(id, b, side));
+            MessageUtil.sendToAllWatching(world, pos, message);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /** Immediately sends every update that was delayed by {@link #sendNetworkUpdate(int)}. */
+    public final void flushNetworkUpdates() {
+        if (pendingNetworkUpdates.isEmpty()) {
+            return;
+        }
+        int[] ids = pendingNetworkUpdates.toArray();
+        pendingNetworkUpdates.resetQuick();
+        if (!hasWorld() || isInvalid()) {
+            return;
+        }
+        for (int id : ids) {
+            sendToWatching(id);
+        }
+    }
+
+    /** Called at the end of every server tick to send every update delayed by {@link #sendNetworkUpdate(int)}. */
+    public static void flushAllNetworkUpdates() {
+        if (tilesWithPendingUpdates.isEmpty()) {
+            return;
+        }
+        // Writing a payload might queue more updates, which will be sent next tick
+        List<TileBC_Neptune> tiles = tilesWithPendingUpdates;
+        tilesWithPendingUpdates = new ArrayList<>();
+        for (TileBC_Neptune tile : tiles) {
+            tile.flushNetworkUpdates();
+        }
+    }
+
+    /** Called when the server stops, to forget about every delayed update (and the tiles that sent them). */
+    public static void clearAllNetworkUpdates() {
+        for (TileBC_Neptune tile : tilesWithPendingUpdates) {
+            tile.pendingNetworkUpdates.resetQuick();
+        }
+        tilesWithPendingUpdates = new ArrayList<>();
+    }
+
     public final void sendNetworkGuiTick(EntityPlayer player) {
         if (hasWorld() && !world.isRemote) {
             MessageUpdateTile message = createNetworkUpdate(NET_GUI_TICK);
@@ -476,9 +557,14 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
     }
 
     public final void sendNetworkGuiUpdate(int id) {
-        if (hasWorld()) {
-            for (EntityPlayer player : usingPlayers) {
-                sendNetworkUpdate(id, player);
+        if (hasWorld() && !world.isRemote && !usingPlayers.isEmpty()) {
+            // Write the payload once and share it between every player
+            PacketBufferBC buffer = new PacketBufferBC(PooledByteBufAllocator.DEFAULT.buffer());
+            try {
+                MessageUpdateTile message = writeMessage(buffer, id, (b) -> writePayload(id, b, Side.SERVER));
+                MessageUtil.sendToPlayers(usingPlayers, message);
+            } finally {
+                buffer.release();
             }
         }
     }
@@ -506,6 +592,8 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
             if (world.isRemote) {
                 MessageManager.sendToServer(message);
             } else {
+                // Keep this in order with any delayed updates
+                flushNetworkUpdates();
                 MessageUtil.sendToAllWatching(world, pos, message);
             }
         }
@@ -536,7 +624,10 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
     }
 
     public final MessageUpdateTile createMessage(int id, IPayloadWriter writer) {
-        PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+        return writeMessage(new PacketBufferBC(Unpooled.buffer()), id, writer);
+    }
+
+    private MessageUpdateTile writeMessage(PacketBufferBC buffer, int id, IPayloadWriter writer) {
         buffer.writeShort(id);
         writer.write(buffer);
         return new MessageUpdateTile(pos, buffer);
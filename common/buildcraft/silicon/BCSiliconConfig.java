@@ -21,8 +21,10 @@ import buildcraft.core.BCCoreConfig;
 public class BCSiliconConfig {
 
     public static boolean renderLaserBeams = true;
+    public static boolean gateEventTriggers = false;
 
     private static Property propRenderLaserBeams;
+    private static Property propGateEventTriggers;
 
     public static void preInit() {
 
@@ -30,12 +32,20 @@ public class BCSiliconConfig {
         propRenderLaserBeams = config.get("display", "renderLaserBeams", true,
                 "When false laser beams will not be visible while transmitting power without wearing Goggles");
 
-        reloadConfig(EnumRestartRequirement.NONE);
+        propGateEventTriggers = config.get("experimental", "gateEventTriggers", gateEventTriggers);
+        propGateEventTriggers.setComment(
+            "If true then gates only evaluate redstone, inventory, fluid and wire triggers when something they depend on might have changed, rather than every tick");
+        EnumRestartRequirement.WORLD.setTo(propGateEventTriggers);
+
+        reloadConfig(EnumRestartRequirement.GAME);
         MinecraftForge.EVENT_BUS.register(BCSiliconConfig.class);
     }
 
     public static void reloadConfig(EnumRestartRequirement restarted) {
         renderLaserBeams = propRenderLaserBeams.getBoolean();
+        if (EnumRestartRequirement.WORLD.hasBeenRestarted(restarted)) {
+            gateEventTriggers = propGateEventTriggers.getBoolean();
+        }
     }
 
     @SubscribeEvent
@@ -352,6 +352,7 @@ public class BCSiliconRecipes {
 
             AssemblyRecipeRegistry.REGISTRY.put(key,
                 new AssemblyRecipeBasic(key, powercost, ImmutableSet.copyOf(ingredients), output));
+            AssemblyRecipeRegistry.invalidateIndex();
         }
     }
 }
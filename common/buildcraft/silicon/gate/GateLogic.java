@@ -52,20 +52,30 @@ import buildcraft.lib.statement.ActionWrapper;
 import buildcraft.lib.statement.ActionWrapper.ActionWrapperExternal;
 import buildcraft.lib.statement.ActionWrapper.ActionWrapperInternal;
 import buildcraft.lib.statement.ActionWrapper.ActionWrapperInternalSided;
+import buildcraft.lib.statement.EnumTriggerSource;
 import buildcraft.lib.statement.FullStatement;
 import buildcraft.lib.statement.FullStatement.IStatementChangeListener;
+import buildcraft.lib.statement.ITriggerChangeSource;
 import buildcraft.lib.statement.TriggerWrapper;
 import buildcraft.lib.statement.TriggerWrapper.TriggerWrapperExternal;
 import buildcraft.lib.statement.TriggerWrapper.TriggerWrapperInternal;
 import buildcraft.lib.statement.TriggerWrapper.TriggerWrapperInternalSided;
 
+import buildcraft.silicon.BCSiliconConfig;
 import buildcraft.silicon.plug.PluggableGate;
+import buildcraft.transport.tile.TilePipeHolder;
 import buildcraft.transport.wire.WorldSavedDataWireSystems;
 
 public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContainer {
 
     protected static final IdAllocator ID_ALLOC = new IdAllocator("GateLogic");
 
+    /** How often inventory and fluid triggers are evaluated if nothing next to the gate has changed, as inventories and
+     * tanks don't always tell their neighbours when their contents change. Only used if
+     * {@link BCSiliconConfig#gateEventTriggers} is enabled. */
+    private static final int CONTENTS_CHECK_INTERVAL = 10;
+    private static final EnumTriggerSource[] TRIGGER_SOURCES = EnumTriggerSource.values();
+
     /** Sent when any of {@link #triggerOn}, {@link #actionOn}, or {@link #connections} change. */
     public static final int NET_ID_RESOLVE = ID_ALLOC.allocId("RESOLVE");
 
@@ -101,6 +111,18 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
     /** Used on the client to determine if this gate should glow or not. */
     public boolean isOn;
 
+    // Reused every time the actions are resolved, rather than being allocated every tick
+    private final IStatementParameter[][] triggerParameters;
+    private final StatementSlot[] actionSlots;
+    private final boolean[] prevTriggers, prevActions;
+    private final EnumSet<EnumDyeColor> previousBroadcasts;
+
+    /** True if every trigger needs to be evaluated the next time the actions are resolved, because one of them has
+     * changed. */
+    private boolean triggersChanged = true;
+    private int lastNeighbourChanges, lastWireVersion;
+    private int ticksSinceContentsCheck;
+
     public GateLogic(PluggableGate pluggable, GateVariant variant) {
         this.pluggable = pluggable;
         this.variant = variant;
@@ -114,6 +136,16 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
         actionOn = new boolean[variant.numSlots];
 
         wireBroadcasts = EnumSet.noneOf(EnumDyeColor.class);
+
+        triggerParameters = new IStatementParameter[variant.numSlots][variant.numTriggerArgs];
+        actionSlots = new StatementSlot[variant.numSlots];
+        for (int s = 0; s < variant.numSlots; s++) {
+            actionSlots[s] = new StatementSlot();
+            actionSlots[s].parameters = new IStatementParameter[variant.numActionArgs];
+        }
+        prevTriggers = new boolean[variant.numSlots];
+        prevActions = new boolean[variant.numSlots];
+        previousBroadcasts = EnumSet.noneOf(EnumDyeColor.class);
     }
 
     // Saving + Loading
@@ -149,6 +181,7 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
         }
 
         wireBroadcasts.addAll(NBTUtilBC.readEnumSet(nbt.getTag("wireBroadcasts"), EnumDyeColor.class));
+        triggersChanged = true;
     }
 
     public NBTTagCompound writeToNbt() {
@@ -219,7 +252,13 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
                     "Slot index out of range! (" + slot + ", must be within " + statements.length + ")");
             }
             StatementPair s = statements[slot];
-            (isAction ? s.action : s.trigger).readFromBuffer(buffer);
+            if (isAction) {
+                s.action.readFromBuffer(buffer);
+            } else {
+                s.trigger.readFromBuffer(buffer);
+                // The change listener only fires from the GUI, not when the change arrives here
+                triggersChanged = true;
+            }
             return;
         }
         if (side == Side.CLIENT) {
@@ -361,27 +400,41 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
 
         boolean prevIsOn = isOn;
         isOn = false;
-        boolean[] prevTriggers = Arrays.copyOf(triggerOn, triggerOn.length);
-        boolean[] prevActions = Arrays.copyOf(actionOn, actionOn.length);
+        System.arraycopy(triggerOn, 0, prevTriggers, 0, triggerOn.length);
+        System.arraycopy(actionOn, 0, prevActions, 0, actionOn.length);
 
         Arrays.fill(triggerOn, false);
         Arrays.fill(actionOn, false);
 
         activeActions.clear();
 
-        EnumSet<EnumDyeColor> previousBroadcasts = EnumSet.copyOf(wireBroadcasts);
+        previousBroadcasts.clear();
+        previousBroadcasts.addAll(wireBroadcasts);
         wireBroadcasts.clear();
 
+        // Triggers that say what they depend on are only evaluated if one of those might have changed. Actions are
+        // still activated every tick though, as most of them do something every tick that they are active.
+        boolean eventTriggers = BCSiliconConfig.gateEventTriggers;
+        int changedSources = eventTriggers ? getChangedSources() : 0;
+        boolean evaluateAll = !eventTriggers || triggersChanged;
+        triggersChanged = false;
+
         for (int triggerIndex = 0; triggerIndex < statements.length; triggerIndex++) {
             StatementPair pair = statements[triggerIndex];
             TriggerWrapper trigger = pair.trigger.get();
             groupCount++;
             if (trigger != null) {
-                IStatementParameter[] params = new IStatementParameter[pair.trigger.getParamCount()];
-                for (int p = 0; p < pair.trigger.getParamCount(); p++) {
-                    params[p] = pair.trigger.getParamRef(p).get();
+                boolean active;
+                if (evaluateAll || shouldEvaluate(trigger, changedSources)) {
+                    IStatementParameter[] params = triggerParameters[triggerIndex];
+                    for (int p = 0; p < params.length; p++) {
+                        params[p] = pair.trigger.get(p);
+                    }
+                    active = trigger.isTriggerActive(this, params);
+                } else {
+                    active = prevTriggers[triggerIndex];
                 }
-                if (trigger.isTriggerActive(this, params)) {
+                if (active) {
                     groupActive++;
                     triggerOn[triggerIndex] = true;
                 }
@@ -419,9 +472,10 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
                     if (action != null) {
                         if (allActionsActive) {
                             isOn = true;
-                            StatementSlot slot = new StatementSlot();
+                            StatementSlot slot = actionSlots[actionIndex];
                             slot.statement = action.delegate;
-                            slot.parameters = fullAction.action.getParameters().clone();
+                            IStatementParameter[] params = fullAction.action.getParameters();
+                            System.arraycopy(params, 0, slot.parameters, 0, params.length);
                             slot.part = action.sourcePart;
                             activeActions.add(slot);
                             action.actionActivate(this, slot.parameters);
@@ -462,6 +516,49 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
         }
     }
 
+    /** @return A bit mask of every {@link EnumTriggerSource} (by ordinal) that might have changed since the last time
+     *         this was called. */
+    private int getChangedSources() {
+        int changed = 0;
+        IPipeHolder holder = getPipeHolder();
+        boolean neighboursChanged = true;
+        if (holder instanceof TilePipeHolder) {
+            int neighbourChanges = ((TilePipeHolder) holder).getNeighbourChangeCount();
+            neighboursChanged = neighbourChanges != lastNeighbourChanges;
+            lastNeighbourChanges = neighbourChanges;
+        }
+        ticksSinceContentsCheck++;
+        if (neighboursChanged || ticksSinceContentsCheck >= CONTENTS_CHECK_INTERVAL) {
+            ticksSinceContentsCheck = 0;
+            changed |= 1 << EnumTriggerSource.INVENTORY.ordinal();
+            changed |= 1 << EnumTriggerSource.FLUID.ordinal();
+        }
+        if (neighboursChanged) {
+            changed |= 1 << EnumTriggerSource.REDSTONE.ordinal();
+        }
+        if (BCModules.TRANSPORT.isLoaded()) {
+            int wireVersion = WorldSavedDataWireSystems.get(holder.getPipeWorld()).getPoweredVersion();
+            if (wireVersion != lastWireVersion) {
+                lastWireVersion = wireVersion;
+                changed |= 1 << EnumTriggerSource.WIRE.ordinal();
+            }
+        }
+        return changed;
+    }
+
+    private static boolean shouldEvaluate(TriggerWrapper trigger, int changedSources) {
+        if (!(trigger.delegate instanceof ITriggerChangeSource)) {
+            return true;
+        }
+        ITriggerChangeSource changeSource = (ITriggerChangeSource) trigger.delegate;
+        for (EnumTriggerSource source : TRIGGER_SOURCES) {
+            if ((changedSources & (1 << source.ordinal())) != 0 && changeSource.dependsOn(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void onTick() {
         if (getPipeHolder().getPipeWorld().isRemote) {
             return;
@@ -533,6 +630,7 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
 
         public StatementPair(int index) {
             IStatementChangeListener tChange = (s, i) -> {
+                triggersChanged = true;
                 sendStatementUpdate(false, index);
             };
             IStatementChangeListener aChange = (s, i) -> {
@@ -51,8 +51,9 @@ import buildcraft.silicon.BCSiliconItems;
 import buildcraft.silicon.BCSiliconStatements;
 import buildcraft.silicon.client.model.key.KeyPlugPulsar;
 import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 
-public class PluggablePulsar extends PipePluggable {
+public class PluggablePulsar extends PipePluggable implements IPipeChangeTracked {
 
     public static final FunctionContext MODEL_FUNC_CTX;
     private static final NodeVariableObject<EnumFacing> MODEL_SIDE;
@@ -74,6 +75,8 @@ public class PluggablePulsar extends PipePluggable {
     private int gateEnabledTicks;
     private int gateSinglePulses;
     private boolean lastPulsing = false;
+    /** Incremented whenever the saved state changes, as most of it isn't sent to the client. */
+    private int changeVersion = 0;
 
     /** Used on the client to determine if this should render pulsing */
     private boolean isPulsing = false;
@@ -220,6 +223,9 @@ public class PluggablePulsar extends PipePluggable {
             return;
         }
         boolean isOn = isPulsing();
+        int oldStage = pulseStage;
+        int oldEnabledTicks = gateEnabledTicks;
+        int oldSinglePulses = gateSinglePulses;
 
         if (isOn) {
             pulseStage++;
@@ -263,6 +269,14 @@ public class PluggablePulsar extends PipePluggable {
             lastPulsing = isOn;
             scheduleNetworkUpdate();
         }
+        if (pulseStage != oldStage || gateEnabledTicks != oldEnabledTicks || gateSinglePulses != oldSinglePulses) {
+            changeVersion++;
+        }
+    }
+
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
     }
 
     @PipeEventHandler
@@ -290,11 +304,15 @@ public class PluggablePulsar extends PipePluggable {
     }
 
     public void enablePulsar() {
-        gateEnabledTicks = 10;
+        if (gateEnabledTicks != 10) {
+            gateEnabledTicks = 10;
+            changeVersion++;
+        }
     }
 
     public void addSinglePulse() {
         gateSinglePulses++;
+        changeVersion++;
     }
 
     private boolean isPulsing() {
@@ -7,6 +7,9 @@
 package buildcraft.silicon.tile;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +20,7 @@ import java.util.TreeMap;
 
 import javax.annotation.Nullable;
 
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -56,6 +60,11 @@ public class TileAssemblyTable extends TileLaserTableBase {
     );
     public SortedMap<AssemblyInstruction, EnumAssemblyRecipeState> recipesStates = new TreeMap<>();
 
+    /** The contents of {@link #inv} when {@link #updateRecipes()} last looked for new recipes, so that it only has to
+     * check recipes that use items in the slots that changed since then. */
+    private final ItemStack[] lastCheckedStacks = new ItemStack[inv.getSlots()];
+    private int lastRecipeVersion = -1;
+
     private static final ResourceLocation ADVANCEMENT = new ResourceLocation("buildcraftsilicon:precision_crafting");
 
     @Override
@@ -63,10 +72,35 @@ public class TileAssemblyTable extends TileLaserTableBase {
         return IDS;
     }
 
+    /** @return Every recipe that could have new outputs since the last call. */
+    private Collection<AssemblyRecipe> getChangedRecipes() {
+        int recipeVersion = AssemblyRecipeRegistry.getVersion();
+        boolean all = recipeVersion != lastRecipeVersion;
+        lastRecipeVersion = recipeVersion;
+        Set<Item> changedItems = new HashSet<>();
+        for (int i = 0; i < lastCheckedStacks.length; i++) {
+            ItemStack stack = inv.getStackInSlot(i);
+            ItemStack last = lastCheckedStacks[i];
+            if (last == null || !ItemStack.areItemStacksEqual(last, stack)) {
+                lastCheckedStacks[i] = stack.copy();
+                // Removing items can't add outputs to any recipe
+                if (!stack.isEmpty()) {
+                    changedItems.add(stack.getItem());
+                }
+            }
+        }
+        if (all) {
+            return AssemblyRecipeRegistry.REGISTRY.values();
+        }
+        if (changedItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return AssemblyRecipeRegistry.getCandidateRecipes(changedItems);
+    }
+
     private void updateRecipes() {
-        //TODO: rework this to not iterate over every recipe every tick
         int count = recipesStates.size();
-        for (AssemblyRecipe recipe: AssemblyRecipeRegistry.REGISTRY.values()) {
+        for (AssemblyRecipe recipe: getChangedRecipes()) {
             Set<ItemStack> outputs = recipe.getOutputs(inv.stacks);
             for (ItemStack out: outputs) {
                 boolean found = false;
@@ -62,6 +62,9 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     private BlockPos targetPos;
     public Vec3d laserPos;
     private boolean worldHasUpdated = true;
+    /** The direction that {@link #targetPositions} was found in, or null if it needs to be searched again after any
+     * change in range. */
+    private EnumFacing targetFace;
 
     private final AverageLong avgPower = new AverageLong(100);
     private long averageClient;
@@ -85,16 +88,54 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
 
     @Override
     public void setWorldUpdated(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState, int flags) {
-        this.worldHasUpdated = true;
+        if (!worldHasUpdated && (targetFace == null || isInTargetingCone(targetFace, eventPos))) {
+            this.worldHasUpdated = true;
+        }
+    }
+
+    /** @return True if the given position is this laser, or could change any of the targets found by
+     *         {@link #findPossibleTargets()}. This is slightly bigger than the cone that is searched, as the blocks
+     *         that can hide a target might be just outside it. */
+    private boolean isInTargetingCone(EnumFacing face, BlockPos at) {
+        int dx = at.getX() - pos.getX();
+        int dy = at.getY() - pos.getY();
+        int dz = at.getZ() - pos.getZ();
+        int along = dx * face.getFrontOffsetX() + dy * face.getFrontOffsetY() + dz * face.getFrontOffsetZ();
+        if (along == 0) {
+            return dx == 0 && dy == 0 && dz == 0;
+        }
+        if (along < 0 || along > TARGETING_RANGE) {
+            return false;
+        }
+        // The sideways distance in the two other axes
+        int offsetA, offsetB;
+        switch (face.getAxis()) {
+            case X:
+                offsetA = dy;
+                offsetB = dz;
+                break;
+            case Y:
+                offsetA = dx;
+                offsetB = dz;
+                break;
+            case Z:
+            default:
+                offsetA = dx;
+                offsetB = dy;
+                break;
+        }
+        return Math.abs(offsetA) <= along && Math.abs(offsetB) <= along;
     }
 
     private void findPossibleTargets() {
         targetPositions.clear();
+        targetFace = null;
         IBlockState state = world.getBlockState(pos);
         if (state.getBlock() != BCSiliconBlocks.laser) {
             return;
         }
         EnumFacing face = state.getValue(BuildCraftProperties.BLOCK_FACING_6);
+        targetFace = face;
 
         VolumeUtil.iterateCone(world, pos, face, TARGETING_RANGE, true, (w, s, p, visible) -> {
             if (!visible) {
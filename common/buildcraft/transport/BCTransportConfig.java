@@ -45,12 +45,16 @@ public class BCTransportConfig {
     public static int baseFlowRate = 10;
     public static boolean fluidPipeColourBorder;
     public static PowerLossMode lossMode = PowerLossMode.DEFAULT;
+    public static boolean powerNetworkSolver = false;
+    public static boolean fluidNetworkSegments = false;
 
     private static Property propMjPerMillibucket;
     private static Property propMjPerItem;
     private static Property propBaseFlowRate;
     private static Property propFluidPipeColourBorder;
     private static Property propLossMode;
+    private static Property propPowerNetworkSolver;
+    private static Property propFluidNetworkSegments;
 
     public static void preInit() {
         Configuration config = BCCoreConfig.config;
@@ -71,6 +75,16 @@ public class BCTransportConfig {
         ConfigUtil.setEnumProperty(propLossMode, PowerLossMode.VALUES);
         EnumRestartRequirement.WORLD.setTo(propLossMode);
 
+        propPowerNetworkSolver = config.get("experimental", "kinesisNetworkSolver", powerNetworkSolver);
+        propPowerNetworkSolver.setComment(
+            "If true then connected kinesis pipes are solved together once per tick, rather than one pipe at a time");
+        EnumRestartRequirement.WORLD.setTo(propPowerNetworkSolver);
+
+        propFluidNetworkSegments = config.get("experimental", "fluidNetworkSegments", fluidNetworkSegments);
+        propFluidNetworkSegments.setComment(
+            "If true then runs of fluid pipes that don't branch are treated as a single tank, rather than moving fluid through every pipe");
+        EnumRestartRequirement.WORLD.setTo(propFluidNetworkSegments);
+
         MinecraftForge.EVENT_BUS.register(BCTransportConfig.class);
     }
 
@@ -95,6 +109,8 @@ public class BCTransportConfig {
                 fluidPipeColourBorder ? EnumPipeColourType.BORDER_INNER : EnumPipeColourType.TRANSLUCENT;
 
             lossMode = ConfigUtil.parseEnumForConfig(propLossMode, PowerLossMode.DEFAULT);
+            powerNetworkSolver = propPowerNetworkSolver.getBoolean();
+            fluidNetworkSegments = propFluidNetworkSegments.getBoolean();
 
             fluidTransfer(BCTransportPipes.cobbleFluid, baseFlowRate, 10);
             fluidTransfer(BCTransportPipes.woodFluid, baseFlowRate, 10);
@@ -9,6 +9,7 @@ package buildcraft.transport;
 import net.minecraftforge.client.event.TextureStitchEvent;
 import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.relauncher.Side;
@@ -16,6 +17,7 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.transport.client.render.PipeWireRenderer;
 import buildcraft.transport.net.PipeItemMessageQueue;
+import buildcraft.transport.net.PipeUpdateMessageQueue;
 import buildcraft.transport.wire.WorldSavedDataWireSystems;
 
 public enum BCTransportEventDist {
@@ -31,11 +33,20 @@ public enum BCTransportEventDist {
     @SubscribeEvent
     public void onServerTick(TickEvent.ServerTickEvent event) {
         PipeItemMessageQueue.serverTick();
+        PipeUpdateMessageQueue.serverTick();
     }
 
     @SubscribeEvent
     public void onChunkWatch(ChunkWatchEvent event) {
-        WorldSavedDataWireSystems.get(event.getPlayer().world).changedPlayers.add(event.getPlayer());
+        WorldSavedDataWireSystems.get(event.getPlayer().world).onChunkWatch(event.getPlayer(), event.getChunk());
+        PipeItemMessageQueue.onChunkWatchChanged(event.getChunk());
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (!event.getWorld().isRemote) {
+            PipeItemMessageQueue.onWorldUnload(event.getWorld());
+        }
     }
 
     @SubscribeEvent
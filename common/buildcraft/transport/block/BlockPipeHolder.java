@@ -719,6 +719,15 @@ public class BlockPipeHolder extends BlockBCTile_Neptune implements ICustomPaint
 
     // Block overrides
 
+    @Override
+    public void onNeighborChange(IBlockAccess world, BlockPos pos, BlockPos neighbor) {
+        super.onNeighborChange(world, pos, neighbor);
+        TilePipeHolder tile = getPipe(world, pos, true);
+        if (tile != null) {
+            tile.onNeighbourTileChanged();
+        }
+    }
+
     @Override
     public boolean addLandingEffects(IBlockState state, WorldServer worldObj, BlockPos blockPosition,
         IBlockState iblockstate, EntityLivingBase entity, int numberOfParticles) {
@@ -2,14 +2,21 @@ package buildcraft.transport.net;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.annotation.Nullable;
 
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
@@ -32,8 +39,14 @@ import buildcraft.transport.pipe.flow.PipeFlowItems;
 
 public class MessageMultiPipeItem implements IMessage {
 
-    private static final int MAX_ITEMS_PER_PIPE = 10;
+    static final int MAX_ITEMS_PER_PIPE = 10;
     private static final int MAX_POSITIONS = 4000;
+
+    /** Server side: every chunk that will be written out. */
+    private final List<ChunkItems> chunks = new ArrayList<>();
+    private int positionCount = 0;
+
+    /** Client side: every item read in. */
     public final Map<BlockPos, List<TravellingItemData>> items = new HashMap<>();
 
     public MessageMultiPipeItem() {
@@ -43,52 +56,150 @@ public class MessageMultiPipeItem implements IMessage {
     @Override
     public void fromBytes(ByteBuf buffer) {
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
-        int blockCount = buf.readShort();
-        for (int b = 0; b < blockCount; b++) {
-            BlockPos pos = buf.readBlockPos();
-            List<TravellingItemData> posItems = new ArrayList<>();
-            items.put(pos, posItems);
-            int itemCount = buf.readUnsignedByte();
-            for (int i = 0; i < itemCount; i++) {
-                posItems.add(new TravellingItemData(buf));
-            }
+        int chunkCount = buf.readVarInt();
+        for (int c = 0; c < chunkCount; c++) {
+            int length = buf.readVarInt();
+            // Every chunk was written separately, so it has its own set of partial bits
+            ChunkItems.read(new PacketBufferBC(buf.readSlice(length)), items);
         }
     }
 
     @Override
     public void toBytes(ByteBuf buffer) {
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
-        int blockCount = Math.min(items.size(), MAX_POSITIONS);
-        buf.writeShort(blockCount);
-        int blockIndex = 0;
-        for (Entry<BlockPos, List<TravellingItemData>> entry : items.entrySet()) {
-            buf.writeBlockPos(entry.getKey());
-            List<TravellingItemData> list = entry.getValue();
-            int itemCount = Math.min(list.size(), MAX_ITEMS_PER_PIPE);
-            buf.writeByte(itemCount);
-            for (int i = 0; i < itemCount; i++) {
-                list.get(i).toBuffer(buf);
+        buf.writeVarInt(chunks.size());
+        for (ChunkItems chunk : chunks) {
+            PacketBufferBC encoded = chunk.getEncoded();
+            int length = encoded.readableBytes();
+            buf.writeVarInt(length);
+            // The same chunk is shared between every player, so it must not be consumed
+            buf.writeBytes(encoded, encoded.readerIndex(), length);
+        }
+    }
+
+    /** @return False if the chunk wasn't added because this message already contains too many positions. */
+    boolean append(ChunkItems chunk) {
+        if (positionCount > 0 && positionCount + chunk.items.size() > MAX_POSITIONS) {
+            return false;
+        }
+        chunks.add(chunk);
+        positionCount += chunk.items.size();
+        return true;
+    }
+
+    /** Every item that started moving in a single chunk during a tick. This is only written out once, and then shared
+     * between every player watching the chunk. */
+    static class ChunkItems {
+        final int chunkX, chunkZ;
+        final List<EntityPlayerMP> watchers;
+        final Map<BlockPos, List<TravellingItemData>> items = new LinkedHashMap<>();
+        private PacketBufferBC encoded;
+
+        ChunkItems(int chunkX, int chunkZ, List<EntityPlayerMP> watchers) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.watchers = watchers;
+        }
+
+        void append(BlockPos pos, TravellingItemData data) {
+            List<TravellingItemData> list = items.computeIfAbsent(pos, p -> new ArrayList<>());
+            if (list.size() < MAX_ITEMS_PER_PIPE) {
+                list.add(data);
+                encoded = null;
             }
-            if (++blockIndex >= blockCount) {
-                break;
+        }
+
+        PacketBufferBC getEncoded() {
+            if (encoded == null) {
+                encoded = new PacketBufferBC(Unpooled.buffer());
+                write(encoded);
             }
+            return encoded;
         }
-    }
 
-    public void append(BlockPos pos, int stackId, byte stackCount, boolean toCenter, EnumFacing side,
-        EnumDyeColor colour, byte timeToDest) {
-        List<TravellingItemData> list = items.get(pos);
-        if (list == null) {
-            if (items.size() >= MAX_POSITIONS) {
-                return;
+        private void write(PacketBufferBC buf) {
+            buf.writeVarInt(zigZag(chunkX));
+            buf.writeVarInt(zigZag(chunkZ));
+
+            // Busy pipes tend to carry the same few stacks, so only write out each id once
+            TIntIntMap idIndices = new TIntIntHashMap();
+            TIntArrayList ids = new TIntArrayList();
+            for (List<TravellingItemData> list : items.values()) {
+                for (TravellingItemData data : list) {
+                    if (!idIndices.containsKey(data.stackId)) {
+                        idIndices.put(data.stackId, ids.size());
+                        ids.add(data.stackId);
+                    }
+                }
+            }
+            buf.writeVarInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                buf.writeVarInt(ids.get(i));
+            }
+            int idBits = getIndexBits(ids.size());
+
+            buf.writeVarInt(items.size());
+            for (Entry<BlockPos, List<TravellingItemData>> entry : items.entrySet()) {
+                BlockPos pos = entry.getKey();
+                List<TravellingItemData> list = entry.getValue();
+                // Positions are relative to the chunk
+                buf.writeFixedBits(pos.getX() & 15, 4);
+                buf.writeFixedBits(pos.getZ() & 15, 4);
+                buf.writeFixedBits(pos.getY() & 255, 8);
+                buf.writeFixedBits(list.size(), 4);
+                for (TravellingItemData data : list) {
+                    if (idBits > 0) {
+                        buf.writeFixedBits(idIndices.get(data.stackId), idBits);
+                    }
+                    buf.writeByte(data.stackCount);
+                    buf.writeBoolean(data.toCenter);
+                    buf.writeEnumValue(data.side);
+                    MessageUtil.writeEnumOrNull(buf, data.colour);
+                    buf.writeByte(data.timeToDest);
+                }
+            }
+        }
+
+        static void read(PacketBufferBC buf, Map<BlockPos, List<TravellingItemData>> into) {
+            int baseX = unZigZag(buf.readVarInt()) << 4;
+            int baseZ = unZigZag(buf.readVarInt()) << 4;
+
+            int[] ids = new int[buf.readVarInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = buf.readVarInt();
+            }
+            int idBits = getIndexBits(ids.length);
+
+            int posCount = buf.readVarInt();
+            for (int p = 0; p < posCount; p++) {
+                int x = baseX + buf.readFixedBits(4);
+                int z = baseZ + buf.readFixedBits(4);
+                int y = buf.readFixedBits(8);
+                int itemCount = buf.readFixedBits(4);
+                List<TravellingItemData> list = into.computeIfAbsent(new BlockPos(x, y, z), b -> new ArrayList<>());
+                for (int i = 0; i < itemCount; i++) {
+                    int stackId = ids[idBits > 0 ? buf.readFixedBits(idBits) : 0];
+                    byte stackCount = buf.readByte();
+                    boolean toCenter = buf.readBoolean();
+                    EnumFacing side = buf.readEnumValue(EnumFacing.class);
+                    EnumDyeColor colour = MessageUtil.readEnumOrNull(buf, EnumDyeColor.class);
+                    byte timeToDest = buf.readByte();
+                    list.add(new TravellingItemData(stackId, stackCount, toCenter, side, colour, timeToDest));
+                }
             }
-            list = new ArrayList<>();
-            items.put(pos, list);
         }
-        if (list.size() >= MAX_ITEMS_PER_PIPE) {
-            return;
+
+        private static int getIndexBits(int count) {
+            return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+        }
+
+        private static int zigZag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static int unZigZag(int value) {
+            return (value >>> 1) ^ -(value & 1);
         }
-        list.add(new TravellingItemData(stackId, stackCount, toCenter, side, colour, timeToDest));
     }
 
     public static class TravellingItemData {
@@ -108,24 +219,6 @@ public class MessageMultiPipeItem implements IMessage {
             this.colour = colour;
             this.timeToDest = timeToDest;
         }
-
-        TravellingItemData(PacketBufferBC buf) {
-            stackId = buf.readVarInt();
-            stackCount = buf.readByte();
-            toCenter = buf.readBoolean();
-            side = buf.readEnumValue(EnumFacing.class);
-            colour = MessageUtil.readEnumOrNull(buf, EnumDyeColor.class);
-            timeToDest = buf.readByte();
-        }
-
-        void toBuffer(PacketBufferBC buf) {
-            buf.writeVarInt(stackId);
-            buf.writeByte(stackCount);
-            buf.writeBoolean(toCenter);
-            buf.writeEnumValue(side);
-            MessageUtil.writeEnumOrNull(buf, colour);
-            buf.writeByte(timeToDest);
-        }
     }
 
     public static final IMessageHandler<MessageMultiPipeItem, IMessage> HANDLER =
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.BCLibProxy;
+import buildcraft.lib.net.IPayloadReceiver;
+import buildcraft.lib.net.PacketBufferBC;
+
+/** Many tile update payloads (in the same format as {@link buildcraft.lib.net.MessageUpdateTile}) sent in a single
+ * packet. Used by {@link PipeUpdateMessageQueue} to send every pipe update for a player in one go. */
+public class MessageMultiPipeUpdate implements IMessage {
+    private final List<BlockPos> positions = new ArrayList<>();
+    private final List<PacketBufferBC> payloads = new ArrayList<>();
+    private int totalBytes = 0;
+
+    public MessageMultiPipeUpdate() {
+
+    }
+
+    public void append(BlockPos pos, PacketBufferBC payload) {
+        positions.add(pos);
+        payloads.add(payload);
+        totalBytes += payload.readableBytes();
+    }
+
+    public int getPayloadSize() {
+        return totalBytes;
+    }
+
+    public boolean isEmpty() {
+        return positions.isEmpty();
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buffer) {
+        PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
+        int count = buf.readVarInt();
+        for (int i = 0; i < count; i++) {
+            BlockPos pos = buf.readBlockPos();
+            int size = buf.readUnsignedMedium();
+            append(pos, new PacketBufferBC(buf.readBytes(size)));
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buffer) {
+        PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
+        buf.writeVarInt(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            PacketBufferBC payload = payloads.get(i);
+            int length = payload.readableBytes();
+            buf.writeBlockPos(positions.get(i));
+            buf.writeMedium(length);
+            // The same payload is shared between every player, so it must not be consumed
+            buf.writeBytes(payload, payload.readerIndex(), length);
+        }
+    }
+
+    public static final IMessageHandler<MessageMultiPipeUpdate, IMessage> HANDLER = (message, ctx) -> {
+        try {
+            EntityPlayer player = BCLibProxy.getProxy().getPlayerForContext(ctx);
+            if (player == null || player.world == null) {
+                return null;
+            }
+            for (int i = 0; i < message.positions.size(); i++) {
+                BlockPos pos = message.positions.get(i);
+                TileEntity tile = player.world.getTileEntity(pos);
+                if (tile instanceof IPayloadReceiver) {
+                    ((IPayloadReceiver) tile).receivePayload(ctx, message.payloads.get(i));
+                } else {
+                    BCLog.logger.warn("Dropped message for player " + player.getName() + " for tile at " + pos
+                        + " (found " + tile + ")");
+                }
+            }
+            return null;
+        } catch (IOException io) {
+            throw new RuntimeException(io);
+        } finally {
+            for (PacketBufferBC payload : message.payloads) {
+                payload.release();
+            }
+        }
+    };
+}
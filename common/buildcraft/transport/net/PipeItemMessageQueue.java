@@ -1,10 +1,12 @@
 package buildcraft.transport.net;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.WeakHashMap;
 
 import javax.annotation.Nullable;
 
@@ -13,40 +15,107 @@ import net.minecraft.item.EnumDyeColor;
 import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
 import buildcraft.lib.net.MessageManager;
 
+import buildcraft.transport.net.MessageMultiPipeItem.ChunkItems;
+import buildcraft.transport.net.MessageMultiPipeItem.TravellingItemData;
+
 public class PipeItemMessageQueue {
 
-    private static final Map<EntityPlayerMP, MessageMultiPipeItem> cachedPlayerPackets = new WeakHashMap<>();
+    /** Map of dimension -> chunk -> every player watching that chunk. Entries are removed whenever a player starts or
+     * stops watching a chunk, so this only has to search the player chunk map once per chunk. */
+    private static final Map<Integer, Map<Long, List<EntityPlayerMP>>> chunkWatchers = new HashMap<>();
+
+    /** Map of dimension -> chunk -> every item that started moving in that chunk this tick. */
+    private static final Map<Integer, Map<Long, ChunkItems>> chunkItems = new HashMap<>();
 
     public static void serverTick() {
-        for (Entry<EntityPlayerMP, MessageMultiPipeItem> entry : cachedPlayerPackets.entrySet()) {
+        if (chunkItems.isEmpty()) {
+            return;
+        }
+        Map<EntityPlayerMP, MessageMultiPipeItem> messages = new IdentityHashMap<>();
+        for (Map<Long, ChunkItems> dimChunks : chunkItems.values()) {
+            for (ChunkItems chunk : dimChunks.values()) {
+                for (EntityPlayerMP player : chunk.watchers) {
+                    MessageMultiPipeItem message = messages.get(player);
+                    if (message == null || !message.append(chunk)) {
+                        if (message != null) {
+                            // Too many positions for a single message
+                            MessageManager.sendTo(message, player);
+                        }
+                        message = new MessageMultiPipeItem();
+                        message.append(chunk);
+                        messages.put(player, message);
+                    }
+                }
+            }
+        }
+        for (Entry<EntityPlayerMP, MessageMultiPipeItem> entry : messages.entrySet()) {
             MessageManager.sendTo(entry.getValue(), entry.getKey());
         }
-        cachedPlayerPackets.clear();
+        chunkItems.clear();
     }
 
     public static void appendTravellingItem(World world, BlockPos pos, int stackId, byte stackCount, boolean toCenter,
         EnumFacing side, @Nullable EnumDyeColor colour, byte timeToDest) {
         WorldServer server = (WorldServer) world;
-        PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(pos.getX() >> 4, pos.getZ() >> 4);
-        if (playerChunkMap == null) {
-            // No-one was watching this chunk.
-            return;
+        int dimension = server.provider.getDimension();
+        int chunkX = pos.getX() >> 4;
+        int chunkZ = pos.getZ() >> 4;
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        Map<Long, ChunkItems> dimChunks = chunkItems.computeIfAbsent(dimension, d -> new HashMap<>());
+        ChunkItems chunk = dimChunks.get(chunkKey);
+        if (chunk == null) {
+            List<EntityPlayerMP> players = getWatchers(server, dimension, chunkX, chunkZ, chunkKey);
+            if (players.isEmpty()) {
+                // No-one was watching this chunk.
+                return;
+            }
+            chunk = new ChunkItems(chunkX, chunkZ, players);
+            dimChunks.put(chunkKey, chunk);
         }
-        List<EntityPlayerMP> players = new ArrayList<>();
-        // Slightly ugly hack to iterate through all players watching the chunk
-        playerChunkMap.hasPlayerMatchingInRange(0, player -> {
-            players.add(player);
-            // Always return false so that the iteration doesn't stop early
-            return false;
-        });
-        for (EntityPlayerMP player : players) {
-            cachedPlayerPackets.computeIfAbsent(player, pl -> new MessageMultiPipeItem()).append(pos, stackId,
-                stackCount, toCenter, side, colour, timeToDest);
+        chunk.append(pos, new TravellingItemData(stackId, stackCount, toCenter, side, colour, timeToDest));
+    }
+
+    private static List<EntityPlayerMP> getWatchers(WorldServer server, int dimension, int chunkX, int chunkZ,
+        long chunkKey) {
+        Map<Long, List<EntityPlayerMP>> dimWatchers = chunkWatchers.computeIfAbsent(dimension, d -> new HashMap<>());
+        List<EntityPlayerMP> players = dimWatchers.get(chunkKey);
+        if (players == null) {
+            PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(chunkX, chunkZ);
+            if (playerChunkMap == null) {
+                players = Collections.emptyList();
+            } else {
+                List<EntityPlayerMP> found = new ArrayList<>();
+                // Slightly ugly hack to iterate through all players watching the chunk
+                playerChunkMap.hasPlayerMatchingInRange(0, player -> {
+                    found.add(player);
+                    // Always return false so that the iteration doesn't stop early
+                    return false;
+                });
+                players = found;
+            }
+            dimWatchers.put(chunkKey, players);
+        }
+        return players;
+    }
+
+    /** Called whenever a player starts or stops watching a chunk. */
+    public static void onChunkWatchChanged(ChunkPos chunk) {
+        // The player might be changing dimension, so their world can't be used to find which dimension this is for
+        Long chunkKey = ChunkPos.asLong(chunk.x, chunk.z);
+        for (Map<Long, List<EntityPlayerMP>> dimWatchers : chunkWatchers.values()) {
+            dimWatchers.remove(chunkKey);
         }
     }
+
+    public static void onWorldUnload(World world) {
+        int dimension = world.provider.getDimension();
+        chunkWatchers.remove(dimension);
+        chunkItems.remove(dimension);
+    }
 }
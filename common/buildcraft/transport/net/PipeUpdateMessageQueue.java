@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.net;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.net.PacketBufferBC;
+
+/** Collects every pipe update sent during a tick into a single {@link MessageMultiPipeUpdate} per player, rather than
+ * sending one small packet for every part of every pipe. */
+public class PipeUpdateMessageQueue {
+
+    /** Messages are sent early if they get bigger than this, to keep well away from the packet size limit. */
+    private static final int MAX_MESSAGE_SIZE = 1 << 20;
+
+    private static final Map<EntityPlayerMP, MessageMultiPipeUpdate> cachedPlayerPackets = new WeakHashMap<>();
+
+    public static void serverTick() {
+        for (Entry<EntityPlayerMP, MessageMultiPipeUpdate> entry : cachedPlayerPackets.entrySet()) {
+            MessageManager.sendTo(entry.getValue(), entry.getKey());
+        }
+        cachedPlayerPackets.clear();
+    }
+
+    /** Queues the given payload for every player watching the chunk at the given position. The payload is shared
+     * between all of them, so it must not be modified afterwards. */
+    public static void appendToWatching(World world, BlockPos pos, PacketBufferBC payload) {
+        WorldServer server = (WorldServer) world;
+        PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(pos.getX() >> 4, pos.getZ() >> 4);
+        if (playerChunkMap == null) {
+            // No-one was watching this chunk.
+            return;
+        }
+        // Slightly ugly hack to iterate through all players watching the chunk
+        playerChunkMap.hasPlayerMatchingInRange(0, player -> {
+            append(player, pos, payload);
+            // Always return false so that the iteration doesn't stop early
+            return false;
+        });
+    }
+
+    public static void append(EntityPlayerMP player, BlockPos pos, PacketBufferBC payload) {
+        MessageMultiPipeUpdate message = cachedPlayerPackets.get(player);
+        if (message == null) {
+            message = new MessageMultiPipeUpdate();
+            cachedPlayerPackets.put(player, message);
+        } else if (message.getPayloadSize() + payload.readableBytes() > MAX_MESSAGE_SIZE) {
+            MessageManager.sendTo(message, player);
+            message = new MessageMultiPipeUpdate();
+            cachedPlayerPackets.put(player, message);
+        }
+        message.append(pos, payload);
+    }
+}
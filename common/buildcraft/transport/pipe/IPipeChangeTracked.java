@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe;
+
+/** Implemented by pipe flows and behaviours whose saved state can change without them sending a network update through
+ * their {@link buildcraft.api.transport.pipe.IPipeHolder} (for example items moving through a pipe, which are sent
+ * separately). The holder only marks its chunk as dirty in ticks where either it sent an update or one of these
+ * versions changed. */
+public interface IPipeChangeTracked {
+    /** @return A number that changes every time the saved state of this object changes. The actual value is
+     *         meaningless, as only the difference between ticks is checked. */
+    int getChangeVersion();
+}
@@ -254,6 +254,20 @@ public final class Pipe implements IPipe, IDebuggable {
         }
     }
 
+    /** @return The sum of the {@link IPipeChangeTracked#getChangeVersion()} of the behaviour and the flow, if they
+     *         implement it. Changes to the pipe itself (colour and connections) always send a network update, so they
+     *         don't need to be counted here. */
+    public int getChangeVersion() {
+        int version = 0;
+        if (behaviour instanceof IPipeChangeTracked) {
+            version += ((IPipeChangeTracked) behaviour).getChangeVersion();
+        }
+        if (flow instanceof IPipeChangeTracked) {
+            version += ((IPipeChangeTracked) flow).getChangeVersion();
+        }
+        return version;
+    }
+
     private void updateConnections() {
         if (holder.getPipeWorld().isRemote) {
             return;
@@ -8,6 +8,7 @@ package buildcraft.transport.pipe;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
@@ -25,12 +26,18 @@ import buildcraft.api.transport.pipe.PipeEventPriority;
 
 public class PipeEventBus {
     public static final boolean DEBUG = BCDebugging.shouldDebugLog("transport.pipe.event_bus");
-    // TODO: Investigate using a flag long to check if any handlers are registered for a PipeEvent class!
 
     private static final Map<Class<?>, List<Handler>> allHandlers = new HashMap<>();
 
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, PipeEvent.class);
+    private static final LocalHandler[] NO_HANDLERS = new LocalHandler[0];
+
     private final List<LocalHandler> currentHandlers = new ArrayList<>();
 
+    /** Map of event class -> every handler that accepts it, in priority order. Built lazily for each class that gets
+     * fired, and cleared whenever the handlers change. */
+    private final Map<Class<?>, LocalHandler[]> handlerTables = new HashMap<>();
+
     private static List<LocalHandler> getAndBindHandlers(Object obj) {
         Class<?> cls = obj instanceof Class ? (Class<?>) obj : obj.getClass();
 
@@ -91,6 +98,7 @@ public class PipeEventBus {
         }
         currentHandlers.addAll(getAndBindHandlers(obj));
         Collections.sort(currentHandlers);
+        handlerTables.clear();
     }
 
     public void unregisterHandler(Object obj) {
@@ -98,13 +106,41 @@ public class PipeEventBus {
             return;
         }
 
-        currentHandlers.removeIf(next -> next.target == obj);
+        if (currentHandlers.removeIf(next -> next.target == obj)) {
+            handlerTables.clear();
+        }
+    }
+
+    /** @return True if at least one registered handler would receive events of the given class. Callers can use this
+     *         to skip creating and firing events that nothing would listen to. */
+    public boolean hasHandlerFor(Class<? extends PipeEvent> eventClass) {
+        return getHandlerTable(eventClass).length > 0;
+    }
+
+    private LocalHandler[] getHandlerTable(Class<?> eventClass) {
+        LocalHandler[] table = handlerTables.get(eventClass);
+        if (table == null) {
+            List<LocalHandler> list = new ArrayList<>();
+            // currentHandlers is already sorted by priority
+            for (LocalHandler handler : currentHandlers) {
+                if (handler.classHandled.isAssignableFrom(eventClass)) {
+                    list.add(handler);
+                }
+            }
+            table = list.isEmpty() ? NO_HANDLERS : list.toArray(new LocalHandler[list.size()]);
+            handlerTables.put(eventClass, table);
+        }
+        return table;
     }
 
     /** Sends this event to all of the registered handlers.
      * 
      * @return True if at least 1 event handler was called, 0 if no handlers were called. */
     public boolean fireEvent(PipeEvent event) {
+        LocalHandler[] table = getHandlerTable(event.getClass());
+        if (table.length == 0) {
+            return false;
+        }
         boolean handled = false;
         if (DEBUG) {
             String error = event.checkStateForErrors();
@@ -113,8 +149,8 @@ public class PipeEventBus {
                     + "(error = " + error + ")");
             }
         }
-        for (LocalHandler handler : currentHandlers) {
-            handled |= handler.handleEvent(event);
+        for (LocalHandler handler : table) {
+            handled |= handler.invoke(event);
             if (DEBUG) {
                 String error = event.checkStateForErrors();
                 if (error != null) {
@@ -147,7 +183,7 @@ public class PipeEventBus {
             if (!isStatic && obj instanceof Class<?>) {
                 return null;
             }
-            MethodHandle bound = isStatic ? handle : handle.bindTo(obj);
+            MethodHandle bound = (isStatic ? handle : handle.bindTo(obj)).asType(HANDLER_TYPE);
             return new LocalHandler(priority, receiveCanceled, obj, methodName, eventClassHandled, bound);
         }
     }
@@ -170,19 +206,23 @@ public class PipeEventBus {
         }
 
         public boolean handleEvent(PipeEvent event) {
+            if (classHandled.isAssignableFrom(event.getClass())) {
+                return invoke(event);
+            }
+            return false;
+        }
+
+        /** Like {@link #handleEvent(PipeEvent)}, but assumes that the event is of the correct type. */
+        boolean invoke(PipeEvent event) {
             if (!receiveCanceled && event.isCanceled()) {
                 return false;
             }
-
-            if (classHandled.isAssignableFrom(event.getClass())) {
-                try {
-                    handle.invoke(event);
-                    return true;
-                } catch (Throwable e) {
-                    throw new IllegalStateException(e);
-                }
+            try {
+                handle.invokeExact(event);
+                return true;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
             }
-            return false;
         }
 
         @Override
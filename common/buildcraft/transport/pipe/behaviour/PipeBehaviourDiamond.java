@@ -24,14 +24,17 @@ import buildcraft.lib.misc.AdvancementUtil;
 import buildcraft.lib.tile.item.ItemHandlerSimple;
 
 import buildcraft.transport.BCTransportGuis;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 
-public abstract class PipeBehaviourDiamond extends PipeBehaviour {
+public abstract class PipeBehaviourDiamond extends PipeBehaviour implements IPipeChangeTracked {
 
     public static final int FILTERS_PER_SIDE = 9;
     public static final ResourceLocation ADVANCEMENT_NEED_LIST =
         BCModules.TRANSPORT.createLocation("too_many_pipe_filters");
 
     public final ItemHandlerSimple filters = new ItemHandlerSimple(FILTERS_PER_SIDE * 6, this::onFilterSlotChange);
+    /** Incremented whenever a filter slot changes, as that doesn't send a network update. */
+    private int changeVersion = 0;
 
     public PipeBehaviourDiamond(IPipe pipe) {
         super(pipe);
@@ -49,7 +52,13 @@ public abstract class PipeBehaviourDiamond extends PipeBehaviour {
         return nbt;
     }
 
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
+    }
+
     protected void onFilterSlotChange(IItemHandlerModifiable itemHandler, int slot, ItemStack before, ItemStack after) {
+        changeVersion++;
         if (pipe.getHolder().getPipeWorld().isRemote) {
             return;
         }
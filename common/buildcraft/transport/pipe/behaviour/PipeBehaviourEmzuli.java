@@ -23,6 +23,7 @@ import net.minecraft.util.math.RayTraceResult;
 
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.items.IItemHandlerModifiable;
 
 import buildcraft.api.core.EnumPipePart;
 import buildcraft.api.core.IStackFilter;
@@ -40,9 +41,10 @@ import buildcraft.lib.tile.item.ItemHandlerSimple;
 
 import buildcraft.transport.BCTransportGuis;
 import buildcraft.transport.BCTransportStatements;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 import buildcraft.transport.statements.ActionExtractionPreset;
 
-public class PipeBehaviourEmzuli extends PipeBehaviourWood {
+public class PipeBehaviourEmzuli extends PipeBehaviourWood implements IPipeChangeTracked {
 
     public enum SlotIndex {
         SQUARE(EnumDyeColor.RED),
@@ -72,7 +74,9 @@ public class PipeBehaviourEmzuli extends PipeBehaviourWood {
     }
 
     public final EnumMap<SlotIndex, EnumDyeColor> slotColours = new EnumMap<>(SlotIndex.class);
-    public final ItemHandlerSimple invFilters = new ItemHandlerSimple(4, null);
+    public final ItemHandlerSimple invFilters = new ItemHandlerSimple(4, this::onFilterSlotChange);
+    /** Counts changes to {@link #invFilters}, which are only sent to players with the gui open. */
+    private int changeVersion = 0;
     private final EnumSet<SlotIndex> activeSlots;
     private final byte[] activatedTtl = new byte[SlotIndex.VALUES.length];
     private SlotIndex currentSlot = null;
@@ -110,6 +114,15 @@ public class PipeBehaviourEmzuli extends PipeBehaviourWood {
         return nbt;
     }
 
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
+    }
+
+    private void onFilterSlotChange(IItemHandlerModifiable itemHandler, int slot, ItemStack before, ItemStack after) {
+        changeVersion++;
+    }
+
     @Override
     public void readPayload(PacketBuffer buffer, Side side, MessageContext ctx) throws IOException {
         super.readPayload(buffer, side, ctx);
@@ -51,8 +51,10 @@ import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.StackUtil;
 
 import buildcraft.transport.BCTransportStatements;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 
-public class PipeBehaviourStripes extends PipeBehaviour implements IStripesActivator, IMjRedstoneReceiver {
+public class PipeBehaviourStripes extends PipeBehaviour
+    implements IStripesActivator, IMjRedstoneReceiver, IPipeChangeTracked {
     private final MjBattery battery = new MjBattery(256 * MjAPI.MJ);
 
     @Nullable
@@ -77,6 +79,13 @@ public class PipeBehaviourStripes extends PipeBehaviour implements IStripesActiv
         return nbt;
     }
 
+    @Override
+    public int getChangeVersion() {
+        // The battery is the only saved state that isn't sent to clients, and it never holds more than 2^32 micro
+        // joules, so this changes whenever the stored power does
+        return Long.hashCode(battery.getStored());
+    }
+
     @Override
     public void readPayload(PacketBuffer buffer, Side side, MessageContext ctx) throws IOException {
         super.readPayload(buffer, side, ctx);
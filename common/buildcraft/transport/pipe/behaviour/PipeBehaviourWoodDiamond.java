@@ -41,8 +41,9 @@ import buildcraft.lib.misc.StackUtil;
 import buildcraft.lib.tile.item.ItemHandlerSimple;
 
 import buildcraft.transport.BCTransportGuis;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 
-public class PipeBehaviourWoodDiamond extends PipeBehaviourWood {
+public class PipeBehaviourWoodDiamond extends PipeBehaviourWood implements IPipeChangeTracked {
 
     public enum FilterMode {
         WHITE_LIST,
@@ -63,6 +64,8 @@ public class PipeBehaviourWoodDiamond extends PipeBehaviourWood {
     }
 
     public final ItemHandlerSimple filters = new ItemHandlerSimple(9, this::onSlotChanged);
+    /** Changing the filters doesn't send a network update, so they are counted here instead. */
+    private int changeVersion = 0;
     public FilterMode filterMode = FilterMode.WHITE_LIST;
     public int currentFilter = 0;
     public boolean filterValid = false;
@@ -88,6 +91,11 @@ public class PipeBehaviourWoodDiamond extends PipeBehaviourWood {
         return nbt;
     }
 
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
+    }
+
     @Override
     public void readPayload(PacketBuffer buffer, Side side, MessageContext ctx) throws IOException {
         super.readPayload(buffer, side, ctx);
@@ -127,6 +135,7 @@ public class PipeBehaviourWoodDiamond extends PipeBehaviourWood {
     }
 
     private void onSlotChanged(IItemHandlerModifiable itemHandler, int slot, ItemStack before, ItemStack after) {
+        changeVersion++;
         if (!after.isEmpty()) {
             if (!filterValid) {
                 currentFilter = slot;
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.EnumFacing;
+
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+
+import buildcraft.api.transport.pipe.IPipe;
+
+import buildcraft.lib.misc.CapUtil;
+
+import buildcraft.core.BCCoreConfig;
+
+/** A run of fluid pipes that doesn't branch, only connects to other pipes and doesn't have any behaviour that listens
+ * to fluid events. Nothing can happen to fluid in the middle of a run like that, so it's treated as a single tank with
+ * the combined capacity of every pipe in it, which moves fluid between its two ends once per tick (rather than every
+ * pipe moving it through all 7 of its sections).
+ * <p>
+ * Every pipe in a segment is given an even share of its contents in its own sections whenever they change (at most as
+ * often as pipes send their fluid to clients) and before saving, so saving, rendering and splitting the segment back up
+ * again all work the same as normal. */
+final class FluidSegment {
+    /** How long pipes wait before trying to join a segment again, after finding that they can't. */
+    private static final int RETRY_DELAY = 20;
+
+    private final PipeFlowFluids[] pipes;
+    /** The face of each pipe that leads towards the first pipe. */
+    private final EnumFacing[] facesToStart;
+    /** The face of each pipe that leads towards the last pipe. */
+    private final EnumFacing[] facesToEnd;
+    private final int capacity;
+    private final int transferPerTick;
+
+    @Nullable
+    private FluidStack fluid;
+    private int amount;
+    /** The amount that was inserted since the last tick, which can't leave again until the next one. */
+    private int incoming;
+    /** The direction of each end, in the same form as {@link PipeFlowFluids.Section#ticksInDirection}. */
+    private final int[] endDirection = new int[2];
+    private final int[] filledThisTick = new int[2];
+    private long tickedAt = Long.MIN_VALUE;
+    /** True if the amount or direction has changed since the pipes were last given their share of the fluid. */
+    private boolean dirty;
+    /** The direction that the pipes were last given, from {@link #getDirection()}. */
+    private int spreadDirection;
+    /** The earliest world time that the pipes can be given their share again, so that they only change (and get sent
+     * to clients) as often as any other pipe would send its fluid. */
+    private long nextSpread = Long.MIN_VALUE;
+    private boolean valid = true;
+
+    private FluidSegment(List<PipeFlowFluids> pipes, List<EnumFacing> facesToStart, List<EnumFacing> facesToEnd) {
+        this.pipes = pipes.toArray(new PipeFlowFluids[0]);
+        this.facesToStart = facesToStart.toArray(new EnumFacing[0]);
+        this.facesToEnd = facesToEnd.toArray(new EnumFacing[0]);
+        PipeFlowFluids first = this.pipes[0];
+        this.capacity = first.capacity * this.pipes.length;
+        this.transferPerTick = first.getTransferPerTick();
+    }
+
+    /** Attempts to create a new segment containing the given pipe, and every other pipe in the same run.
+     *
+     * @return The new segment, or null if the given pipe can't be part of one at the moment. */
+    @Nullable
+    static FluidSegment tryCreate(PipeFlowFluids start, long worldTime) {
+        if (!start.canJoinSegment()) {
+            start.nextSegmentCheck = worldTime + RETRY_DELAY;
+            return null;
+        }
+
+        // Find the first pipe in the run
+        PipeFlowFluids first = start;
+        EnumFacing toStart = getOtherConnection(start, null);
+        while (true) {
+            PipeFlowFluids prev = getJoinableNeighbour(start, first, toStart);
+            if (prev == null) {
+                break;
+            }
+            if (prev == start) {
+                // The run is a loop, so there's nowhere for the fluid to go
+                start.nextSegmentCheck = worldTime + RETRY_DELAY;
+                return null;
+            }
+            toStart = getOtherConnection(prev, toStart.getOpposite());
+            first = prev;
+        }
+
+        // Then walk back along it, towards the last pipe
+        List<PipeFlowFluids> run = new ArrayList<>();
+        List<EnumFacing> facesToStart = new ArrayList<>();
+        List<EnumFacing> facesToEnd = new ArrayList<>();
+        PipeFlowFluids current = first;
+        while (current != null) {
+            EnumFacing toEnd = getOtherConnection(current, toStart);
+            run.add(current);
+            facesToStart.add(toStart);
+            facesToEnd.add(toEnd);
+            current = getJoinableNeighbour(start, current, toEnd);
+            toStart = toEnd.getOpposite();
+        }
+
+        FluidStack fluid = null;
+        int total = 0;
+        boolean canJoin = run.size() > 1;
+        for (PipeFlowFluids flow : run) {
+            int contained = flow.getTotalAmount();
+            if (contained > 0) {
+                FluidStack contents = flow.getCurrentFluid();
+                if (fluid == null) {
+                    fluid = contents;
+                } else if (!fluid.isFluidEqual(contents)) {
+                    canJoin = false;
+                }
+                total += contained;
+            }
+        }
+        if (!canJoin || total > start.capacity * run.size()) {
+            for (PipeFlowFluids flow : run) {
+                flow.nextSegmentCheck = worldTime + RETRY_DELAY;
+            }
+            return null;
+        }
+
+        FluidSegment segment = new FluidSegment(run, facesToStart, facesToEnd);
+        segment.fluid = fluid == null ? null : new FluidStack(fluid, 1);
+        for (PipeFlowFluids flow : run) {
+            segment.amount += flow.takeContentsForSegment();
+            flow.segment = segment;
+        }
+        segment.spread();
+        return segment;
+    }
+
+    /** @param cameFrom The connection to ignore, or null to return the first connection.
+     * @return The connected face of the given pipe that isn't cameFrom. Only valid for pipes that can join a
+     *         segment. */
+    private static EnumFacing getOtherConnection(PipeFlowFluids flow, @Nullable EnumFacing cameFrom) {
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (face != cameFrom && flow.pipe.isConnected(face)) {
+                return face;
+            }
+        }
+        throw new IllegalStateException(
+            "Pipe wasn't connected on 2 faces! (" + flow.pipe.getHolder().getPipePos() + ")"
+        );
+    }
+
+    @Nullable
+    private static PipeFlowFluids getJoinableNeighbour(PipeFlowFluids start, PipeFlowFluids flow, EnumFacing face) {
+        IPipe neighbour = flow.pipe.getConnectedPipe(face);
+        if (neighbour == null || neighbour.getDefinition() != start.pipe.getDefinition()) {
+            return null;
+        }
+        PipeFlowFluids next = (PipeFlowFluids) neighbour.getFlow();
+        return next.canJoinSegment() ? next : null;
+    }
+
+    /** Moves fluid out of both ends of this segment, if that hasn't already happened during the given tick. */
+    void tick(long worldTime) {
+        if (!valid || tickedAt == worldTime) {
+            return;
+        }
+        tickedAt = worldTime;
+        int available = amount - incoming;
+        incoming = 0;
+        filledThisTick[0] = 0;
+        filledThisTick[1] = 0;
+
+        // Alternate which end goes first, so that neither gets priority
+        int firstEnd = (int) (worldTime & 1);
+        for (int e = 0; e < 2 && fluid != null; e++) {
+            int end = firstEnd ^ e;
+            if (endDirection[end] < 0 || available <= 0) {
+                continue;
+            }
+            PipeFlowFluids flow = getEndPipe(end);
+            EnumFacing face = getEndFace(end);
+            IFluidHandler handler = flow.pipe.getHolder().getCapabilityFromPipe(face, CapUtil.CAP_FLUIDS);
+            if (handler == null) {
+                continue;
+            }
+            int filled = handler.fill(new FluidStack(fluid, Math.min(available, transferPerTick)), true);
+            if (filled > 0) {
+                amount -= filled;
+                available -= filled;
+                endDirection[end] = PipeFlowFluids.COOLDOWN_OUTPUT;
+                dirty = true;
+            }
+        }
+
+        for (int end = 0; end < 2; end++) {
+            if (endDirection[end] > 0) {
+                endDirection[end]--;
+            } else if (endDirection[end] < 0) {
+                endDirection[end]++;
+            }
+        }
+        if (amount == 0) {
+            fluid = null;
+        }
+        if (getDirection() != spreadDirection) {
+            dirty = true;
+        }
+        if (dirty && worldTime >= nextSpread) {
+            nextSpread = worldTime + BCCoreConfig.networkUpdateRate;
+            spread();
+        }
+    }
+
+    /** Inserts fluid into one of the ends of this segment. */
+    int fill(PipeFlowFluids flow, EnumFacing face, FluidStack resource, boolean doFill) {
+        int end = flow == getEndPipe(0) && face == getEndFace(0) ? 0
+            : flow == getEndPipe(1) && face == getEndFace(1) ? 1 : -1;
+        if (!valid || end < 0 || endDirection[end] > 0) {
+            return 0;
+        }
+        if (fluid != null && !fluid.isFluidEqual(resource)) {
+            return 0;
+        }
+        int filled = Math.min(resource.amount, capacity - amount);
+        filled = Math.min(filled, transferPerTick - filledThisTick[end]);
+        if (filled <= 0) {
+            return 0;
+        }
+        if (doFill) {
+            if (fluid == null) {
+                fluid = new FluidStack(resource, 1);
+            }
+            amount += filled;
+            incoming += filled;
+            filledThisTick[end] += filled;
+            endDirection[end] = PipeFlowFluids.COOLDOWN_INPUT;
+            dirty = true;
+        }
+        return filled;
+    }
+
+    /** Ensures that every pipe holds its share of this segment's contents. */
+    void sync() {
+        if (valid && dirty) {
+            spread();
+        }
+    }
+
+    /** Splits this segment back up into the individual pipes. */
+    void dissolve() {
+        if (!valid) {
+            return;
+        }
+        sync();
+        valid = false;
+        for (PipeFlowFluids flow : pipes) {
+            if (flow.segment == this) {
+                flow.segment = null;
+            }
+        }
+    }
+
+    int getPipeCount() {
+        return pipes.length;
+    }
+
+    int getAmount() {
+        return amount;
+    }
+
+    private PipeFlowFluids getEndPipe(int end) {
+        return pipes[end == 0 ? 0 : pipes.length - 1];
+    }
+
+    private EnumFacing getEndFace(int end) {
+        return end == 0 ? facesToStart[0] : facesToEnd[pipes.length - 1];
+    }
+
+    /** @return 1 if fluid is moving from the start towards the end (because it's coming in at the start, or going out
+     *         at the end), -1 if it's moving the other way, or 0 if it isn't moving. */
+    private int getDirection() {
+        return endDirection[0] < 0 || endDirection[1] > 0 ? 1
+            : endDirection[1] < 0 || endDirection[0] > 0 ? -1 : 0;
+    }
+
+    private void spread() {
+        dirty = false;
+        int count = pipes.length;
+        int share = amount / count;
+        int extra = amount % count;
+        int direction = getDirection();
+        spreadDirection = direction;
+        for (int i = 0; i < count; i++) {
+            int contained = share + (i < extra ? 1 : 0);
+            pipes[i].setSegmentContents(fluid, contained, facesToStart[i], facesToEnd[i], direction);
+        }
+    }
+}
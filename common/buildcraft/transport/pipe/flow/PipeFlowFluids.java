@@ -47,13 +47,18 @@ import buildcraft.api.core.SafeTimeTracker;
 import buildcraft.api.tiles.IDebuggable;
 import buildcraft.api.transport.pipe.IFlowFluid;
 import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
 import buildcraft.api.transport.pipe.PipeApi.FluidTransferInfo;
+import buildcraft.api.transport.pipe.PipeEvent;
+import buildcraft.api.transport.pipe.PipeEventConnectionChange;
 import buildcraft.api.transport.pipe.PipeEventFluid;
 import buildcraft.api.transport.pipe.PipeEventFluid.OnMoveToCentre;
 import buildcraft.api.transport.pipe.PipeEventFluid.PreMoveToCentre;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventStatement;
+import buildcraft.api.transport.pipe.PipeEventTileState;
 import buildcraft.api.transport.pipe.PipeFlow;
 
 import buildcraft.lib.misc.CapUtil;
@@ -67,13 +72,16 @@ import buildcraft.lib.net.cache.NetworkedObjectCache;
 
 import buildcraft.core.BCCoreConfig;
 import buildcraft.core.BCCoreItems;
+import buildcraft.transport.BCTransportConfig;
 import buildcraft.transport.BCTransportStatements;
+import buildcraft.transport.pipe.IPipeChangeTracked;
+import buildcraft.transport.tile.TilePipeHolder;
 
-public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable {
+public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable, IPipeChangeTracked {
 
     private static final int DIRECTION_COOLDOWN = 60;
-    private static final int COOLDOWN_INPUT = -DIRECTION_COOLDOWN;
-    private static final int COOLDOWN_OUTPUT = DIRECTION_COOLDOWN;
+    static final int COOLDOWN_INPUT = -DIRECTION_COOLDOWN;
+    static final int COOLDOWN_OUTPUT = DIRECTION_COOLDOWN;
 
     private static final ActionResult<FluidStack> FAILED_EXTRACT = new ActionResult<>(EnumActionResult.FAIL, null);
     private static final ActionResult<FluidStack> PASSED_EXTRACT = new ActionResult<>(EnumActionResult.PASS, null);
@@ -93,6 +101,13 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     private FluidStack currentFluid;
     private int currentDelay;
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate, 4);
+    /** Incremented whenever the fluid or any section's amount changes, so that the holder knows when it needs
+     * saving. */
+    private int changeVersion = 0;
+
+    /** The segment that this is a part of, if {@link BCTransportConfig#fluidNetworkSegments} is enabled. */
+    FluidSegment segment;
+    long nextSegmentCheck;
 
     // Client fields for interpolating amounts
     private long lastMessage, lastMessageMinus1;
@@ -137,6 +152,9 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
     @Override
     public NBTTagCompound writeToNbt() {
+        if (segment != null) {
+            segment.sync();
+        }
         NBTTagCompound nbt = super.writeToNbt();
 
         if (currentFluid != null) {
@@ -176,6 +194,9 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     @Override
     public void addDrops(NonNullList<ItemStack> toDrop, int fortune) {
         super.addDrops(toDrop, fortune);
+        if (segment != null) {
+            segment.sync();
+        }
         if (currentFluid != null && BCCoreItems.fragileFluidShard != null) {
             int totalAmount = 0;
             for (EnumPipePart part : EnumPipePart.VALUES) {
@@ -201,6 +222,16 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         event.triggers.add(BCTransportStatements.TRIGGER_FLUIDS_TRAVERSING);
     }
 
+    @PipeEventHandler
+    public void onConnectionChange(PipeEventConnectionChange event) {
+        leaveSegment();
+    }
+
+    @PipeEventHandler
+    public void onTileStateChange(PipeEventTileState event) {
+        leaveSegment();
+    }
+
     // IFlowFluid
 
     @Override
@@ -258,6 +289,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         if (from == null || millibuckets <= 0) {
             return FAILED_EXTRACT;
         }
+        leaveSegment();
         IFluidHandler fluidHandler = pipe.getHolder().getCapabilityFromPipe(from, CapUtil.CAP_FLUIDS);
         if (fluidHandler == null) {
             // FIXME: WRONG PLACE!!!
@@ -314,6 +346,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
     @Override
     public int insertFluidsForce(FluidStack fluid, @Nullable EnumFacing from, boolean simulate) {
+        leaveSegment();
         Section s = sections.get(EnumPipePart.CENTER);
         if (fluid == null || fluid.amount == 0) {
             return 0;
@@ -346,6 +379,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         if (max < 0) {
             return null;
         }
+        leaveSegment();
         Section s = sections.get(EnumPipePart.fromFacing(section));
         if (s.amount < min) {
             return null;
@@ -376,6 +410,9 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
         FluidStack fluid = isRemote ? getFluidStackForRender() : currentFluid;
         left.add(" - FluidType = " + (fluid == null ? "empty" : fluid.getLocalizedName()));
+        if (segment != null) {
+            left.add(" - Segment = " + segment.getAmount() + "mB over " + segment.getPipeCount() + " pipes");
+        }
 
         for (EnumPipePart part : EnumPipePart.VALUES) {
             Section section = sections.get(part);
@@ -445,10 +482,119 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         return arr;
     }
 
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
+    }
+
+    // Segments
+
+    /** @return True if this pipe only connects to 2 other fluid pipes, and nothing can listen to the fluid moving
+     *         through it. */
+    boolean canJoinSegment() {
+        if (segment != null) {
+            return false;
+        }
+        int connections = 0;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (!pipe.isConnected(face)) {
+                continue;
+            }
+            if (pipe.getConnectedType(face) != ConnectedType.PIPE) {
+                return false;
+            }
+            IPipe oPipe = pipe.getConnectedPipe(face);
+            if (oPipe == null || !(oPipe.getFlow() instanceof PipeFlowFluids)) {
+                return false;
+            }
+            connections++;
+        }
+        return connections == 2 //
+            && !hasHandlerFor(PipeEventFluid.SideCheck.class) //
+            && !hasHandlerFor(PipeEventFluid.TryInsert.class) //
+            && !hasHandlerFor(PipeEventFluid.PreMoveToCentre.class) //
+            && !hasHandlerFor(PipeEventFluid.OnMoveToCentre.class);
+    }
+
+    private boolean hasHandlerFor(Class<? extends PipeEvent> eventClass) {
+        IPipeHolder holder = pipe.getHolder();
+        if (holder instanceof TilePipeHolder) {
+            return ((TilePipeHolder) holder).eventBus.hasHandlerFor(eventClass);
+        }
+        return true;
+    }
+
+    private void leaveSegment() {
+        if (segment != null) {
+            segment.dissolve();
+        }
+    }
+
+    int getTransferPerTick() {
+        return fluidTransferInfo.transferPerTick;
+    }
+
+    @Nullable
+    FluidStack getCurrentFluid() {
+        return currentFluid;
+    }
+
+    int getTotalAmount() {
+        int total = 0;
+        for (Section section : sections.values()) {
+            total += section.amount;
+        }
+        return total;
+    }
+
+    /** @return The amount of fluid that can be drained out of the given section this tick. */
+    int getMaxDrained(EnumPipePart part) {
+        return sections.get(part).getMaxDrained();
+    }
+
+    /** Empties every section, as the fluid is now held by the segment. */
+    int takeContentsForSegment() {
+        int total = getTotalAmount();
+        for (Section section : sections.values()) {
+            section.amount = 0;
+            section.ticksInDirection = 0;
+        }
+        setFluid(null);
+        return total;
+    }
+
+    /** Sets this pipes share of the fluid in its segment, spread out over the centre and both connected sides. */
+    void setSegmentContents(@Nullable FluidStack fluid, int total, EnumFacing toStart, EnumFacing toEnd,
+        int direction) {
+        if (fluid == null) {
+            total = 0;
+            if (currentFluid != null) {
+                setFluid(null);
+            }
+        } else if (!fluid.isFluidEqual(currentFluid)) {
+            // Keep the fluid even if this pipe's share is 0, so that it doesn't change every time the share does
+            setFluid(fluid.copy());
+        }
+        total = Math.max(0, total);
+        for (Section section : sections.values()) {
+            section.amount = 0;
+            section.ticksInDirection = 0;
+        }
+        int side = total / 3;
+        sections.get(EnumPipePart.CENTER).amount = total - side * 2;
+        Section start = sections.get(EnumPipePart.fromFacing(toStart));
+        Section end = sections.get(EnumPipePart.fromFacing(toEnd));
+        start.amount = side;
+        end.amount = side;
+        start.ticksInDirection = direction > 0 ? COOLDOWN_INPUT : direction < 0 ? COOLDOWN_OUTPUT : 0;
+        end.ticksInDirection = -start.ticksInDirection;
+    }
+
     // Internal logic
 
     private void setFluid(FluidStack fluid) {
         currentFluid = fluid;
+        changeVersion++;
         if (fluid != null) {
             currentDelay = (int) PipeApi.getFluidTransferInfo(pipe.getDefinition()).transferDelayMultiplier;
             // (int) (fluidTransferInfo.transferDelayMultiplier * fluid.getFluid().getViscosity(fluid) / 100);
@@ -457,6 +603,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
         for (Section section : sections.values()) {
             section.incoming = new int[currentDelay];
+            section.incomingTotalCache = 0;
             section.currentTime = 0;
             section.ticksInDirection = 0;
         }
@@ -472,7 +619,16 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             return;
         }
 
-        if (currentFluid != null) {
+        if (segment == null && BCTransportConfig.fluidNetworkSegments) {
+            long now = world.getTotalWorldTime();
+            if (now >= nextSegmentCheck) {
+                FluidSegment.tryCreate(this, now);
+            }
+        }
+
+        if (segment != null) {
+            segment.tick(world.getTotalWorldTime());
+        } else if (currentFluid != null) {
             // int timeSlot = (int) (world.getTotalWorldTime() % currentDelay);
             int totalFluid = 0;
             boolean canOutput = false;
@@ -512,6 +668,14 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             }
         }
 
+        for (EnumPipePart part : EnumPipePart.VALUES) {
+            Section section = sections.get(part);
+            if (section.amount != section.lastTickAmount) {
+                section.lastTickAmount = section.amount;
+                changeVersion++;
+            }
+        }
+
         boolean send = false;
 
         for (EnumPipePart part : EnumPipePart.VALUES) {
@@ -780,6 +944,9 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
         int lastSentAmount;
 
+        /** The amount at the end of the last tick, used to detect changes for {@link #getChangeVersion()}. */
+        int lastTickAmount;
+
         Dir lastSentDirection;
 
         int currentTime;
@@ -974,6 +1141,10 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
         @Override
         public int fill(FluidStack resource, boolean doFill) {
+            if (segment != null && resource != null && pipe.isConnected(part.face)) {
+                // The segment keeps track of the direction of its ends itself
+                return segment.fill(PipeFlowFluids.this, part.face, resource, doFill);
+            }
             if (!getCurrentDirection().canInput() || !pipe.isConnected(part.face) || resource == null) {
                 return 0;
             }
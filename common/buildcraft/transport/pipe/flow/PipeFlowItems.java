@@ -42,6 +42,7 @@ import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipe.ConnectedType;
 import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventItem;
 import buildcraft.api.transport.pipe.PipeEventStatement;
@@ -59,13 +60,17 @@ import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 import buildcraft.transport.BCTransportStatements;
 import buildcraft.transport.net.MessageMultiPipeItem.TravellingItemData;
 import buildcraft.transport.net.PipeItemMessageQueue;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 import buildcraft.transport.pipe.behaviour.PipeBehaviourStone;
+import buildcraft.transport.tile.TilePipeHolder;
 
-public final class PipeFlowItems extends PipeFlow implements IFlowItems {
+public final class PipeFlowItems extends PipeFlow implements IFlowItems, IPipeChangeTracked {
     private static final double EXTRACT_SPEED = 0.08;
     public static final int NET_CREATE_ITEM = 2;
 
     private final DelayedList<TravellingItem> items = new DelayedList<>();
+    /** Incremented whenever an item is added or removed, so that the holder knows when it needs saving. */
+    private int changeVersion = 0;
 
     public PipeFlowItems(IPipe pipe) {
         super(pipe);
@@ -99,6 +104,11 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         return nbt;
     }
 
+    @Override
+    public int getChangeVersion() {
+        return changeVersion;
+    }
+
     // Network
 
     @Override
@@ -116,7 +126,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 item.timeToDest = buffer.readUnsignedShort();
                 item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
                 item.tickFinished = item.tickStarted + item.timeToDest;
-                items.add(item.timeToDest + 1, item);
+                addItem(item.timeToDest + 1, item);
             }
         }
     }
@@ -138,7 +148,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.timeToDest = data.timeToDest;
         item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
         item.tickFinished = item.tickStarted + item.timeToDest;
-        items.add(item.timeToDest + 1, item);
+        addItem(item.timeToDest + 1, item);
     }
 
     void sendItemDataToClient(TravellingItem item) {
@@ -239,7 +249,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         firstItem.side = face0 == null ? face1 : face0;
         firstItem.speed = EXTRACT_SPEED;
         firstItem.genTimings(now, getPipeLength(firstItem.side));
-        items.add(firstItem.timeToDest, firstItem);
+        addItem(firstItem.timeToDest, firstItem);
         sendItemDataToClient(firstItem);
 
         if (twoItems) {
@@ -250,7 +260,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
             secondItem.side = face2;
             secondItem.speed = EXTRACT_SPEED;
             secondItem.genTimings(firstItem.tickFinished, getPipeLength(secondItem.side));
-            items.add(secondItem.timeToDest, secondItem);
+            addItem(secondItem.timeToDest, secondItem);
             sendItemDataToClient(secondItem);
         }
     }
@@ -278,17 +288,26 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         return ItemTransactorHelper.getTransactor(oTile, face.getOpposite()) != NoSpaceTransactor.INSTANCE;
     }
 
+    private void addItem(int delay, TravellingItem item) {
+        changeVersion++;
+        items.add(delay, item);
+    }
+
     @Override
     public void onTick() {
         World world = pipe.getHolder().getPipeWorld();
 
         List<TravellingItem> toTick = items.advance();
         long currentTime = world.getTotalWorldTime();
+        if (!toTick.isEmpty()) {
+            // Every item that reaches its destination is either moved onwards or removed
+            changeVersion++;
+        }
 
         for (TravellingItem item : toTick) {
             if (item.tickFinished > currentTime) {
                 // Can happen if something ticks this tile multiple times in a single real tick
-                items.add((int) (item.tickFinished - currentTime), item);
+                addItem((int) (item.tickFinished - currentTime), item);
                 continue;
             }
             if (item.isPhantom) {
@@ -308,42 +327,74 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
 
     private void onItemReachCenter(TravellingItem item) {
         IPipeHolder holder = pipe.getHolder();
-        PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(
-            holder, this, item.colour, item.stack, item.side
-        );
-        holder.fireEvent(reachCenter);
-        if (reachCenter.getStack().isEmpty()) {
-            return;
+        EnumDyeColor colour = item.colour;
+        ItemStack stack = item.stack;
+        EnumFacing from = item.side;
+        if (hasHandlerFor(PipeEventItem.ReachCenter.class)) {
+            PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(holder, this, colour, stack, from);
+            holder.fireEvent(reachCenter);
+            colour = reachCenter.colour;
+            stack = reachCenter.getStack();
+            from = reachCenter.from;
+            if (stack.isEmpty()) {
+                return;
+            }
         }
 
-        PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(
-            holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack()
-        );
-        sideCheck.disallow(reachCenter.from);
-        for (EnumFacing face : EnumFacing.VALUES) {
-            if (item.tried.contains(face) || !pipe.isConnected(face)) {
-                sideCheck.disallow(face);
+        // Null if nothing could change the order, in which case every allowed side has the same priority
+        List<EnumSet<EnumFacing>> order;
+        if (hasHandlerFor(PipeEventItem.SideCheck.class)) {
+            PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(holder, this, colour, from, stack);
+            sideCheck.disallow(from);
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (item.tried.contains(face) || !pipe.isConnected(face)) {
+                    sideCheck.disallow(face);
+                }
             }
+            holder.fireEvent(sideCheck);
+            order = sideCheck.getOrder();
+        } else {
+            order = getAllowedSideCount(item, from) == 0 ? ImmutableList.of() : null;
         }
-        holder.fireEvent(sideCheck);
 
-        List<EnumSet<EnumFacing>> order = sideCheck.getOrder();
-        if (order.isEmpty()) {
-            PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(
-                holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack()
-            );
-            holder.fireEvent(tryBounce);
-            if (tryBounce.canBounce) {
-                order = ImmutableList.of(EnumSet.of(reachCenter.from));
+        if (order != null && order.isEmpty()) {
+            if (tryBounce(holder, colour, from, stack)) {
+                order = ImmutableList.of(EnumSet.of(from));
             } else {
                 dropItem(item.stack, null, item.side.getOpposite(), item.speed);
                 return;
             }
         }
 
-        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(
-            reachCenter.colour, reachCenter.getStack(), reachCenter.from
-        );
+        if (!hasHandlerFor(PipeEventItem.Split.class) && !hasHandlerFor(PipeEventItem.FindDest.class)) {
+            // Fast path: the item can't be split up, and nothing will pick its destination, so we can re-use it
+            // rather than going through the events below.
+            EnumFacing to = order == null ? pickAllowedSide(item, from) : pickRandomSide(order.get(0));
+            double newSpeed = hasHandlerFor(PipeEventItem.ModifySpeed.class)
+                ? getNewSpeed(holder, item, new PipeEventItem.ItemEntry(colour, stack, from))
+                : getDefaultNewSpeed(item);
+            item.stack = stack;
+            item.colour = colour;
+            item.toCenter = false;
+            item.side = to;
+            item.speed = newSpeed;
+            item.genTimings(holder.getPipeWorld().getTotalWorldTime(), getPipeLength(to));
+            addItem(item.timeToDest, item);
+            sendItemDataToClient(item);
+            return;
+        }
+
+        if (order == null) {
+            EnumSet<EnumFacing> allowed = EnumSet.noneOf(EnumFacing.class);
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (isAllowedSide(item, from, face)) {
+                    allowed.add(face);
+                }
+            }
+            order = ImmutableList.of(allowed);
+        }
+
+        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(colour, stack, from);
         PipeEventItem.Split split = new PipeEventItem.Split(holder, this, order, entry);
         holder.fireEvent(split);
         ImmutableList<PipeEventItem.ItemEntry> entries = ImmutableList.copyOf(split.items);
@@ -357,29 +408,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
             if (itemEntry.stack.isEmpty()) {
                 continue;
             }
-            PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
-
-            final double newSpeed;
-
-            if (holder.fireEvent(modifySpeed)) {
-                double target = modifySpeed.targetSpeed;
-                double maxDelta = modifySpeed.maxSpeedChange;
-                if (item.speed < target) {
-                    newSpeed = Math.min(target, item.speed + maxDelta);
-                } else if (item.speed > target) {
-                    newSpeed = Math.max(target, item.speed - maxDelta);
-                } else {
-                    newSpeed = item.speed;
-                }
-            } else {
-                // Nothing affected the speed
-                // so just fallback to a sensible default
-                if (item.speed > 0.03) {
-                    newSpeed = Math.max(0.03, item.speed - PipeBehaviourStone.SPEED_DELTA);
-                } else {
-                    newSpeed = item.speed;
-                }
-            }
+            double newSpeed = getNewSpeed(holder, item, itemEntry);
 
             List<EnumFacing> destinations = itemEntry.to;
             if (destinations == null || destinations.size() == 0) {
@@ -395,12 +424,91 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 newItem.side = destinations.get(0);
                 newItem.speed = newSpeed;
                 newItem.genTimings(now, getPipeLength(newItem.side));
-                items.add(newItem.timeToDest, newItem);
+                addItem(newItem.timeToDest, newItem);
                 sendItemDataToClient(newItem);
             }
         }
     }
 
+    private boolean hasHandlerFor(Class<? extends PipeEvent> eventClass) {
+        IPipeHolder holder = pipe.getHolder();
+        if (holder instanceof TilePipeHolder) {
+            return ((TilePipeHolder) holder).eventBus.hasHandlerFor(eventClass);
+        }
+        return true;
+    }
+
+    private boolean isAllowedSide(TravellingItem item, EnumFacing from, EnumFacing face) {
+        return face != from && !item.tried.contains(face) && pipe.isConnected(face);
+    }
+
+    private int getAllowedSideCount(TravellingItem item, EnumFacing from) {
+        int count = 0;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (isAllowedSide(item, from, face)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Equivalent to picking the first side from {@link PipeEventItem.FindDest#generateRandomOrder()} when every
+     * allowed side has the same priority, but without creating any lists. */
+    private EnumFacing pickAllowedSide(TravellingItem item, EnumFacing from) {
+        int index = pipe.getHolder().getPipeWorld().rand.nextInt(getAllowedSideCount(item, from));
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (isAllowedSide(item, from, face) && index-- == 0) {
+                return face;
+            }
+        }
+        throw new IllegalStateException("Didn't find an allowed side, even though there should have been one!");
+    }
+
+    private EnumFacing pickRandomSide(EnumSet<EnumFacing> sides) {
+        int index = pipe.getHolder().getPipeWorld().rand.nextInt(sides.size());
+        for (EnumFacing face : sides) {
+            if (index-- == 0) {
+                return face;
+            }
+        }
+        throw new IllegalStateException("Didn't find a side in " + sides);
+    }
+
+    private boolean tryBounce(IPipeHolder holder, EnumDyeColor colour, EnumFacing from, ItemStack stack) {
+        if (!hasHandlerFor(PipeEventItem.TryBounce.class)) {
+            return false;
+        }
+        PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(holder, this, colour, from, stack);
+        holder.fireEvent(tryBounce);
+        return tryBounce.canBounce;
+    }
+
+    private double getNewSpeed(IPipeHolder holder, TravellingItem item, PipeEventItem.ItemEntry itemEntry) {
+        PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
+        if (holder.fireEvent(modifySpeed)) {
+            double target = modifySpeed.targetSpeed;
+            double maxDelta = modifySpeed.maxSpeedChange;
+            if (item.speed < target) {
+                return Math.min(target, item.speed + maxDelta);
+            } else if (item.speed > target) {
+                return Math.max(target, item.speed - maxDelta);
+            } else {
+                return item.speed;
+            }
+        }
+        return getDefaultNewSpeed(item);
+    }
+
+    private static double getDefaultNewSpeed(TravellingItem item) {
+        // Nothing affected the speed
+        // so just fallback to a sensible default
+        if (item.speed > 0.03) {
+            return Math.max(0.03, item.speed - PipeBehaviourStone.SPEED_DELTA);
+        } else {
+            return item.speed;
+        }
+    }
+
     private void onItemReachEnd(TravellingItem item) {
         IPipeHolder holder = pipe.getHolder();
         PipeEventItem.ReachEnd reachEnd = new PipeEventItem.ReachEnd(holder, this, item.colour, item.stack, item.side);
@@ -456,7 +564,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.toCenter = true;
         item.stack = excess;
         item.genTimings(holder.getPipeWorld().getTotalWorldTime(), getPipeLength(item.side));
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
         sendItemDataToClient(item);
     }
 
@@ -582,7 +690,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         // Explicitly don't send this item to the client:
         // There's little point in trying to render it
         // seeing as it needs to travel 0 distance.
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
     }
 
     /** Used internally to split up manual insertions from controlled extractions. */
@@ -618,7 +726,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 }
             }
         }
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
         sendItemDataToClient(item);
     }
 
@@ -39,7 +39,10 @@ import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipe.ConnectedType;
 import buildcraft.api.transport.pipe.PipeApi;
 import buildcraft.api.transport.pipe.PipeApi.PowerTransferInfo;
+import buildcraft.api.transport.pipe.PipeEventConnectionChange;
+import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventPower;
+import buildcraft.api.transport.pipe.PipeEventTileState;
 import buildcraft.api.transport.pipe.PipeFlow;
 
 import buildcraft.lib.misc.LocaleUtil;
@@ -48,6 +51,7 @@ import buildcraft.lib.misc.VecUtil;
 import buildcraft.lib.misc.data.AverageInt;
 
 import buildcraft.core.BCCoreConfig;
+import buildcraft.transport.BCTransportConfig;
 
 public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     private static final long DEFAULT_MAX_POWER = MjAPI.MJ * 10;
@@ -66,6 +70,10 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     private boolean isReceiver = false;
     private final EnumMap<EnumFacing, Section> sections;
 
+    /** The network that this is a part of, if {@link BCTransportConfig#powerNetworkSolver} is enabled. */
+    PowerNetwork network;
+    int networkIndex;
+
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate);
     private long[] transferQuery;
 
@@ -190,6 +198,33 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         return super.onFlowActivate(player, trace, hitX, hitY, hitZ, part);
     }
 
+    long getMaxPower() {
+        if (maxPower == -1) {
+            reconfigure();
+        }
+        return maxPower;
+    }
+
+    boolean isReceiver() {
+        return isReceiver;
+    }
+
+    @PipeEventHandler
+    public void onConnectionChange(PipeEventConnectionChange event) {
+        invalidateNetwork();
+    }
+
+    @PipeEventHandler
+    public void onTileStateChange(PipeEventTileState event) {
+        invalidateNetwork();
+    }
+
+    private void invalidateNetwork() {
+        if (network != null) {
+            network.invalidate();
+        }
+    }
+
     public Section getSection(EnumFacing side) {
         return sections.get(side);
     }
@@ -261,6 +296,12 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             lastDisplayPower[i] = s.displayPower;
         }
 
+        if (BCTransportConfig.powerNetworkSolver) {
+            PowerNetwork.getNetwork(this).solve(pipe.getHolder().getPipeWorld().getTotalWorldTime());
+            updateDisplay(lastFlows, lastDisplayPower);
+            return;
+        }
+
         step();
 
         init();
@@ -319,13 +360,6 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
                 }
             }
         }
-        // Render compute goes here
-        for (Section s : sections.values()) {
-            s.powerAverage.tick();
-            double value = s.powerAverage.getAverage() / maxPower;
-            value = Math.sqrt(value);
-            s.displayPower = (int) (value * MjAPI.MJ);
-        }
 
         // Compute the tiles requesting power that are not power pipes
         for (EnumFacing face : EnumFacing.VALUES) {
@@ -368,6 +402,22 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             PipeFlowPower oFlow = (PipeFlowPower) oPipe.getFlow();
             oFlow.requestPower(face.getOpposite(), transferQueryTemp[face.ordinal()]);
         }
+        // if (tracker.markTimeIfDelay(pipe.getHolder().getPipeWorld())) {
+        updateDisplay(lastFlows, lastDisplayPower);
+
+        transferQuery = transferQueryTemp;
+        // }
+    }
+
+    private void updateDisplay(EnumFlow[] lastFlows, int[] lastDisplayPower) {
+        // Render compute goes here
+        for (Section s : sections.values()) {
+            s.powerAverage.tick();
+            double value = s.powerAverage.getAverage() / maxPower;
+            value = Math.sqrt(value);
+            s.displayPower = (int) (value * MjAPI.MJ);
+        }
+
         // Networking
         boolean didChange = false;
         for (EnumFacing face : EnumFacing.VALUES) {
@@ -379,13 +429,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             }
         }
 
-        // if (tracker.markTimeIfDelay(pipe.getHolder().getPipeWorld())) {
         if (didChange) {
             sendPayload(NET_POWER_AMOUNTS);
         }
-
-        transferQuery = transferQueryTemp;
-        // }
     }
 
     private void step() {
@@ -413,6 +459,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     }
 
     public long getPowerRequested(@Nullable EnumFacing side) {
+        if (network != null) {
+            return network.getPowerRequested();
+        }
         long req = 0;
         for (EnumFacing face : EnumFacing.VALUES) {
             if (side == null || face != side) {
@@ -487,6 +536,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         @Override
         public long receivePower(long microJoules, boolean simulate) {
             if (isReceiver) {
+                if (network != null) {
+                    return network.receivePower(PipeFlowPower.this, side, microJoules, simulate);
+                }
                 PipeFlowPower.this.step();
                 if (!simulate) {
                     return this.receivePowerInternal(microJoules);
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+
+import buildcraft.transport.pipe.flow.PipeFlowPower.EnumFlow;
+import buildcraft.transport.pipe.flow.PipeFlowPower.Section;
+
+/** Every kinesis pipe that is connected together, solved as a single flow network once per tick rather than passing
+ * power (and power requests) along one pipe at a time.
+ * <p>
+ * All of the power that enters the network goes into a single buffer, and then every receiver connected to the
+ * network is offered the same fraction of it. Power is sent along a tree of the shortest paths from the pipes that it
+ * can enter at, and no pipe carries more than its transfer rate in a single tick, so (just like the per-pipe mode) a
+ * slow pipe still limits everything that goes through it. */
+final class PowerNetwork {
+    private static final int NO_PIPE = -1;
+    private static final int UNVISITED = -2;
+
+    private final PipeFlowPower[] pipes;
+
+    /** (pipe index * 6 + face ordinal) -> the index of the connected pipe, or {@link #NO_PIPE}. */
+    private final int[] neighbours;
+    private final long[] maxPower;
+
+    /** (pipe index * 6 + face ordinal) -> the receiver connected on that face, for the current tick. */
+    private final IMjReceiver[] receivers;
+    private final long[] requested;
+    private final long[] delivered;
+    private final long[] received;
+
+    private final int[] order;
+    private final int[] parent;
+    /** The face of each pipe that leads to its parent. */
+    private final int[] parentFace;
+    private final long[] throughput;
+    /** The number of pipes in {@link #order}. */
+    private int treeSize;
+    /** The amount of power that each pipe can still carry during the current tick. */
+    private final long[] remaining;
+
+    private final long capacity;
+    private long buffered;
+    private long lastRequested;
+    private long solvedTick = Long.MIN_VALUE;
+    private boolean valid = true;
+
+    private PowerNetwork(PipeFlowPower[] pipes, int[] neighbours) {
+        this.pipes = pipes;
+        this.neighbours = neighbours;
+        int count = pipes.length;
+        maxPower = new long[count];
+        long cap = 0;
+        for (int i = 0; i < count; i++) {
+            maxPower[i] = pipes[i].getMaxPower();
+            cap += maxPower[i];
+        }
+        capacity = cap;
+        receivers = new IMjReceiver[count * 6];
+        requested = new long[count * 6];
+        delivered = new long[count * 6];
+        received = new long[count * 6];
+        order = new int[count];
+        parent = new int[count];
+        parentFace = new int[count];
+        throughput = new long[count];
+        remaining = new long[count];
+    }
+
+    /** @return The network that the given flow is a part of, creating it (and re-creating it for every other pipe
+     *         connected to it) if it's been invalidated. */
+    static PowerNetwork getNetwork(PipeFlowPower start) {
+        PowerNetwork network = start.network;
+        if (network != null && network.valid) {
+            return network;
+        }
+
+        List<PipeFlowPower> found = new ArrayList<>();
+        TObjectIntHashMap<PipeFlowPower> indices = new TObjectIntHashMap<>(16, 0.5f, NO_PIPE);
+        found.add(start);
+        indices.put(start, 0);
+        for (int i = 0; i < found.size(); i++) {
+            for (EnumFacing face : EnumFacing.VALUES) {
+                PipeFlowPower next = getConnectedFlow(found.get(i), face);
+                if (next != null && !indices.containsKey(next)) {
+                    indices.put(next, found.size());
+                    found.add(next);
+                }
+            }
+        }
+
+        PipeFlowPower[] pipes = found.toArray(new PipeFlowPower[0]);
+        int[] neighbours = new int[pipes.length * 6];
+        Arrays.fill(neighbours, NO_PIPE);
+        for (int i = 0; i < pipes.length; i++) {
+            for (EnumFacing face : EnumFacing.VALUES) {
+                PipeFlowPower next = getConnectedFlow(pipes[i], face);
+                if (next != null) {
+                    neighbours[i * 6 + face.ordinal()] = indices.get(next);
+                }
+            }
+        }
+
+        network = new PowerNetwork(pipes, neighbours);
+        for (PipeFlowPower flow : pipes) {
+            if (flow.network != null) {
+                // Merging with (or splitting from) another network: take over its power
+                network.buffered += flow.network.dissolve();
+            }
+            flow.network = network;
+            flow.networkIndex = indices.get(flow);
+            // Any power that was left over from the per-pipe mode
+            for (EnumFacing face : EnumFacing.VALUES) {
+                Section s = flow.getSection(face);
+                network.buffered += s.internalPower + s.internalNextPower;
+                s.internalPower = 0;
+                s.internalNextPower = 0;
+            }
+        }
+        // This can be more than the capacity (if a pipe was removed), in which case no more power will be accepted
+        // until enough has been used
+        return network;
+    }
+
+    private static PipeFlowPower getConnectedFlow(PipeFlowPower flow, EnumFacing face) {
+        IPipe neighbour = flow.pipe.getConnectedPipe(face);
+        if (neighbour != null && neighbour.getFlow() instanceof PipeFlowPower
+            && neighbour.isConnected(face.getOpposite())) {
+            return (PipeFlowPower) neighbour.getFlow();
+        }
+        return null;
+    }
+
+    /** Marks this network as needing to be rebuilt the next time any of its pipes tick. Any power left in it is given
+     * back to the pipes, so that it can be picked up again by whichever network they end up in. */
+    void invalidate() {
+        List<PipeFlowPower> left = new ArrayList<>();
+        for (PipeFlowPower flow : pipes) {
+            if (flow.network == this && !flow.pipe.getHolder().getPipeTile().isInvalid()) {
+                left.add(flow);
+            }
+        }
+        long power = dissolve();
+        if (!left.isEmpty() && power > 0) {
+            // Spread it over every section of every pipe, so that none of them end up with far more than they could
+            // normally hold
+            int sections = left.size() * 6;
+            long each = power / sections;
+            long extra = power % sections;
+            int s = 0;
+            for (PipeFlowPower flow : left) {
+                for (EnumFacing face : EnumFacing.VALUES) {
+                    flow.getSection(face).internalNextPower += each + (s++ < extra ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    /** Removes this network from every pipe in it, without giving back any power.
+     * 
+     * @return The power that was left in this network. */
+    private long dissolve() {
+        if (!valid) {
+            return 0;
+        }
+        valid = false;
+        for (PipeFlowPower flow : pipes) {
+            if (flow.network == this) {
+                flow.network = null;
+            }
+        }
+        long power = buffered;
+        buffered = 0;
+        return power;
+    }
+
+    long receivePower(PipeFlowPower flow, EnumFacing from, long microJoules, boolean simulate) {
+        // Each pipe can only take in as much as it could carry in a single tick
+        long pipeReceived = 0;
+        for (int f = 0; f < 6; f++) {
+            pipeReceived += received[flow.networkIndex * 6 + f];
+        }
+        long space = Math.min(capacity - buffered, maxPower[flow.networkIndex] - pipeReceived);
+        long accepted = Math.max(0, Math.min(microJoules, space));
+        if (!simulate && accepted > 0) {
+            buffered += accepted;
+            flow.getSection(from).debugPowerOffered += accepted;
+            received[flow.networkIndex * 6 + from.ordinal()] += accepted;
+        }
+        return microJoules - accepted;
+    }
+
+    long getPowerRequested() {
+        return Math.max(0, lastRequested - buffered);
+    }
+
+    /** Moves power to every receiver in the network, if that hasn't already happened during the given tick. */
+    void solve(long worldTime) {
+        if (solvedTick == worldTime) {
+            return;
+        }
+        solvedTick = worldTime;
+        int count = pipes.length;
+
+        // Gather demand
+        long totalRequested = 0;
+        for (int i = 0; i < count; i++) {
+            PipeFlowPower flow = pipes[i];
+            IPipe pipe = flow.pipe;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                int index = i * 6 + face.ordinal();
+                receivers[index] = null;
+                requested[index] = 0;
+                delivered[index] = 0;
+                if (pipe.getConnectedType(face) != ConnectedType.TILE) {
+                    continue;
+                }
+                IMjReceiver recv = pipe.getHolder().getCapabilityFromPipe(face, MjAPI.CAP_RECEIVER);
+                if (recv == null || !recv.canReceive()) {
+                    continue;
+                }
+                long req = recv.getPowerRequested();
+                if (pipe.getBehaviour() instanceof IPipeTransportPowerHook) {
+                    req = ((IPipeTransportPowerHook) pipe.getBehaviour()).requestPower(face, req);
+                }
+                if (req > 0) {
+                    receivers[index] = recv;
+                    requested[index] = req;
+                    totalRequested += req;
+                }
+            }
+        }
+        lastRequested = totalRequested;
+
+        buildTree();
+        System.arraycopy(maxPower, 0, remaining, 0, count);
+
+        // Supply every receiver with the same fraction of its request, as long as every pipe on the way to it can
+        // still carry that much
+        if (totalRequested > 0 && buffered > 0) {
+            double fraction = Math.min(1, buffered / (double) totalRequested);
+            for (int i = 0; i < count && buffered > 0; i++) {
+                for (int f = 0; f < 6 && buffered > 0; f++) {
+                    int index = i * 6 + f;
+                    if (requested[index] <= 0) {
+                        continue;
+                    }
+                    long share = (long) (requested[index] * fraction);
+                    share = Math.min(share, Math.min(getPathRemaining(i), buffered));
+                    if (share <= 0) {
+                        continue;
+                    }
+                    long used = share - receivers[index].receivePower(share, false);
+                    delivered[index] = used;
+                    buffered -= used;
+                    for (int p = i; p >= 0; p = parent[p]) {
+                        remaining[p] -= used;
+                    }
+                }
+            }
+        }
+
+        updateDisplay();
+        Arrays.fill(received, 0);
+    }
+
+    /** @return The least amount of power that any pipe between the given pipe and the root of its tree can still carry
+     *         this tick. */
+    private long getPathRemaining(int pipe) {
+        long min = Long.MAX_VALUE;
+        for (int p = pipe; p >= 0; p = parent[p]) {
+            min = Math.min(min, remaining[p]);
+        }
+        return Math.max(0, min);
+    }
+
+    /** Works out the shortest path from the pipes that power can enter the network at (or pipe 0, if there aren't
+     * any) to every other pipe, as {@link #parent} and {@link #parentFace}. {@link #order} holds every pipe in the
+     * order that it was reached. */
+    private void buildTree() {
+        int count = pipes.length;
+        int head = 0, tail = 0;
+        Arrays.fill(parent, UNVISITED);
+        // Pipes that power actually entered at this tick go first, so that the display follows where it came from
+        for (int i = 0; i < count; i++) {
+            for (int f = 0; f < 6; f++) {
+                if (received[i * 6 + f] > 0) {
+                    order[tail++] = i;
+                    parent[i] = NO_PIPE;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (parent[i] == UNVISITED && pipes[i].isReceiver()) {
+                order[tail++] = i;
+                parent[i] = NO_PIPE;
+            }
+        }
+        if (tail == 0) {
+            order[tail++] = 0;
+            parent[0] = NO_PIPE;
+        }
+        while (head < tail) {
+            int i = order[head++];
+            for (int f = 0; f < 6; f++) {
+                int next = neighbours[i * 6 + f];
+                if (next != NO_PIPE && parent[next] == UNVISITED) {
+                    parent[next] = i;
+                    parentFace[next] = f ^ 1;
+                    order[tail++] = next;
+                }
+            }
+        }
+        treeSize = tail;
+    }
+
+    /** Pushes the amounts moved along the tree from {@link #buildTree()} into each section. */
+    private void updateDisplay() {
+        // Leaves first, so that every pipe adds everything that went through it to its parent
+        for (int o = treeSize - 1; o >= 0; o--) {
+            int i = order[o];
+            long total = throughput[i];
+            for (int f = 0; f < 6; f++) {
+                total += delivered[i * 6 + f];
+            }
+            throughput[i] = 0;
+            PipeFlowPower flow = pipes[i];
+            // As in the per-pipe mode, power enters a pipe through an OUT section and leaves through an IN section
+            for (int f = 0; f < 6; f++) {
+                int index = i * 6 + f;
+                if (delivered[index] > 0) {
+                    push(flow.getSection(EnumFacing.VALUES[f]), delivered[index], EnumFlow.IN);
+                }
+                if (received[index] > 0) {
+                    push(flow.getSection(EnumFacing.VALUES[f]), received[index], EnumFlow.OUT);
+                }
+            }
+            int p = parent[i];
+            if (p >= 0 && total > 0) {
+                throughput[p] += total;
+                int face = parentFace[i];
+                push(flow.getSection(EnumFacing.VALUES[face]), total, EnumFlow.OUT);
+                push(pipes[p].getSection(EnumFacing.VALUES[face ^ 1]), total, EnumFlow.IN);
+            }
+        }
+    }
+
+    private static void push(Section section, long power, EnumFlow flow) {
+        section.powerAverage.push((int) power);
+        section.displayFlow = flow;
+        if (flow == EnumFlow.IN) {
+            section.debugPowerOutput += power;
+        } else {
+            section.debugPowerInput += power;
+        }
+    }
+}
@@ -20,12 +20,14 @@ import buildcraft.api.transport.IWireManager;
 import buildcraft.lib.client.sprite.SpriteHolderRegistry.SpriteHolder;
 import buildcraft.lib.misc.ColourUtil;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.statement.EnumTriggerSource;
+import buildcraft.lib.statement.ITriggerChangeSource;
 
 import buildcraft.core.statements.BCStatement;
 import buildcraft.transport.BCTransportSprites;
 import buildcraft.transport.BCTransportStatements;
 
-public class TriggerPipeSignal extends BCStatement implements ITriggerInternal {
+public class TriggerPipeSignal extends BCStatement implements ITriggerInternal, ITriggerChangeSource {
 
     private final boolean active;
     private final EnumDyeColor colour;
@@ -92,6 +94,11 @@ public class TriggerPipeSignal extends BCStatement implements ITriggerInternal {
         return true;
     }
 
+    @Override
+    public boolean dependsOn(EnumTriggerSource source) {
+        return source == EnumTriggerSource.WIRE;
+    }
+
     @Override
     public IStatementParameter createParameter(int index) {
         return TriggerParameterSignal.EMPTY;
@@ -17,9 +17,12 @@ import java.util.Set;
 
 import javax.annotation.Nonnull;
 
+import io.netty.buffer.Unpooled;
+
 import net.minecraft.block.Block;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
@@ -52,11 +55,14 @@ import buildcraft.api.transport.pluggable.PipePluggable;
 
 import buildcraft.lib.misc.AdvancementUtil;
 import buildcraft.lib.misc.data.IdAllocator;
+import buildcraft.lib.net.IPayloadWriter;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 
 import buildcraft.silicon.plug.FilterEventHandler;
 import buildcraft.transport.BCTransportBlocks;
+import buildcraft.transport.net.PipeUpdateMessageQueue;
+import buildcraft.transport.pipe.IPipeChangeTracked;
 import buildcraft.transport.pipe.Pipe;
 import buildcraft.transport.pipe.PipeEventBus;
 import buildcraft.transport.pipe.PluggableHolder;
@@ -113,6 +119,13 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     private final Set<PipeMessageReceiver> networkUpdates = EnumSet.noneOf(PipeMessageReceiver.class);
     private final Set<PipeMessageReceiver> networkGuiUpdates = EnumSet.noneOf(PipeMessageReceiver.class);
     private NBTTagCompound unknownData;
+    /** True if something that needs saving has changed in this tick, and it was signalled through this holder rather
+     * than an {@link IPipeChangeTracked} version. */
+    private boolean changedThisTick = true;
+    private int lastChangeVersion = 0;
+    /** Incremented every time a neighbouring block or tile entity changes, so that gates can tell when the inputs to
+     * their triggers might have changed. */
+    private int neighbourChanges = 0;
 
     public TilePipeHolder() {
         for (EnumFacing side : EnumFacing.VALUES) {
@@ -197,6 +210,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             }
         }
         scheduleRenderUpdate();
+        changedThisTick = true;
 
         if (!world.isRemote && hasOwner()) {
             AdvancementUtil.unlockAdvancement(getOwner().getId(), ADVANCEMENT_PLACE_PIPE);
@@ -238,11 +252,22 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
         if (world.isRemote) {
             return;
         }
+        neighbourChanges++;
         if (pipe != null) {
             pipe.markForUpdate();
         }
     }
 
+    /** Called when the contents of a neighbouring tile entity changes, such as an inventory calling markDirty. */
+    public void onNeighbourTileChanged() {
+        neighbourChanges++;
+    }
+
+    /** @return A number that changes every time a neighbouring block or tile entity changes. */
+    public int getNeighbourChangeCount() {
+        return neighbourChanges;
+    }
+
     // ITickable
 
     @Override
@@ -258,28 +283,25 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
         // Send network updates
         if (networkUpdates.size() > 0) {
-            // TODO: Multi-update messages! (multiple updates sent in a single message)
-            Set<PipeMessageReceiver> parts = EnumSet.copyOf(networkUpdates);
-            for (PipeMessageReceiver part : parts) {
-                sendNetworkUpdate(getReceiverId(part));
-            }
+            sendPartUpdates(networkUpdates, false);
         }
         // No need to send gui updates to specific players if we just sent off messages to all players.
         networkGuiUpdates.removeAll(networkUpdates);
         networkUpdates.clear();
 
         if (networkGuiUpdates.size() > 0) {
-            // TODO: Multi-update messages! (multiple updates sent in a single message)
-            Set<PipeMessageReceiver> parts = EnumSet.copyOf(networkGuiUpdates);
-            for (PipeMessageReceiver part : parts) {
-                sendNetworkGuiUpdate(getReceiverId(part));
-            }
+            sendPartUpdates(networkGuiUpdates, true);
         }
         networkGuiUpdates.clear();
 
         if (scheduleRenderUpdate) {
             scheduleRenderUpdate = false;
-            redrawBlock();
+            if (world.isRemote) {
+                redrawBlock();
+            } else {
+                // Queued with the rest of our updates so that the client redraws after receiving them
+                sendPipeMessage(NET_REDRAW, buffer -> {}, false);
+            }
         }
 
         wireManager.tick();
@@ -294,15 +316,86 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
                 }
             }
             oldRedstoneValues = redstoneValues;
+            changedThisTick = true;
+        }
+
+        /* Everything that changes how we are saved either sends a network update through us (which sets
+         * changedThisTick) or is tracked by an IPipeChangeTracked version, so only mark the chunk as dirty when one of
+         * those happened rather than on every tick. */
+        int changeVersion = getChangeVersion();
+        if (changedThisTick || changeVersion != lastChangeVersion) {
+            changedThisTick = false;
+            lastChangeVersion = changeVersion;
+            if (!world.isRemote) {
+                markChunkDirty();
+            }
         }
+    }
 
-        /* It's difficult to check to see if we actually have changed at all. So let's just always mark the chunk as
-         * dirty instead of making every component do it indervidually. */
-        markChunkDirty();
+    private int getChangeVersion() {
+        int version = pipe == null ? 0 : pipe.getChangeVersion();
+        for (EnumFacing face : EnumFacing.VALUES) {
+            PipePluggable plug = pluggables.get(face).pluggable;
+            if (plug instanceof IPipeChangeTracked) {
+                version += ((IPipeChangeTracked) plug).getChangeVersion();
+            }
+        }
+        return version;
     }
 
     // Network
 
+    /** Sends every one of the given parts in a single message, rather than one message for each part. */
+    private void sendPartUpdates(Set<PipeMessageReceiver> parts, boolean gui) {
+        final Side side = world.isRemote ? Side.CLIENT : Side.SERVER;
+        if (parts.size() == 1) {
+            int id = getReceiverId(parts.iterator().next());
+            sendPipeMessage(id, buffer -> writePayload(id, buffer, side), gui);
+            return;
+        }
+        sendPipeMessage(NET_UPDATE_MULTI, buffer -> {
+            int total = 0;
+            for (PipeMessageReceiver type : parts) {
+                total |= 1 << type.ordinal();
+            }
+            buffer.writeShort(total);
+            for (PipeMessageReceiver type : PipeMessageReceiver.VALUES) {
+                if (parts.contains(type)) {
+                    writePayload(getReceiverId(type), buffer, side);
+                }
+            }
+        }, gui);
+    }
+
+    /** Sends a message from this pipe. On the server this is added to the {@link PipeUpdateMessageQueue} (so every
+     * pipe update a player receives in a tick arrives in a single packet), which all pipe messages must go through to
+     * arrive in the order that they were sent. */
+    private void sendPipeMessage(int id, IPayloadWriter writer, boolean gui) {
+        if (!hasWorld()) {
+            return;
+        }
+        if (world.isRemote) {
+            if (gui) {
+                createAndSendGuiMessage(id, writer);
+            } else {
+                createAndSendMessage(id, writer);
+            }
+            return;
+        }
+        PacketBufferBC payload = new PacketBufferBC(Unpooled.buffer());
+        payload.writeShort(id);
+        writer.write(payload);
+        if (gui) {
+            for (EntityPlayer player : getUsingPlayers()) {
+                if (player instanceof EntityPlayerMP) {
+                    PipeUpdateMessageQueue.append((EntityPlayerMP) player, pos, payload);
+                }
+            }
+        } else {
+            PipeUpdateMessageQueue.appendToWatching(world, pos, payload);
+        }
+    }
+
     @Override
     public void writePayload(int id, PacketBufferBC buffer, Side side) {
         super.writePayload(id, buffer, side);
@@ -366,7 +459,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
                 }
                 wireManager.readPayload(buffer, side, ctx);
             } else if (id == NET_UPDATE_MULTI) {
-                int total = buffer.readUnsignedByte();
+                int total = buffer.readUnsignedShort();
                 for (PipeMessageReceiver type : PipeMessageReceiver.VALUES) {
                     if (((total >> type.ordinal()) & 1) == 1) {
                         readPayload(getReceiverId(type), buffer, side, ctx);
@@ -436,6 +529,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
     public PipePluggable replacePluggable(EnumFacing side, PipePluggable with) {
         redstoneValues = new int[6];
+        changedThisTick = true;
         PluggableHolder holder = pluggables.get(side);
         PipePluggable old = holder.pluggable;
         holder.pluggable = with;
@@ -494,22 +588,26 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
     @Override
     public void scheduleNetworkUpdate(PipeMessageReceiver... parts) {
+        changedThisTick = true;
         Collections.addAll(networkUpdates, parts);
     }
 
     @Override
     public void scheduleNetworkGuiUpdate(PipeMessageReceiver... parts) {
+        changedThisTick = true;
         Collections.addAll(networkGuiUpdates, parts);
     }
 
     @Override
     public void sendMessage(PipeMessageReceiver to, IWriter writer) {
-        createAndSendMessage(getReceiverId(to), writer::write);
+        changedThisTick = true;
+        sendPipeMessage(getReceiverId(to), writer::write, false);
     }
 
     @Override
     public void sendGuiMessage(PipeMessageReceiver to, IWriter writer) {
-        createAndSendGuiMessage(getReceiverId(to), writer::write);
+        changedThisTick = true;
+        sendPipeMessage(getReceiverId(to), writer::write, true);
     }
 
     @Override
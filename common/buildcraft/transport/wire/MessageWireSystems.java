@@ -20,18 +20,23 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
 public class MessageWireSystems implements IMessage {
     private Map<Integer, WireSystem> wireSystems = new HashMap<>();
+    /** If true then these are all of the wire systems the player can see, otherwise they should be added to the ones
+     * the client already knows about. */
+    private boolean replaceAll;
 
     @SuppressWarnings("unused")
     public MessageWireSystems() {
     }
 
-    public MessageWireSystems(Map<Integer, WireSystem> wireSystems) {
+    public MessageWireSystems(Map<Integer, WireSystem> wireSystems, boolean replaceAll) {
         this.wireSystems = wireSystems;
+        this.replaceAll = replaceAll;
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
+        pb.writeBoolean(replaceAll);
         pb.writeInt(wireSystems.size());
         wireSystems.forEach((wiresHashCode, wireSystem) -> {
             pb.writeInt(wiresHashCode);
@@ -47,20 +52,23 @@ public class MessageWireSystems implements IMessage {
     public void fromBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
         wireSystems.clear();
+        replaceAll = pb.readBoolean();
         int count = pb.readInt();
         for (int i = 0; i < count; i++) {
             WireSystem wireSystem = new WireSystem();
             int wiresHashCode = pb.readInt();
             int localCount = pb.readInt();
             for (int j = 0; j < localCount; j++) {
-                wireSystem.elements.add(new WireSystem.WireElement(pb));
+                wireSystem.addElement(new WireSystem.WireElement(pb));
             }
             wireSystems.put(wiresHashCode, wireSystem);
         }
     }
 
     public static final IMessageHandler<MessageWireSystems, IMessage> HANDLER = (message, ctx) -> {
-        ClientWireSystems.INSTANCE.wireSystems.clear();
+        if (message.replaceAll) {
+            ClientWireSystems.INSTANCE.wireSystems.clear();
+        }
         ClientWireSystems.INSTANCE.wireSystems.putAll(message.wireSystems);
         return null;
     };
@@ -8,12 +8,14 @@ package buildcraft.transport.wire;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
@@ -81,7 +83,7 @@ public class WireManager implements IWireManager {
         if (getColorOfPart(part) == null) {
             parts.put(part, colour);
             if (!holder.getPipeWorld().isRemote) {
-                getWireSystems().buildAndAddWireSystem(new WireSystem.WireElement(holder.getPipePos(), part));
+                getWireSystems().addWireElement(holder, new WireSystem.WireElement(holder.getPipePos(), part));
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -100,9 +102,7 @@ public class WireManager implements IWireManager {
             parts.remove(part);
             if (!holder.getPipeWorld().isRemote) {
                 WireSystem.WireElement element = new WireSystem.WireElement(holder.getPipePos(), part);
-                WireSystem.getConnectedElementsOfElement(holder, element)
-                    .forEach(getWireSystems()::buildAndAddWireSystem);
-                getWireSystems().getWireSystemsWithElement(element).forEach(getWireSystems()::removeWireSystem);
+                getWireSystems().removeWireElements(holder, Collections.singletonList(element));
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -119,12 +119,9 @@ public class WireManager implements IWireManager {
     }
 
     private void removePartsFromSystem(Collection<EnumWirePart> toRemove) {
-        toRemove.stream().map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-            .flatMap(element -> WireSystem.getConnectedElementsOfElement(holder, element).stream()).distinct()
-            .forEach(getWireSystems()::buildAndAddWireSystem);
-        toRemove.stream().map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-            .flatMap(element -> getWireSystems().getWireSystemsWithElement(element).stream())
-            .forEach(getWireSystems()::removeWireSystem);
+        getWireSystems().removeWireElements(holder, toRemove.stream()
+            .map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
+            .collect(Collectors.toList()));
         holder.getPipeTile().markDirty();
     }
 
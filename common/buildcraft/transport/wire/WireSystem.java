@@ -49,10 +49,28 @@ import buildcraft.lib.misc.NBTUtilBC;
 
 public class WireSystem {
     public final List<WireElement> elements = new ArrayList<>();
+    /** Mirrors {@link #elements}, so that {@link #hasElement(WireElement)} doesn't have to scan the whole list. */
+    private final Set<WireElement> elementSet = new HashSet<>();
     public EnumDyeColor color = null;
+    /** Cached from {@link #elements}, and cleared whenever they change. */
+    private Set<ChunkPos> chunkPoses = null;
+    private Integer wiresHashCode = null;
 
     public boolean hasElement(WireElement element) {
-        return elements.contains(element);
+        return elementSet.contains(element);
+    }
+
+    /** Adds the given element to this system, if it isn't already in it.
+     *
+     * @return True if the element was added, false if this system already contained it. */
+    public boolean addElement(WireElement element) {
+        if (elementSet.add(element)) {
+            elements.add(element);
+            chunkPoses = null;
+            wiresHashCode = null;
+            return true;
+        }
+        return false;
     }
 
     /** Checks to see if the given holder could connect a wire across the specified side even if a matching wire wasn't
@@ -132,13 +150,13 @@ public class WireSystem {
                         }
                         if (color != null && colorOfPart == color) {
                             wireSystems.getWireSystemsWithElement(element).stream().filter(wireSystem -> wireSystem != this && wireSystem.color == this.color).forEach(wireSystems::removeWireSystem);
-                            elements.add(element);
+                            addElement(element);
                             queue.addAll(getConnectedElementsOfElement(wireSystems.world, element));
                             Arrays.stream(EnumFacing.VALUES).forEach(side -> queue.add(new WireElement(element.blockPos, side)));
                         }
                     } else if (element.type == WireElement.Type.EMITTER_SIDE) {
                         if (holder.getPluggable(element.emitterSide) instanceof IWireEmitter) {
-                            elements.add(new WireElement(element.blockPos, element.emitterSide));
+                            addElement(new WireElement(element.blockPos, element.emitterSide));
                         }
                     }
                 }
@@ -161,8 +179,12 @@ public class WireSystem {
             false);
     }
 
-    public List<ChunkPos> getChunkPoses() {
-        return elements.stream().map(element -> element.blockPos).map(ChunkPos::new).collect(Collectors.toList());
+    public Set<ChunkPos> getChunkPoses() {
+        if (chunkPoses == null) {
+            chunkPoses = elements.stream().map(element -> element.blockPos).map(ChunkPos::new)
+                .collect(Collectors.toSet());
+        }
+        return chunkPoses;
     }
 
     public boolean isPlayerWatching(EntityPlayerMP player) {
@@ -175,7 +197,10 @@ public class WireSystem {
     }
 
     public int getWiresHashCode() {
-        return elements.stream().filter(element -> element.type == WireElement.Type.WIRE_PART).collect(Collectors.toList()).hashCode();
+        if (wiresHashCode == null) {
+            wiresHashCode = elements.stream().filter(element -> element.type == WireElement.Type.WIRE_PART).collect(Collectors.toList()).hashCode();
+        }
+        return wiresHashCode;
     }
 
     public NBTTagCompound writeToNBT() {
@@ -189,8 +214,11 @@ public class WireSystem {
 
     public WireSystem readFromNBT(NBTTagCompound nbt) {
         elements.clear();
+        elementSet.clear();
+        chunkPoses = null;
+        wiresHashCode = null;
         NBTTagList elementsList = nbt.getTagList("elements", Constants.NBT.TAG_COMPOUND);
-        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(elements::add);
+        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(this::addElement);
         color = EnumDyeColor.byMetadata(nbt.getInteger("color"));
         return this;
     }
@@ -8,22 +8,30 @@ package buildcraft.transport.wire;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import com.google.common.base.Predicates;
-
-import org.apache.commons.lang3.tuple.Pair;
+import javax.annotation.Nullable;
 
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
+import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
 import net.minecraft.world.storage.MapStorage;
 import net.minecraft.world.storage.WorldSavedData;
 
@@ -43,9 +51,18 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     public final Map<WireSystem, Boolean> wireSystems = new HashMap<>();
     public boolean gatesChanged = true;
     public boolean structureChanged = true;
-    public final List<WireSystem> changedSystems = new ArrayList<>();
-    public final List<EntityPlayerMP> changedPlayers = new ArrayList<>();
+    public final Set<WireSystem> changedSystems = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Incremented whenever any wire system changes (either its structure or if it's powered), so that gates can tell
+     * when they need to look at their wires again. */
+    private int poweredVersion = 0;
+    /** The chunks each player has started watching since the last tick. */
+    private final Map<EntityPlayerMP, Set<ChunkPos>> watchedChunks = new HashMap<>();
     public final Map<WireSystem.WireElement, IWireEmitter> emittersCache = new HashMap<>();
+    /** Every element in {@link #wireSystems}, mapped to the systems that contain it. Wire parts are only ever in a
+     * single system, but emitters can be shared between systems of different colours. */
+    private final Map<WireSystem.WireElement, List<WireSystem>> elementIndex = new HashMap<>();
+    /** Every chunk that contains part of a wire system, rebuilt whenever the structure changes. */
+    private final Map<ChunkPos, List<WireSystem>> chunkIndex = new HashMap<>();
 
     public WorldSavedDataWireSystems() {
         super(DATA_NAME);
@@ -59,31 +76,163 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
         structureChanged = true;
         gatesChanged = true;
         emittersCache.clear();
+        poweredVersion++;
+    }
+
+    /** @return A number that changes every time a wire system in this world changes. */
+    public int getPoweredVersion() {
+        return poweredVersion;
     }
 
     public List<WireSystem> getWireSystemsWithElement(WireSystem.WireElement element) {
-        return wireSystems.keySet().stream().filter(wireSystem -> wireSystem.hasElement(element)).collect(Collectors.toList());
+        List<WireSystem> systems = elementIndex.get(element);
+        return systems == null ? Collections.emptyList() : new ArrayList<>(systems);
+    }
+
+    private void addWireSystem(WireSystem wireSystem, boolean powered) {
+        wireSystems.put(wireSystem, powered);
+        for (WireSystem.WireElement element : wireSystem.elements) {
+            indexElement(element, wireSystem);
+        }
+    }
+
+    private void indexElement(WireSystem.WireElement element, WireSystem wireSystem) {
+        List<WireSystem> systems = elementIndex.computeIfAbsent(element, k -> new ArrayList<>(1));
+        for (WireSystem system : systems) {
+            if (system == wireSystem) {
+                return;
+            }
+        }
+        systems.add(wireSystem);
+    }
+
+    private void unindexWireSystem(WireSystem wireSystem) {
+        for (WireSystem.WireElement element : wireSystem.elements) {
+            List<WireSystem> systems = elementIndex.get(element);
+            if (systems != null) {
+                systems.removeIf(system -> system == wireSystem);
+                if (systems.isEmpty()) {
+                    elementIndex.remove(element);
+                }
+            }
+        }
     }
 
     public void removeWireSystem(WireSystem wireSystem) {
         wireSystems.remove(wireSystem);
+        unindexWireSystem(wireSystem);
         markStructureChanged();
     }
 
     public void buildAndAddWireSystem(WireSystem.WireElement element) {
+        buildAndAddWireSystem0(element);
+    }
+
+    @Nullable
+    private WireSystem buildAndAddWireSystem0(WireSystem.WireElement element) {
         WireSystem wireSystem = new WireSystem().build(this, element);
-        if(!wireSystem.isEmpty()) {
-            wireSystems.put(wireSystem, false);
+        markStructureChanged();
+        if (!wireSystem.isEmpty()) {
+            addWireSystem(wireSystem, false);
             wireSystems.put(wireSystem, wireSystem.update(this));
+            return wireSystem;
+        }
+        return null;
+    }
+
+    /** Builds the wire systems containing each of the given elements, but only walks each system once even if
+     * several of the elements end up in the same one. */
+    private void buildAndAddWireSystems(Collection<WireSystem.WireElement> elements) {
+        List<WireSystem> built = new ArrayList<>();
+        elementLoop:
+        for (WireSystem.WireElement element : elements) {
+            for (WireSystem wireSystem : built) {
+                if (wireSystem.hasElement(element)) {
+                    continue elementLoop;
+                }
+            }
+            WireSystem wireSystem = buildAndAddWireSystem0(element);
+            if (wireSystem != null) {
+                built.add(wireSystem);
+            }
+        }
+    }
+
+    /** Adds a single newly placed wire part. Rather than flood filling the whole network again this joins the part
+     * onto the neighbouring system of the same colour, merging them together if it connects more than one. */
+    public void addWireElement(IPipeHolder holder, WireSystem.WireElement element) {
+        EnumDyeColor color = holder.getWireManager().getColorOfPart(element.wirePart);
+        if (color == null) {
+            return;
+        }
+        List<WireSystem> neighbours = new ArrayList<>();
+        WireSystem target = null;
+        for (WireSystem.WireElement connected : WireSystem.getConnectedElementsOfElement(holder, element)) {
+            List<WireSystem> systems = elementIndex.get(connected);
+            if (systems == null) {
+                continue;
+            }
+            for (WireSystem system : systems) {
+                if (system.color == color && !neighbours.contains(system)) {
+                    neighbours.add(system);
+                    if (target == null || system.elements.size() > target.elements.size()) {
+                        target = system;
+                    }
+                }
+            }
+        }
+        if (target == null) {
+            buildAndAddWireSystem(element);
+            return;
+        }
+        // The systems are keyed by their contents, so they have to come out of the map before they change
+        wireSystems.remove(target);
+        for (WireSystem other : neighbours) {
+            if (other != target) {
+                wireSystems.remove(other);
+                unindexWireSystem(other);
+                for (WireSystem.WireElement otherElement : other.elements) {
+                    if (target.addElement(otherElement)) {
+                        indexElement(otherElement, target);
+                    }
+                }
+            }
+        }
+        if (target.addElement(element)) {
+            indexElement(element, target);
+        }
+        for (EnumFacing side : EnumFacing.VALUES) {
+            if (holder.getPluggable(side) instanceof IWireEmitter) {
+                WireSystem.WireElement emitter = new WireSystem.WireElement(element.blockPos, side);
+                if (target.addElement(emitter)) {
+                    indexElement(emitter, target);
+                }
+            }
         }
         markStructureChanged();
+        wireSystems.put(target, target.update(this));
+    }
+
+    /** Removes the given (already removed from the world) wire parts from their systems, rebuilding whatever is left
+     * on either side of them. */
+    public void removeWireElements(IPipeHolder holder, Collection<WireSystem.WireElement> elements) {
+        Set<WireSystem.WireElement> neighbours = new LinkedHashSet<>();
+        for (WireSystem.WireElement element : elements) {
+            neighbours.addAll(WireSystem.getConnectedElementsOfElement(holder, element));
+        }
+        buildAndAddWireSystems(neighbours);
+        for (WireSystem.WireElement element : elements) {
+            getWireSystemsWithElement(element).forEach(this::removeWireSystem);
+        }
     }
 
     public void rebuildWireSystemsAround(IPipeHolder holder) {
-        Arrays.stream(EnumWirePart.values())
+        buildAndAddWireSystems(
+            Arrays.stream(EnumWirePart.values())
                 .flatMap(part -> WireSystem.getConnectedElementsOfElement(world, new WireSystem.WireElement(holder.getPipePos(), part)).stream())
                 .distinct()
-                .forEach(this::buildAndAddWireSystem);
+                .collect(Collectors.toList())
+        );
     }
 
     public IWireEmitter getEmitter(WireSystem.WireElement element) {
@@ -123,30 +272,100 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
         return false;
     }
 
+    /** Called whenever a chunk is sent to a player, so that they can be sent the wire systems inside it. */
+    public void onChunkWatch(EntityPlayerMP player, ChunkPos chunkPos) {
+        watchedChunks.computeIfAbsent(player, p -> new HashSet<>()).add(chunkPos);
+    }
+
+    private void rebuildChunkIndex() {
+        chunkIndex.clear();
+        for (WireSystem wireSystem : wireSystems.keySet()) {
+            for (ChunkPos chunkPos : wireSystem.getChunkPoses()) {
+                chunkIndex.computeIfAbsent(chunkPos, c -> new ArrayList<>()).add(wireSystem);
+            }
+        }
+    }
+
+    private void forEachPlayerWatching(ChunkPos chunkPos, Consumer<EntityPlayerMP> action) {
+        PlayerChunkMapEntry entry = ((WorldServer) world).getPlayerChunkMap().getEntry(chunkPos.x, chunkPos.z);
+        if (entry == null) {
+            // No-one was watching this chunk.
+            return;
+        }
+        // Slightly ugly hack to iterate through all players watching the chunk
+        entry.hasPlayerMatchingInRange(0, player -> {
+            action.accept(player);
+            // Always return false so that the iteration doesn't stop early
+            return false;
+        });
+    }
+
+    private void addToSync(EntityPlayerMP player, List<WireSystem> systems,
+        Map<EntityPlayerMP, Map<Integer, WireSystem>> playerWires,
+        Map<EntityPlayerMP, Map<Integer, Boolean>> playerPowered) {
+        Map<Integer, WireSystem> wires = playerWires.computeIfAbsent(player, p -> new HashMap<>());
+        Map<Integer, Boolean> powered = playerPowered.computeIfAbsent(player, p -> new HashMap<>());
+        for (WireSystem wireSystem : systems) {
+            wires.put(wireSystem.getWiresHashCode(), wireSystem);
+            powered.put(wireSystem.getWiresHashCode(), wireSystems.get(wireSystem));
+        }
+    }
+
     public void tick() {
         if(gatesChanged) {
-            wireSystems.keySet().stream()
-                    .filter(wireSystem -> {
-                        boolean newPowered = wireSystem.update(this);
-                        return wireSystems.put(wireSystem, newPowered) != newPowered;
-                    })
-                    .forEach(changedSystems::add);
-        }
-        world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()).forEach(player -> {
-            Map<Integer, WireSystem> changedWires = this.wireSystems.keySet().stream()
-                    .filter(wireSystem -> wireSystem.isPlayerWatching(player) && (structureChanged || changedPlayers.contains(player)))
-                    .collect(Collectors.toMap(WireSystem::getWiresHashCode, Function.identity()));
-            if(!changedWires.isEmpty()) {
-                MessageManager.sendTo(new MessageWireSystems(changedWires), player);
+            gatesChanged = false;
+            for (Map.Entry<WireSystem, Boolean> entry : wireSystems.entrySet()) {
+                boolean newPowered = entry.getKey().update(this);
+                if (entry.getValue() != newPowered) {
+                    entry.setValue(newPowered);
+                    changedSystems.add(entry.getKey());
+                    poweredVersion++;
+                }
             }
-            Map<Integer, Boolean> hashesPowered = this.wireSystems.entrySet().stream()
-                    .filter(systemPower ->
-                            systemPower.getKey().isPlayerWatching(player) &&
-                                    (structureChanged || changedSystems.contains(systemPower.getKey()) || changedPlayers.contains(player))
-                    )
-                    .map(systemPowered -> Pair.of(systemPowered.getKey().getWiresHashCode(), systemPowered.getValue()))
-                    .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
-            if(!hashesPowered.isEmpty()) {
+        }
+        if (!structureChanged && changedSystems.isEmpty() && watchedChunks.isEmpty()) {
+            // Nothing to send
+            return;
+        }
+        Map<EntityPlayerMP, Map<Integer, WireSystem>> playerWires = new HashMap<>();
+        Map<EntityPlayerMP, Map<Integer, Boolean>> playerPowered = new HashMap<>();
+        if (structureChanged) {
+            rebuildChunkIndex();
+            // Any of the hashes could have changed, so everyone gets everything they can see again
+            chunkIndex.forEach((chunkPos, systems) ->
+                forEachPlayerWatching(chunkPos, player -> addToSync(player, systems, playerWires, playerPowered))
+            );
+        } else {
+            watchedChunks.forEach((player, chunks) -> {
+                for (ChunkPos chunkPos : chunks) {
+                    List<WireSystem> systems = chunkIndex.get(chunkPos);
+                    if (systems != null) {
+                        addToSync(player, systems, playerWires, playerPowered);
+                    }
+                }
+            });
+            for (WireSystem wireSystem : changedSystems) {
+                Boolean powered = wireSystems.get(wireSystem);
+                if (powered == null) {
+                    continue;
+                }
+                int hash = wireSystem.getWiresHashCode();
+                for (ChunkPos chunkPos : wireSystem.getChunkPoses()) {
+                    forEachPlayerWatching(chunkPos, player ->
+                        playerPowered.computeIfAbsent(player, p -> new HashMap<>()).put(hash, powered)
+                    );
+                }
+            }
+        }
+        // The wires must arrive before their power states
+        boolean replaceAll = structureChanged;
+        playerWires.forEach((player, wires) -> {
+            if (!wires.isEmpty()) {
+                MessageManager.sendTo(new MessageWireSystems(wires, replaceAll), player);
+            }
+        });
+        playerPowered.forEach((player, hashesPowered) -> {
+            if (!hashesPowered.isEmpty()) {
                 MessageManager.sendTo(new MessageWireSystemsPowered(hashesPowered), player);
             }
         });
@@ -155,7 +374,7 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
         }
         structureChanged = false;
         changedSystems.clear();
-        changedPlayers.clear();
+        watchedChunks.clear();
     }
 
     @Override
@@ -174,10 +393,11 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     @Override
     public void readFromNBT(NBTTagCompound nbt) {
         wireSystems.clear();
+        elementIndex.clear();
         NBTTagList entriesList = nbt.getTagList("entries", Constants.NBT.TAG_COMPOUND);
         for(int i = 0; i < entriesList.tagCount(); i++) {
             NBTTagCompound entry = entriesList.getCompoundTagAt(i);
-            wireSystems.put(new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem")), entry.getBoolean("powered"));
+            addWireSystem(new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem")), entry.getBoolean("powered"));
         }
     }
 
@@ -0,0 +1,93 @@
+package buildcraft.builders.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.enums.EnumSnapshotType;
+
+/** In the same package as {@link SnapshotStore}, as it's only used through {@link GlobalSavedDataSnapshots}. */
+public class SnapshotStoreTester {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Snapshot createTemplate(int filled) {
+        Template template = (Template) Snapshot.create(EnumSnapshotType.TEMPLATE);
+        template.size = new BlockPos(2, 2, 2);
+        template.facing = EnumFacing.NORTH;
+        template.offset = BlockPos.ORIGIN;
+        template.data = new BitSet();
+        template.data.set(filled);
+        template.computeKey();
+        return template;
+    }
+
+    @Test
+    public void testPartialRecord() throws IOException {
+        File dir = folder.getRoot();
+        Snapshot first = createTemplate(0);
+        Snapshot second = createTemplate(1);
+
+        SnapshotStore store = new SnapshotStore(dir);
+        store.add(first);
+        store.close();
+
+        // Pretend that the game crashed part way through writing another record
+        try (FileOutputStream out = new FileOutputStream(new File(dir, SnapshotStore.INDEX_FILE), true)) {
+            out.write(new byte[] { 1, 10, 0 });
+        }
+
+        store = new SnapshotStore(dir);
+        Assert.assertTrue(store.contains(first.key));
+        store.add(second);
+        store.close();
+
+        store = new SnapshotStore(dir);
+        Assert.assertTrue(store.contains(first.key));
+        Assert.assertTrue(store.contains(second.key));
+        Assert.assertNotNull(store.read(second.key));
+        store.close();
+    }
+
+    @Test
+    public void testBrokenIndexKept() throws IOException {
+        File dir = folder.getRoot();
+        Snapshot first = createTemplate(0);
+        Snapshot second = createTemplate(1);
+
+        SnapshotStore store = new SnapshotStore(dir);
+        store.add(first);
+        store.close();
+
+        File index = new File(dir, SnapshotStore.INDEX_FILE);
+        try (FileOutputStream out = new FileOutputStream(index)) {
+            out.write(new byte[] { 0, 1, 2, 3 });
+        }
+        byte[] broken = Files.readAllBytes(index.toPath());
+
+        store = new SnapshotStore(dir);
+        Assert.assertFalse(store.contains(first.key));
+        store.add(second);
+        store.close();
+
+        // The broken index and the segment it pointed to are kept, rather than being replaced
+        File backup = new File(dir, SnapshotStore.INDEX_FILE + ".bak");
+        Assert.assertArrayEquals(broken, Files.readAllBytes(backup.toPath()));
+        Assert.assertTrue(new File(dir, "segment-0.bcseg.bak").isFile());
+
+        store = new SnapshotStore(dir);
+        Assert.assertTrue(store.contains(second.key));
+        Assert.assertNotNull(store.read(second.key));
+        store.close();
+    }
+}
@@ -0,0 +1,70 @@
+package buildcraft.test.builders.snapshot;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.data.NbtSquishConstants;
+import buildcraft.api.enums.EnumSnapshotType;
+import buildcraft.api.schematics.SchematicBlockFactoryRegistry;
+
+import buildcraft.lib.nbt.NbtSquishWriter;
+import buildcraft.lib.nbt.NbtSquisher;
+
+import buildcraft.builders.snapshot.Blueprint;
+import buildcraft.builders.snapshot.SchematicBlockAir;
+import buildcraft.builders.snapshot.Snapshot;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class BlueprintTester extends VanillaSetupBaseTester {
+    private static final ResourceLocation AIR = new ResourceLocation("buildcrafttest", "air");
+
+    @BeforeClass
+    public static void registerSchematics() {
+        if (SchematicBlockFactoryRegistry.getFactoryByName(AIR) == null) {
+            SchematicBlockFactoryRegistry.registerFactory(AIR, 0, SchematicBlockAir::predicate, SchematicBlockAir::new);
+        }
+    }
+
+    /** Creates a blueprint with more than 65535 ints of both packed data and air runs, which is more than a single int
+     * array can hold in the squished formats. */
+    private static Blueprint createLargeBlueprint() {
+        Blueprint blueprint = (Blueprint) Snapshot.create(EnumSnapshotType.BLUEPRINT);
+        blueprint.size = new BlockPos(256, 96, 256);
+        blueprint.facing = EnumFacing.NORTH;
+        blueprint.offset = BlockPos.ORIGIN;
+        // Only the first one counts as air, so the second one is always packed
+        blueprint.palette.add(new SchematicBlockAir());
+        blueprint.palette.add(new SchematicBlockAir());
+        blueprint.data = new int[Snapshot.getDataSize(blueprint.size)];
+        int half = blueprint.data.length / 2;
+        for (int i = 0; i < blueprint.data.length; i++) {
+            // Lots of values that are too short to be air runs, followed by lots of air runs
+            blueprint.data[i] = i < half ? i & 1 : (i % 70 < 65 ? 0 : 1);
+        }
+        return blueprint;
+    }
+
+    @Test
+    public void testLargeSquishRoundTrip() throws IOException, InvalidInputDataException {
+        Blueprint blueprint = createLargeBlueprint();
+        int type = NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED;
+
+        byte[] fromTags = NbtSquisher.squish(Snapshot.writeToNBT(blueprint), type);
+        Blueprint read = (Blueprint) Snapshot.readFromNBT(NbtSquisher.expand(fromTags));
+        Assert.assertArrayEquals(blueprint.data, read.data);
+
+        NbtSquishWriter writer = new NbtSquishWriter();
+        byte[] typed = NbtSquisher.squish(writer, Snapshot.writeToSquish(blueprint, writer), type);
+        read = (Blueprint) Snapshot.readFromNBT(NbtSquisher.expand(typed));
+        Assert.assertArrayEquals(blueprint.data, read.data);
+    }
+}
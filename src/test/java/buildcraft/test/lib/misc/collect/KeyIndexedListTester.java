@@ -0,0 +1,47 @@
+package buildcraft.test.lib.misc.collect;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.misc.collect.KeyIndexedList;
+
+public class KeyIndexedListTester {
+
+    /** Uses the first character as the key, or no key for "*" values. */
+    private static KeyIndexedList<Character, String> create() {
+        return new KeyIndexedList<>(s -> s.startsWith("*") ? null : s.charAt(0));
+    }
+
+    @Test
+    public void testCandidatesKeepOrder() {
+        KeyIndexedList<Character, String> list = create();
+        list.addAll(Arrays.asList("a1", "*1", "b1", "a2", "*2", "b2"));
+        Assert.assertEquals(Arrays.asList("a1", "*1", "a2", "*2"), list.getCandidates('a'));
+        Assert.assertEquals(Arrays.asList("*1", "b1", "*2", "b2"), list.getCandidates('b'));
+        Assert.assertEquals(Arrays.asList("*1", "*2"), list.getCandidates('c'));
+        Assert.assertEquals(Arrays.asList("*1", "*2"), list.getCandidates(null));
+    }
+
+    @Test
+    public void testRebuiltOnChange() {
+        KeyIndexedList<Character, String> list = create();
+        list.add("a1");
+        Assert.assertEquals(Collections.singletonList("a1"), list.getCandidates('a'));
+
+        list.add("a2");
+        Assert.assertEquals(Arrays.asList("a1", "a2"), list.getCandidates('a'));
+
+        list.set(0, "b1");
+        Assert.assertEquals(Collections.singletonList("a2"), list.getCandidates('a'));
+        Assert.assertEquals(Collections.singletonList("b1"), list.getCandidates('b'));
+
+        list.removeIf(s -> s.startsWith("a"));
+        Assert.assertEquals(Collections.emptyList(), list.getCandidates('a'));
+
+        list.clear();
+        Assert.assertEquals(Collections.emptyList(), list.getCandidates('b'));
+    }
+}
@@ -0,0 +1,38 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.misc.data.BitPackedIntArray;
+
+public class BitPackedIntArrayTester {
+    @Test
+    public void testBitsFor() {
+        Assert.assertEquals(1, BitPackedIntArray.getBitsFor(0));
+        Assert.assertEquals(1, BitPackedIntArray.getBitsFor(1));
+        Assert.assertEquals(2, BitPackedIntArray.getBitsFor(2));
+        Assert.assertEquals(2, BitPackedIntArray.getBitsFor(3));
+        Assert.assertEquals(3, BitPackedIntArray.getBitsFor(4));
+        Assert.assertEquals(8, BitPackedIntArray.getBitsFor(255));
+        Assert.assertEquals(31, BitPackedIntArray.getBitsFor(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random rand = new Random(0x5EED);
+        for (int bits = 1; bits <= 31; bits++) {
+            int count = 1 + rand.nextInt(200);
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = rand.nextInt(1 << bits);
+            }
+            int[] packed = BitPackedIntArray.pack(values, count, bits);
+            Assert.assertEquals(BitPackedIntArray.getPackedLength(count, bits), packed.length);
+            int[] unpacked = new int[count];
+            BitPackedIntArray.unpack(packed, bits, unpacked, count);
+            Assert.assertArrayEquals("bits = " + bits, values, unpacked);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package buildcraft.test.lib.nbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagList;
+
+import net.minecraftforge.common.util.Constants;
+
+import buildcraft.api.data.NbtSquishConstants;
+
+import buildcraft.lib.nbt.NbtSquishReader;
+import buildcraft.lib.nbt.NbtSquishWriter;
+import buildcraft.lib.nbt.NbtSquisher;
+
+public class NbtSquishStreamTester {
+
+    @Test
+    public void testTagRoundTrip() throws IOException {
+        for (int type : new int[] { NbtSquishConstants.BUILDCRAFT_V1, NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED }) {
+            NbtSquishWriter writer = new NbtSquishWriter();
+            int root = writer.addTag(NbtSquisherTester.nbt);
+            byte[] bytes = NbtSquisher.squish(writer, root, type);
+            NbtSquisherTester.checkEquality(NbtSquisherTester.nbt, NbtSquisher.expand(bytes));
+        }
+    }
+
+    @Test
+    public void testReadOldFormat() throws IOException {
+        byte[] bytes = NbtSquisher.squish(NbtSquisherTester.nbt, NbtSquishConstants.BUILDCRAFT_V1);
+        NbtSquishReader reader = NbtSquisher.read(bytes);
+        NBTTagCompound read = (NBTTagCompound) reader.toNbt(reader.getRoot());
+        NbtSquisherTester.checkEquality(NbtSquisherTester.nbt, read);
+    }
+
+    @Test
+    public void testTypedValues() throws IOException {
+        String[] palette = { "minecraft:air", "minecraft:stone", "minecraft:log" };
+        int[] blocks = new int[4096];
+        Random rand = new Random(0x5eed);
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = rand.nextInt(palette.length);
+        }
+
+        NbtSquishWriter writer = new NbtSquishWriter();
+        int[] paletteRefs = new int[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            paletteRefs[i] = writer.newCompound().setString("id", palette[i]).build();
+        }
+        int root = writer.newCompound()//
+            .set("palette", writer.addList(paletteRefs))//
+            .set("blocks", writer.addIntList(blocks))//
+            .setIntArray("size", new int[] { 16, 16, 16 })//
+            .build();
+        byte[] bytes = NbtSquisher.squish(writer, root, NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED);
+
+        NbtSquishReader reader = NbtSquisher.read(bytes);
+        int readRoot = reader.getRoot();
+        Assert.assertEquals(Constants.NBT.TAG_COMPOUND, reader.getTagType(readRoot));
+        int readPalette = reader.getCompoundValue(readRoot, "palette");
+        Assert.assertEquals(palette.length, reader.getListSize(readPalette));
+        for (int i = 0; i < palette.length; i++) {
+            int entry = reader.getListEntry(readPalette, i);
+            Assert.assertEquals(palette[i], reader.getString(reader.getCompoundValue(entry, "id")));
+        }
+        Assert.assertArrayEquals(blocks, reader.getIntList(reader.getCompoundValue(readRoot, "blocks")));
+        Assert.assertArrayEquals(new int[] { 16, 16, 16 }, reader.getIntArray(reader.getCompoundValue(readRoot,
+            "size")));
+        Assert.assertEquals(-1, reader.getCompoundValue(readRoot, "missing"));
+
+        NBTTagCompound expanded = NbtSquisher.expand(bytes);
+        Assert.assertEquals(blocks.length, expanded.getTagList("blocks", Constants.NBT.TAG_INT).tagCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testArrayTooLong() throws IOException {
+        NbtSquishWriter writer = new NbtSquishWriter();
+        int root = writer.newCompound().setIntArray("data", new int[0x10000]).build();
+        NbtSquisher.squish(writer, root, NbtSquishConstants.BUILDCRAFT_V1, new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testTypedMatchesTags() throws IOException {
+        BlockData data = new BlockData(4096);
+        byte[] fromTags = NbtSquisher.squish(data.toNbt(), NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED);
+        byte[] typed = data.squishTyped(NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED);
+        NbtSquisherTester.checkEquality(NbtSquisher.expand(fromTags), NbtSquisher.expand(typed));
+    }
+
+    /** Rough comparison between creating a full {@link NBTTagCompound} for a blueprint sized set of blocks and then
+     * squishing it, and writing the same blocks from an int array and a palette. This isn't a proper benchmark (so it
+     * isn't run as a test), but it's enough to show which one is faster. */
+    public static void main(String[] args) throws IOException {
+        BlockData data = new BlockData(64 * 64 * 64);
+        int type = NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED;
+        NbtSquisherTester.checkEquality(NbtSquisher.expand(NbtSquisher.squish(data.toNbt(), type)),
+            NbtSquisher.expand(data.squishTyped(type)));
+
+        long tagsWrite = 0, typedWrite = 0, tagsRead = 0, typedRead = 0;
+        int tagsSize = 0, typedSize = 0;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            byte[] fromTags = NbtSquisher.squish(data.toNbt(), type);
+            tagsWrite = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            byte[] typed = data.squishTyped(type);
+            typedWrite = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            NbtSquisher.expand(fromTags).getTagList("blocks", Constants.NBT.TAG_INT);
+            tagsRead = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            NbtSquishReader reader = NbtSquisher.read(typed);
+            reader.getIntList(reader.getCompoundValue(reader.getRoot(), "blocks"));
+            typedRead = System.nanoTime() - start;
+
+            tagsSize = fromTags.length;
+            typedSize = typed.length;
+        }
+        System.out.println("write: tags = " + tagsWrite / 1000 + "us, typed = " + typedWrite / 1000 + "us");
+        System.out.println("read: tags = " + tagsRead / 1000 + "us, typed = " + typedRead / 1000 + "us");
+        System.out.println("size: tags = " + tagsSize + " bytes, typed = " + typedSize + " bytes");
+    }
+
+    /** A palette of blocks, and the palette index of every position, in the same proportions as the blueprint in
+     * {@link NbtSquisherTester}. */
+    private static class BlockData {
+        private static final String[] NAMES = { "minecraft:air", "minecraft:log", "minecraft:torch", "minecraft:stone",
+            "minecraft:fence" };
+        private static final int[] METAS = { 1, 16, 5, 7, 4 };
+
+        final List<NBTTagCompound> palette = new ArrayList<>();
+        final int[] blocks;
+
+        BlockData(int size) {
+            for (int b = 0; b < NAMES.length; b++) {
+                for (int m = 0; m < METAS[b]; m++) {
+                    NBTTagCompound blockNbt = new NBTTagCompound();
+                    blockNbt.setString("id", NAMES[b]);
+                    if (m > 0) {
+                        blockNbt.setByte("meta", (byte) m);
+                    }
+                    palette.add(blockNbt);
+                }
+            }
+            Random rand = new Random(0x517123);
+            blocks = new int[size];
+            for (int i = 0; i < size; i++) {
+                blocks[i] = rand.nextDouble() < 0.4 ? 0 : rand.nextInt(palette.size());
+            }
+        }
+
+        NBTTagCompound toNbt() {
+            NBTTagCompound nbt = new NBTTagCompound();
+            NBTTagList paletteList = new NBTTagList();
+            for (NBTTagCompound blockNbt : palette) {
+                paletteList.appendTag(blockNbt.copy());
+            }
+            nbt.setTag("palette", paletteList);
+            NBTTagList blockList = new NBTTagList();
+            for (int block : blocks) {
+                blockList.appendTag(new NBTTagInt(block));
+            }
+            nbt.setTag("blocks", blockList);
+            return nbt;
+        }
+
+        byte[] squishTyped(int type) {
+            NbtSquishWriter writer = new NbtSquishWriter();
+            int[] paletteRefs = new int[palette.size()];
+            for (int i = 0; i < paletteRefs.length; i++) {
+                paletteRefs[i] = writer.addTag(palette.get(i));
+            }
+            int root = writer.newCompound()//
+                .set("palette", writer.addList(paletteRefs))//
+                .set("blocks", writer.addIntList(blocks))//
+                .build();
+            return NbtSquisher.squish(writer, root, type);
+        }
+    }
+}
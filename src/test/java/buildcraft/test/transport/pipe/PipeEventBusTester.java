@@ -1,10 +1,21 @@
 package buildcraft.test.transport.pipe;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import buildcraft.api.transport.pipe.PipeEvent;
+import buildcraft.api.transport.pipe.PipeEventFluid;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventItem;
+import buildcraft.api.transport.pipe.PipeEventPower;
+import buildcraft.api.transport.pipe.PipeEventTileState;
 
 import buildcraft.transport.pipe.PipeEventBus;
 
@@ -59,6 +70,42 @@ public class PipeEventBusTester {
         Assert.assertEquals(3, event.targetSpeed, 0.00001);
     }
 
+    @Test
+    public void testHandlerTables() {
+        PipeEventBus bus = new PipeEventBus();
+        Assert.assertFalse(bus.hasHandlerFor(PipeEventItem.ModifySpeed.class));
+
+        AnyItemEvent any = new AnyItemEvent();
+        bus.registerHandler(any);
+        Assert.assertTrue(bus.hasHandlerFor(PipeEventItem.ModifySpeed.class));
+
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        Assert.assertTrue(bus.fireEvent(event));
+        Assert.assertEquals(1, any.count);
+
+        // Registering another handler must rebuild the table for an event class that has already been fired
+        bus.registerHandler(this);
+        event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        Assert.assertEquals(2, any.count);
+        Assert.assertEquals(1, event.targetSpeed, 0.00001);
+
+        bus.unregisterHandler(any);
+        bus.unregisterHandler(this);
+        Assert.assertFalse(bus.hasHandlerFor(PipeEventItem.ModifySpeed.class));
+        Assert.assertFalse(bus.fireEvent(new PipeEventItem.ModifySpeed(null, null, null, 1)));
+        Assert.assertEquals(2, any.count);
+    }
+
+    public static class AnyItemEvent {
+        int count = 0;
+
+        @PipeEventHandler
+        public void onItemEvent(PipeEventItem event) {
+            count++;
+        }
+    }
+
     public static class Base {
         @PipeEventHandler
         public void modifySpeed2(PipeEventItem.ModifySpeed event) {
@@ -72,4 +119,122 @@ public class PipeEventBusTester {
             event.targetSpeed = 3;
         }
     }
+
+    /** Rough comparison between the handler tables in {@link PipeEventBus} and the linear scan that it used to do
+     * (copied into {@link LinearEventBus}), with about as many handlers as a busy pipe has. This isn't a proper
+     * benchmark (so it isn't run as a test), but it's enough to show which one is faster. */
+    public static void main(String[] args) {
+        Object[] handlers = { new Base(), new AnyItemEvent(), new ItemHandlers(), new FluidHandlers(),
+            new PowerHandlers(), new ItemHandlers(), new FluidHandlers() };
+        PipeEventBus tables = new PipeEventBus();
+        LinearEventBus linear = new LinearEventBus();
+        for (Object handler : handlers) {
+            tables.registerHandler(handler);
+            linear.registerHandler(handler);
+        }
+
+        long linearNanos = 0, tablesNanos = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+                linear.fireEvent(event);
+                dontInlineThis += (long) event.targetSpeed;
+            }
+            linearNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+                tables.fireEvent(event);
+                dontInlineThis += (long) event.targetSpeed;
+            }
+            tablesNanos = System.nanoTime() - start;
+        }
+        System.out.println("fireEvent: linear = " + linearNanos / 1_000_000.0 + "ns, tables = "
+            + tablesNanos / 1_000_000.0 + "ns (" + dontInlineThis + ")");
+    }
+
+    public static class ItemHandlers {
+        @PipeEventHandler
+        public void sideCheck(PipeEventItem.SideCheck event) {}
+
+        @PipeEventHandler
+        public void itemEntry(PipeEventItem.ItemEntry event) {}
+
+        @PipeEventHandler
+        public void findDest(PipeEventItem.FindDest event) {}
+
+        @PipeEventHandler
+        public void reachEnd(PipeEventItem.ReachEnd event) {}
+    }
+
+    public static class FluidHandlers {
+        @PipeEventHandler
+        public void sideCheck(PipeEventFluid.SideCheck event) {}
+
+        @PipeEventHandler
+        public void tryInsert(PipeEventFluid.TryInsert event) {}
+
+        @PipeEventHandler
+        public void moveToCentre(PipeEventFluid.OnMoveToCentre event) {}
+    }
+
+    public static class PowerHandlers {
+        @PipeEventHandler
+        public void configure(PipeEventPower.Configure event) {}
+
+        @PipeEventHandler
+        public void validate(PipeEventTileState.Validate event) {}
+    }
+
+    /** The way that {@link PipeEventBus} used to dispatch events: every handler is checked for every event. */
+    static class LinearEventBus {
+        private final List<LinearHandler> handlers = new ArrayList<>();
+
+        void registerHandler(Object obj) {
+            for (Method m : obj.getClass().getMethods()) {
+                PipeEventHandler annot = m.getAnnotation(PipeEventHandler.class);
+                if (annot == null) {
+                    continue;
+                }
+                try {
+                    MethodHandle handle = MethodHandles.publicLookup().unreflect(m).bindTo(obj);
+                    handlers.add(new LinearHandler(annot, m.getParameterTypes()[0], handle));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            handlers.sort(Comparator.comparing(h -> h.annot.priority()));
+        }
+
+        boolean fireEvent(PipeEvent event) {
+            boolean handled = false;
+            for (LinearHandler handler : handlers) {
+                if (!handler.annot.receiveCancelled() && event.isCanceled()) {
+                    continue;
+                }
+                if (handler.classHandled.isAssignableFrom(event.getClass())) {
+                    try {
+                        handler.handle.invoke(event);
+                    } catch (Throwable t) {
+                        throw new IllegalStateException(t);
+                    }
+                    handled = true;
+                }
+            }
+            return handled;
+        }
+    }
+
+    static class LinearHandler {
+        final PipeEventHandler annot;
+        final Class<?> classHandled;
+        final MethodHandle handle;
+
+        LinearHandler(PipeEventHandler annot, Class<?> classHandled, MethodHandle handle) {
+            this.annot = annot;
+            this.classHandled = classHandled;
+            this.handle = handle;
+        }
+    }
 }
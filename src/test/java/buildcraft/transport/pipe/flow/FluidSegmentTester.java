@@ -0,0 +1,92 @@
+package buildcraft.transport.pipe.flow;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidStack;
+
+import buildcraft.api.core.EnumPipePart;
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipeHolder;
+import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeDefinition;
+import buildcraft.api.transport.pipe.PipeDefinition.PipeDefinitionBuilder;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+/** In the same package as {@link FluidSegment}, as segments only talk to pipes through package-private methods. */
+public class FluidSegmentTester extends VanillaSetupBaseTester {
+    private static final int TRANSFER_PER_TICK = 40;
+
+    private static PipeDefinition definition;
+
+    @BeforeClass
+    public static void createDefinition() {
+        PipeDefinitionBuilder builder = new PipeDefinitionBuilder();
+        builder.identifier = new ResourceLocation("buildcrafttransport", "test_fluid");
+        builder.texturePrefix = "buildcrafttransport:pipes/test_fluid";
+        builder.textureSuffixes = new String[] { "" };
+        definition = new PipeDefinition(builder);
+        PipeApi.fluidTransferData.put(definition, new PipeApi.FluidTransferInfo(TRANSFER_PER_TICK, 10));
+    }
+
+    private static PipeFlowFluids createFlow() {
+        IPipeHolder holder = (IPipeHolder) Proxy.newProxyInstance(
+            IPipeHolder.class.getClassLoader(), new Class<?>[] { IPipeHolder.class },
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.FALSE : null
+        );
+        IPipe pipe = (IPipe) Proxy.newProxyInstance(
+            IPipe.class.getClassLoader(), new Class<?>[] { IPipe.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDefinition":
+                        return definition;
+                    case "getHolder":
+                        return holder;
+                    case "isConnected":
+                        return args[0] == EnumFacing.NORTH || args[0] == EnumFacing.SOUTH;
+                    default:
+                        return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                }
+            }
+        );
+        return new PipeFlowFluids(pipe);
+    }
+
+    @Test
+    public void testJoinWhileMoving() {
+        PipeFlowFluids flow = createFlow();
+        FluidStack water = new FluidStack(FluidRegistry.WATER, TRANSFER_PER_TICK);
+        Assert.assertEquals(TRANSFER_PER_TICK, flow.insertFluidsForce(water, null, false));
+        // Fluid can't leave on the same tick that it came in
+        Assert.assertEquals(0, flow.getMaxDrained(EnumPipePart.CENTER));
+
+        // Join a segment while the fluid is still moving
+        int total = flow.takeContentsForSegment();
+        Assert.assertEquals(TRANSFER_PER_TICK, total);
+        flow.setSegmentContents(water, total, EnumFacing.NORTH, EnumFacing.SOUTH, 0);
+
+        // Then dissolve it again: every section must be able to give up its share straight away
+        Assert.assertEquals(14, flow.getMaxDrained(EnumPipePart.CENTER));
+        Assert.assertEquals(13, flow.getMaxDrained(EnumPipePart.NORTH));
+        Assert.assertEquals(13, flow.getMaxDrained(EnumPipePart.SOUTH));
+    }
+
+    @Test
+    public void testEmptyShareKeepsFluid() {
+        PipeFlowFluids flow = createFlow();
+        FluidStack water = new FluidStack(FluidRegistry.WATER, 1);
+        flow.setSegmentContents(water, 3, EnumFacing.NORTH, EnumFacing.SOUTH, 0);
+        int version = flow.getChangeVersion();
+
+        flow.setSegmentContents(water, 0, EnumFacing.NORTH, EnumFacing.SOUTH, 0);
+        flow.setSegmentContents(water, 3, EnumFacing.NORTH, EnumFacing.SOUTH, 0);
+        Assert.assertEquals(version, flow.getChangeVersion());
+    }
+}
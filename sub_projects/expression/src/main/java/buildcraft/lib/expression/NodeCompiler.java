@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.expression;
+
+import buildcraft.lib.expression.api.IExpressionNode;
+import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
+import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
+import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
+
+/** Compiles (inlined) node trees into a single generated class, so that evaluating them doesn't have to go through a
+ * virtual call for every node. Arithmetic, comparisons, casts and conditionals are turned into plain bytecode, and
+ * every other node (variables, objects, user functions) is called directly from the generated class.
+ * <p>
+ * This requires ASM to be on the classpath: if it isn't (or anything goes wrong while compiling) then the original
+ * node tree is returned, and will be interpreted as normal. */
+public class NodeCompiler {
+
+    /** Set to false to always use the interpreted node trees. */
+    public static boolean enabled = true;
+
+    private static final boolean ASM_AVAILABLE;
+
+    static {
+        boolean available;
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter", false, NodeCompiler.class.getClassLoader());
+            available = true;
+        } catch (ClassNotFoundException e) {
+            available = false;
+        }
+        ASM_AVAILABLE = available;
+    }
+
+    public static boolean isAvailable() {
+        return enabled && ASM_AVAILABLE;
+    }
+
+    public static INodeDouble compile(INodeDouble node) {
+        return (INodeDouble) compile((IExpressionNode) node);
+    }
+
+    public static INodeLong compile(INodeLong node) {
+        return (INodeLong) compile((IExpressionNode) node);
+    }
+
+    public static INodeBoolean compile(INodeBoolean node) {
+        return (INodeBoolean) compile((IExpressionNode) node);
+    }
+
+    /** @return A compiled version of the given node, or the node itself if it couldn't be compiled (or wouldn't
+     *         benefit from it). The returned node always implements the same node type as the given one. */
+    public static IExpressionNode compile(IExpressionNode node) {
+        if (!isAvailable()) {
+            return node;
+        }
+        if (!(node instanceof INodeDouble || node instanceof INodeLong || node instanceof INodeBoolean)) {
+            return node;
+        }
+        try {
+            IExpressionNode compiled = NodeCompilerAsm.compile(node);
+            return compiled == null ? node : compiled;
+        } catch (RuntimeException | LinkageError e) {
+            if (ExpressionDebugManager.debug) {
+                ExpressionDebugManager.debugPrintln("Failed to compile " + node + ": " + e);
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.expression;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import buildcraft.lib.expression.api.IExpressionNode;
+import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
+import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
+import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
+import buildcraft.lib.expression.api.IExpressionNode.INodeObject;
+import buildcraft.lib.expression.api.NodeTypes.DoubleFunctions;
+import buildcraft.lib.expression.api.NodeTypes.LongFunctions;
+import buildcraft.lib.expression.node.cast.NodeCastLongToDouble;
+import buildcraft.lib.expression.node.compiled.CompiledNode;
+import buildcraft.lib.expression.node.condition.NodeConditionalBoolean;
+import buildcraft.lib.expression.node.condition.NodeConditionalDouble;
+import buildcraft.lib.expression.node.condition.NodeConditionalLong;
+import buildcraft.lib.expression.node.func.NodeFuncBase;
+import buildcraft.lib.expression.node.func.NodeFuncBase.IFunctionNode;
+import buildcraft.lib.expression.node.value.NodeConstantBoolean;
+import buildcraft.lib.expression.node.value.NodeConstantDouble;
+import buildcraft.lib.expression.node.value.NodeConstantLong;
+
+/** The ASM backend for {@link NodeCompiler}. This is a separate class so that nothing tries to load ASM unless it's
+ * actually available. */
+final class NodeCompilerAsm implements Opcodes {
+
+    private static final String BASE_CLASS = Type.getInternalName(CompiledNode.class);
+    private static final String NODE_DESC = Type.getDescriptor(IExpressionNode.class);
+    private static final String CLASS_PREFIX = "buildcraft/lib/expression/node/compiled/Generated_";
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** Functions that map directly onto a single bytecode instruction. */
+    private static final Map<NodeFuncBase, Integer> INSTRUCTIONS = new IdentityHashMap<>();
+
+    /** Comparison functions, as {compare instruction, jump instruction if the comparison is false}. */
+    private static final Map<NodeFuncBase, int[]> COMPARISONS = new IdentityHashMap<>();
+
+    static {
+        INSTRUCTIONS.put(DoubleFunctions.NEGATE, DNEG);
+        INSTRUCTIONS.put(DoubleFunctions.ADD, DADD);
+        INSTRUCTIONS.put(DoubleFunctions.SUB, DSUB);
+        INSTRUCTIONS.put(DoubleFunctions.MUL, DMUL);
+        INSTRUCTIONS.put(DoubleFunctions.DIV, DDIV);
+        INSTRUCTIONS.put(DoubleFunctions.MOD, DREM);
+
+        INSTRUCTIONS.put(LongFunctions.NEGATE, LNEG);
+        INSTRUCTIONS.put(LongFunctions.ADD, LADD);
+        INSTRUCTIONS.put(LongFunctions.SUB, LSUB);
+        INSTRUCTIONS.put(LongFunctions.MUL, LMUL);
+        INSTRUCTIONS.put(LongFunctions.DIV, LDIV);
+        INSTRUCTIONS.put(LongFunctions.MOD, LREM);
+        INSTRUCTIONS.put(LongFunctions.BITWISE_XOR, LXOR);
+        INSTRUCTIONS.put(LongFunctions.BITWISE_AND, LAND);
+        INSTRUCTIONS.put(LongFunctions.BITWISE_OR, LOR);
+        INSTRUCTIONS.put(LongFunctions.BITSHIFT_UP, LSHL);
+        INSTRUCTIONS.put(LongFunctions.BITSHIFT_DOWN, LSHR);
+        INSTRUCTIONS.put(LongFunctions.BITSHIFT_DOWN_HARD, LUSHR);
+        INSTRUCTIONS.put(LongFunctions.CVT_DOUBLE, L2D);
+
+        // Same instructions that javac uses, so that NaN is handled identically
+        COMPARISONS.put(DoubleFunctions.LT, new int[] { DCMPG, IFGE });
+        COMPARISONS.put(DoubleFunctions.GT, new int[] { DCMPL, IFLE });
+        COMPARISONS.put(DoubleFunctions.LE, new int[] { DCMPG, IFGT });
+        COMPARISONS.put(DoubleFunctions.GE, new int[] { DCMPL, IFLT });
+        COMPARISONS.put(DoubleFunctions.EQ, new int[] { DCMPL, IFNE });
+        COMPARISONS.put(DoubleFunctions.NE, new int[] { DCMPL, IFEQ });
+
+        COMPARISONS.put(LongFunctions.LT, new int[] { LCMP, IFGE });
+        COMPARISONS.put(LongFunctions.GT, new int[] { LCMP, IFLE });
+        COMPARISONS.put(LongFunctions.LE, new int[] { LCMP, IFGT });
+        COMPARISONS.put(LongFunctions.GE, new int[] { LCMP, IFLT });
+        COMPARISONS.put(LongFunctions.EQ, new int[] { LCMP, IFNE });
+        COMPARISONS.put(LongFunctions.NE, new int[] { LCMP, IFEQ });
+    }
+
+    private final String className;
+    private final List<Object> leaves = new ArrayList<>();
+    private final List<Class<?>> leafTypes = new ArrayList<>();
+    private int compiledCount = 0;
+
+    private NodeCompilerAsm() {
+        className = CLASS_PREFIX + nextId.incrementAndGet();
+    }
+
+    /** @return The compiled node, or null if the node doesn't contain anything that would be faster compiled. */
+    static IExpressionNode compile(IExpressionNode node) {
+        if (node instanceof CompiledNode) {
+            return node;
+        }
+        return new NodeCompilerAsm().compile0(node);
+    }
+
+    private IExpressionNode compile0(IExpressionNode root) {
+        final Class<?> nodeType;
+        final Type valueType;
+        final int returnInsn;
+        if (root instanceof INodeDouble) {
+            nodeType = INodeDouble.class;
+            valueType = Type.DOUBLE_TYPE;
+            returnInsn = DRETURN;
+        } else if (root instanceof INodeLong) {
+            nodeType = INodeLong.class;
+            valueType = Type.LONG_TYPE;
+            returnInsn = LRETURN;
+        } else if (root instanceof INodeBoolean) {
+            nodeType = INodeBoolean.class;
+            valueType = Type.BOOLEAN_TYPE;
+            returnInsn = IRETURN;
+        } else {
+            return null;
+        }
+        String nodeTypeName = Type.getInternalName(nodeType);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, BASE_CLASS, new String[] { nodeTypeName });
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "evaluate", "()" + valueType.getDescriptor(), null, null);
+        mv.visitCode();
+        emit(mv, root, valueType);
+        mv.visitInsn(returnInsn);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        if (compiledCount == 0) {
+            // Only constants and leaves, so this would just be an extra layer of indirection
+            return null;
+        }
+
+        String inlineDesc = "()L" + nodeTypeName + ";";
+        mv = cw.visitMethod(ACC_PUBLIC, "inline", inlineDesc, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, className, "reinline", "()" + NODE_DESC, false);
+        mv.visitTypeInsn(CHECKCAST, nodeTypeName);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_SYNTHETIC | ACC_BRIDGE, "inline", "()" + NODE_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, className, "inline", inlineDesc, false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + NODE_DESC + "[Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, BASE_CLASS, "<init>", "(" + NODE_DESC + ")V", false);
+        for (int i = 0; i < leaves.size(); i++) {
+            String leafType = Type.getInternalName(leafTypes.get(i));
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, "leaf" + i, "L" + leafType + ";", null, null).visitEnd();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(AALOAD);
+            mv.visitTypeInsn(CHECKCAST, leafType);
+            mv.visitFieldInsn(PUTFIELD, className, "leaf" + i, "L" + leafType + ";");
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+
+        Class<?> clazz = new GeneratedClassLoader().define(className.replace('/', '.'), cw.toByteArray());
+        try {
+            return (IExpressionNode) clazz.getConstructor(IExpressionNode.class, Object[].class)
+                .newInstance(root, leaves.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + clazz, e);
+        }
+    }
+
+    private void emit(MethodVisitor mv, IExpressionNode node, Type expected) {
+        Type type = emit(mv, node);
+        if (!type.equals(expected)) {
+            throw new IllegalStateException("Expected " + expected + " but got " + type + " for " + node);
+        }
+    }
+
+    /** Writes out the instructions to evaluate the given node, leaving its value on the stack.
+     *
+     * @return The type of the value left on the stack. */
+    private Type emit(MethodVisitor mv, IExpressionNode node) {
+        if (node instanceof NodeConstantDouble) {
+            mv.visitLdcInsn(((NodeConstantDouble) node).value);
+            return Type.DOUBLE_TYPE;
+        } else if (node instanceof NodeConstantLong) {
+            mv.visitLdcInsn(((NodeConstantLong) node).value);
+            return Type.LONG_TYPE;
+        } else if (node instanceof NodeConstantBoolean) {
+            mv.visitInsn(((NodeConstantBoolean) node).value ? ICONST_1 : ICONST_0);
+            return Type.BOOLEAN_TYPE;
+        } else if (node instanceof NodeConditionalDouble) {
+            NodeConditionalDouble cond = (NodeConditionalDouble) node;
+            return emitConditional(mv, cond.condition, cond.ifTrue, cond.ifFalse, Type.DOUBLE_TYPE);
+        } else if (node instanceof NodeConditionalLong) {
+            NodeConditionalLong cond = (NodeConditionalLong) node;
+            return emitConditional(mv, cond.condition, cond.ifTrue, cond.ifFalse, Type.LONG_TYPE);
+        } else if (node instanceof NodeConditionalBoolean) {
+            NodeConditionalBoolean cond = (NodeConditionalBoolean) node;
+            return emitConditional(mv, cond.condition, cond.ifTrue, cond.ifFalse, Type.BOOLEAN_TYPE);
+        } else if (node instanceof NodeCastLongToDouble) {
+            emit(mv, ((NodeCastLongToDouble) node).from, Type.LONG_TYPE);
+            mv.visitInsn(L2D);
+            compiledCount++;
+            return Type.DOUBLE_TYPE;
+        } else if (node instanceof IFunctionNode) {
+            Type type = emitFunction(mv, (IFunctionNode) node);
+            if (type != null) {
+                return type;
+            }
+        }
+        return emitLeaf(mv, node);
+    }
+
+    private Type emitConditional(MethodVisitor mv, INodeBoolean condition, IExpressionNode ifTrue,
+        IExpressionNode ifFalse, Type type) {
+        Label labelFalse = new Label();
+        Label labelEnd = new Label();
+        emit(mv, condition, Type.BOOLEAN_TYPE);
+        mv.visitJumpInsn(IFEQ, labelFalse);
+        emit(mv, ifTrue, type);
+        mv.visitJumpInsn(GOTO, labelEnd);
+        mv.visitLabel(labelFalse);
+        emit(mv, ifFalse, type);
+        mv.visitLabel(labelEnd);
+        compiledCount++;
+        return type;
+    }
+
+    /** @return The type of the value left on the stack, or null if nothing was written because the function isn't
+     *         one of the auto-generated ones. */
+    private Type emitFunction(MethodVisitor mv, IFunctionNode node) {
+        NodeFuncBase func = node.getFunction();
+        IExpressionNode[] args = getArguments(node);
+        if (func == null || args == null) {
+            return null;
+        }
+        Integer insn = INSTRUCTIONS.get(func);
+        if (insn != null) {
+            Type argType = args[0] instanceof INodeLong ? Type.LONG_TYPE : Type.DOUBLE_TYPE;
+            for (IExpressionNode arg : args) {
+                emit(mv, arg, argType);
+            }
+            if (insn == LSHL || insn == LSHR || insn == LUSHR) {
+                // Shift distances are always ints
+                mv.visitInsn(L2I);
+            }
+            mv.visitInsn(insn);
+            compiledCount++;
+            return insn == L2D ? Type.DOUBLE_TYPE : argType;
+        }
+        int[] comparison = COMPARISONS.get(func);
+        if (comparison != null) {
+            Type argType = args[0] instanceof INodeLong ? Type.LONG_TYPE : Type.DOUBLE_TYPE;
+            emit(mv, args[0], argType);
+            emit(mv, args[1], argType);
+            mv.visitInsn(comparison[0]);
+            Label labelFalse = new Label();
+            Label labelEnd = new Label();
+            mv.visitJumpInsn(comparison[1], labelFalse);
+            mv.visitInsn(ICONST_1);
+            mv.visitJumpInsn(GOTO, labelEnd);
+            mv.visitLabel(labelFalse);
+            mv.visitInsn(ICONST_0);
+            mv.visitLabel(labelEnd);
+            compiledCount++;
+            return Type.BOOLEAN_TYPE;
+        }
+
+        // Otherwise call the function directly, with the arguments compiled
+        Object function;
+        Class<?> functionType;
+        try {
+            Field field = func.getClass().getField("function");
+            function = field.get(func);
+            functionType = field.getType();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+        Method apply = getApplyMethod(functionType);
+        if (function == null || apply == null || apply.getParameterCount() != args.length) {
+            return null;
+        }
+        loadLeaf(mv, function, functionType);
+        Class<?>[] params = apply.getParameterTypes();
+        for (int i = 0; i < args.length; i++) {
+            emit(mv, args[i], params[i].isPrimitive() ? Type.getType(params[i]) : OBJECT_TYPE);
+        }
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(functionType), "apply",
+            Type.getMethodDescriptor(apply), true);
+        compiledCount++;
+        Class<?> ret = apply.getReturnType();
+        return ret.isPrimitive() ? Type.getType(ret) : OBJECT_TYPE;
+    }
+
+    private Type emitLeaf(MethodVisitor mv, IExpressionNode node) {
+        final Class<?> type;
+        final Type valueType;
+        if (node instanceof INodeDouble) {
+            type = INodeDouble.class;
+            valueType = Type.DOUBLE_TYPE;
+        } else if (node instanceof INodeLong) {
+            type = INodeLong.class;
+            valueType = Type.LONG_TYPE;
+        } else if (node instanceof INodeBoolean) {
+            type = INodeBoolean.class;
+            valueType = Type.BOOLEAN_TYPE;
+        } else if (node instanceof INodeObject) {
+            type = INodeObject.class;
+            valueType = OBJECT_TYPE;
+        } else {
+            throw new IllegalStateException("Unknown node type " + node.getClass());
+        }
+        loadLeaf(mv, node, type);
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(type), "evaluate", "()" + valueType.getDescriptor(),
+            true);
+        return valueType;
+    }
+
+    private void loadLeaf(MethodVisitor mv, Object leaf, Class<?> type) {
+        int index = leaves.size();
+        leaves.add(leaf);
+        leafTypes.add(type);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "leaf" + index, Type.getDescriptor(type));
+    }
+
+    /** @return The arguments of an auto-generated function node (which are always public fields called "argA",
+     *         "argB", etc), or null if the node has no arguments or isn't an auto-generated one. */
+    private static IExpressionNode[] getArguments(IFunctionNode node) {
+        List<IExpressionNode> args = new ArrayList<>();
+        for (char c = 'A';; c++) {
+            Field field;
+            try {
+                field = node.getClass().getField("arg" + c);
+            } catch (NoSuchFieldException e) {
+                break;
+            }
+            try {
+                Object arg = field.get(node);
+                if (!(arg instanceof IExpressionNode)) {
+                    return null;
+                }
+                args.add((IExpressionNode) arg);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+        return args.isEmpty() ? null : args.toArray(new IExpressionNode[0]);
+    }
+
+    private static Method getApplyMethod(Class<?> functionType) {
+        if (!functionType.isInterface() || !Modifier.isPublic(functionType.getModifiers())) {
+            return null;
+        }
+        Method found = null;
+        for (Method method : functionType.getMethods()) {
+            if (method.getName().equals("apply") && Modifier.isAbstract(method.getModifiers())) {
+                if (found != null) {
+                    return null;
+                }
+                found = method;
+            }
+        }
+        return found;
+    }
+
+    /** Each generated class gets its own loader so that it can be unloaded once the expression is no longer used. */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader() {
+            super(NodeCompilerAsm.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
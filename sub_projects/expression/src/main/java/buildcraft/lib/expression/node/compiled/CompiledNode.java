@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.expression.node.compiled;
+
+import buildcraft.lib.expression.NodeCompiler;
+import buildcraft.lib.expression.api.IDependancyVisitor;
+import buildcraft.lib.expression.api.IDependantNode;
+import buildcraft.lib.expression.api.IExpressionNode;
+
+/** Base class for every node generated by {@link NodeCompiler}. Everything apart from evaluation is delegated to the
+ * node tree that was compiled. */
+public abstract class CompiledNode implements IDependantNode {
+    protected final IExpressionNode source;
+
+    protected CompiledNode(IExpressionNode source) {
+        this.source = source;
+    }
+
+    /** @return The (interpreted) node tree that this was compiled from. */
+    public IExpressionNode getSource() {
+        return source;
+    }
+
+    /** Inlines the source tree again, recompiling it if anything changed. */
+    protected final IExpressionNode reinline() {
+        IExpressionNode inlined = source.inline();
+        if (inlined == source) {
+            return (IExpressionNode) this;
+        }
+        return NodeCompiler.compile(inlined);
+    }
+
+    @Override
+    public void visitDependants(IDependancyVisitor visitor) {
+        visitor.dependOn(source);
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return source.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return source.equals(((CompiledNode) obj).source);
+    }
+}
@@ -0,0 +1,170 @@
+package buildcraft.test.lib.expression;
+
+import java.util.function.DoubleSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.expression.DefaultContexts;
+import buildcraft.lib.expression.FunctionContext;
+import buildcraft.lib.expression.GenericExpressionCompiler;
+import buildcraft.lib.expression.NodeCompiler;
+import buildcraft.lib.expression.api.IExpressionNode;
+import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
+import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
+import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
+import buildcraft.lib.expression.api.InvalidExpressionException;
+import buildcraft.lib.expression.node.compiled.CompiledNode;
+import buildcraft.lib.expression.node.value.NodeVariableDouble;
+import buildcraft.lib.expression.node.value.NodeVariableLong;
+import buildcraft.lib.expression.node.value.NodeVariableObject;
+
+public class NodeCompilerTester {
+
+    private static final String[] DOUBLE_EXPRESSIONS = { //
+        "a + b * 2", //
+        "a * a - b / 3 + c", //
+        "a % 0.3 - -b", //
+        "a < b ? a : b", //
+        "(c % 3) == 0 ? a : -a", //
+        "sin(a) + cos(b)", //
+        "max(a, b) * 2 - floor(a)", //
+        "pow(a, 2) + b", //
+        "variant == 'gold' ? a : b", //
+        "false ? 1 : 0.4", //
+    };
+
+    private static final String[] LONG_EXPRESSIONS = { //
+        "c << 2 | 1", //
+        "c * 3 + (c >> 1) - c / 2", //
+        "(c ^ 5) & ~c", //
+        "c > 4 ? c : 4", //
+        "variant == 'wood' ? 0 : variant == 'steel' ? 1 : variant == 'obsidian' ? 2 : 3", //
+        "false ? 0 : true ? 1 : 2", //
+    };
+
+    private static final String[] BOOLEAN_EXPRESSIONS = { //
+        "a > 0.5 && b <= 0.25", //
+        "a == b || c != 3", //
+        "!(a >= b)", //
+        "(c < 5) ^ (a > b)", //
+        "variant == 'gold'", //
+    };
+
+    private static final String[] VARIANTS = { "wood", "steel", "gold", "iron" };
+
+    private final FunctionContext ctx = new FunctionContext(DefaultContexts.createWithAll());
+    private final NodeVariableDouble a = ctx.putVariableDouble("a");
+    private final NodeVariableDouble b = ctx.putVariableDouble("b");
+    private final NodeVariableLong c = ctx.putVariableLong("c");
+    private final NodeVariableObject<String> variant = ctx.putVariableString("variant");
+
+    @Test
+    public void testSameResults() throws InvalidExpressionException {
+        for (String expr : DOUBLE_EXPRESSIONS) {
+            INodeDouble interpreted = compileDouble(expr, false);
+            INodeDouble compiled = compileDouble(expr, true);
+            for (int i = 0; i < 64; i++) {
+                setVariables(i);
+                Assert.assertEquals(expr, interpreted.evaluate(), compiled.evaluate(), 0);
+            }
+        }
+        for (String expr : LONG_EXPRESSIONS) {
+            INodeLong interpreted = compileLong(expr, false);
+            INodeLong compiled = compileLong(expr, true);
+            for (int i = 0; i < 64; i++) {
+                setVariables(i);
+                Assert.assertEquals(expr, interpreted.evaluate(), compiled.evaluate());
+            }
+        }
+        for (String expr : BOOLEAN_EXPRESSIONS) {
+            INodeBoolean interpreted = compileBoolean(expr, false);
+            INodeBoolean compiled = compileBoolean(expr, true);
+            for (int i = 0; i < 64; i++) {
+                setVariables(i);
+                Assert.assertEquals(expr, interpreted.evaluate(), compiled.evaluate());
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledNodes() throws InvalidExpressionException {
+        INodeDouble compiled = compileDouble("a * 2 + b", true);
+        Assert.assertTrue(compiled instanceof CompiledNode);
+        Assert.assertEquals(compileDouble("a * 2 + b", false).toString(), compiled.toString());
+        // Nothing to compile in a single variable or constant
+        Assert.assertFalse(compileDouble("a", true) instanceof CompiledNode);
+        Assert.assertFalse(compileDouble("1 + 2", true) instanceof CompiledNode);
+    }
+
+    private void setVariables(int i) {
+        a.value = (i * 0.37) % 1.3;
+        b.value = (i * 0.11) % 0.9;
+        c.value = i % 9;
+        variant.value = VARIANTS[i % VARIANTS.length];
+    }
+
+    private void time(String expr, DoubleSupplier interpreted, DoubleSupplier compiled) {
+        setVariables(7);
+        long interpretedNanos = 0, compiledNanos = 0;
+        double sink = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                sink += interpreted.getAsDouble();
+            }
+            interpretedNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                sink += compiled.getAsDouble();
+            }
+            compiledNanos = System.nanoTime() - start;
+        }
+        System.out.println(expr + ": interpreted = " + interpretedNanos / 1_000_000.0 + "ns, compiled = "
+            + compiledNanos / 1_000_000.0 + "ns (" + sink + ")");
+    }
+
+    private INodeDouble compileDouble(String expr, boolean compile) throws InvalidExpressionException {
+        return compile(() -> GenericExpressionCompiler.compileExpressionDouble(expr, ctx), compile);
+    }
+
+    private INodeLong compileLong(String expr, boolean compile) throws InvalidExpressionException {
+        return compile(() -> GenericExpressionCompiler.compileExpressionLong(expr, ctx), compile);
+    }
+
+    private INodeBoolean compileBoolean(String expr, boolean compile) throws InvalidExpressionException {
+        return compile(() -> GenericExpressionCompiler.compileExpressionBoolean(expr, ctx), compile);
+    }
+
+    private static <N extends IExpressionNode> N compile(ICompile<N> compiler, boolean compile)
+        throws InvalidExpressionException {
+        boolean wasEnabled = NodeCompiler.enabled;
+        NodeCompiler.enabled = compile;
+        try {
+            return compiler.compile();
+        } finally {
+            NodeCompiler.enabled = wasEnabled;
+        }
+    }
+
+    @FunctionalInterface
+    interface ICompile<N> {
+        N compile() throws InvalidExpressionException;
+    }
+
+    /** Rough comparison between the interpreted and compiled versions of every expression. This isn't a proper
+     * benchmark (so it isn't run as a test), but it's enough to show which one is faster. */
+    public static void main(String[] args) throws InvalidExpressionException {
+        NodeCompilerTester tester = new NodeCompilerTester();
+        for (String expr : DOUBLE_EXPRESSIONS) {
+            INodeDouble interpreted = tester.compileDouble(expr, false);
+            INodeDouble compiled = tester.compileDouble(expr, true);
+            tester.time(expr, interpreted, compiled);
+        }
+        for (String expr : LONG_EXPRESSIONS) {
+            INodeLong interpreted = tester.compileLong(expr, false);
+            INodeLong compiled = tester.compileLong(expr, true);
+            tester.time(expr, interpreted::evaluate, compiled::evaluate);
+        }
+    }
+}